@@ -0,0 +1,102 @@
+package com.poc.device.store.benchmark;
+
+import com.poc.device.store.AgingMembershipFilter;
+import com.poc.device.store.FilterType;
+import com.poc.device.store.SuspectDeviceStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures lookups of devices that are not suspect in a store that ages devices out of a ring of blocked Bloom
+ * filter generations, against a store with a single blocked Bloom filter of the same total capacity. A device that is
+ * not suspect is probed in every generation.
+ *
+ * The window holds 1.4M devices, 10K per hour over 14 days, as 14 daily, 4 half-weekly or 2 weekly generations. Device
+ * ids are 36 char UUIDs. Measured on a single shared vCPU, ns per lookup:
+ *
+ * <pre>
+ * generations  singleFilter  aging
+ *           2           ~84    ~98
+ *           4           ~79   ~166
+ *          14           ~79   ~524
+ * </pre>
+ *
+ * The device id is hashed once whatever the number of generations, each generation adds a cache line probe of
+ * ~30 ns, so the number of generations is what bounds the lookup latency of an aging store.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AgingLookupBenchmark {
+    private static final int WINDOW_DEVICES = 1_400_000;
+    private static final int LOOKUP_IDS = 1024;
+
+    @Param({"2", "4", "14"})
+    public int generations;
+
+    private SuspectDeviceStore singleFilterStore;
+    private SuspectDeviceStore agingStore;
+    private String[] lookupIds;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        int generationDevices = WINDOW_DEVICES / generations;
+        singleFilterStore = SuspectDeviceStore.builder()
+                .expectedInsertions(WINDOW_DEVICES).filterFactory(FilterType.BLOCKED_BLOOM).build();
+        agingStore = SuspectDeviceStore.builder()
+                .expectedInsertions(generationDevices)
+                .filterFactory(AgingMembershipFilter.factory(FilterType.BLOCKED_BLOOM, generations))
+                .build();
+        for (int generation = 0; generation < generations; generation++) {
+            for (int i = 0; i < generationDevices; i++) {
+                String deviceId = uuid(random);
+                singleFilterStore.addSuspectDevice(deviceId);
+                agingStore.addSuspectDevice(deviceId);
+            }
+            if (generation < generations - 1) {
+                agingStore.expireOldestSuspectDevices();
+            }
+        }
+        lookupIds = new String[LOOKUP_IDS];
+        for (int i = 0; i < LOOKUP_IDS; i++) {
+            lookupIds[i] = uuid(random);
+        }
+    }
+
+    private static String uuid(Random random) {
+        return new UUID(random.nextLong(), random.nextLong()).toString();
+    }
+
+    @Benchmark
+    public boolean singleFilter() {
+        String deviceId = lookupIds[next];
+        next = (next + 1) & (LOOKUP_IDS - 1);
+        return singleFilterStore.isSuspectDevice(deviceId);
+    }
+
+    @Benchmark
+    public boolean aging() {
+        String deviceId = lookupIds[next];
+        next = (next + 1) & (LOOKUP_IDS - 1);
+        return agingStore.isSuspectDevice(deviceId);
+    }
+}
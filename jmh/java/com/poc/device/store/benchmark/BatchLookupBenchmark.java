@@ -0,0 +1,99 @@
+package com.poc.device.store.benchmark;
+
+import com.poc.device.store.FilterType;
+import com.poc.device.store.SuspectDeviceStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares checking a micro-batch of 1024 devices one by one with {@link SuspectDeviceStore#isSuspectDevice(String)}
+ * against {@link SuspectDeviceStore#isSuspectDevices(String[], boolean[])} on the blocked Bloom filter. Scores are ns
+ * per device id.
+ *
+ * The batches cycle over 1M device ids in random order, half of them suspect, as in
+ * {@link SuspectDeviceLookupBenchmark}. Run with {@code -Xmx4g}. Measured on a single shared vCPU, ns per device id:
+ *
+ * <pre>
+ *        size  singleKeyLoop  isSuspectDevices
+ *          1M            ~79               ~68
+ *         10M           ~239              ~141
+ *        100M           ~261              ~177
+ * </pre>
+ *
+ * Once the filter no longer fits in the CPU caches the batch hides about a third of the cost of a lookup, the misses of
+ * consecutive device ids overlap instead of following each other. An explicit load of the block a few hashes ahead,
+ * the Java stand-in for a prefetch instruction, measured no better and was left out.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class BatchLookupBenchmark {
+    private static final String DEVICE_ID_PREFIX = "DEVICE_";
+    private static final int LOOKUP_IDS = 1 << 20;
+    private static final int BATCH = 1024;
+
+    @Param({"1000000", "10000000", "100000000"})
+    public int size;
+
+    private SuspectDeviceStore store;
+    private String[][] batches;
+    private boolean[] results;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        store = SuspectDeviceStore.getSuspectDeviceStore(size, FilterType.BLOCKED_BLOOM);
+        for (int i = 0; i < size; i++) {
+            store.addSuspectDevice(DEVICE_ID_PREFIX + i);
+        }
+
+        Random random = new Random(42);
+        batches = new String[LOOKUP_IDS / BATCH][BATCH];
+        for (int i = 0; i < LOOKUP_IDS; i++) {
+            // Even slots are suspect devices, odd slots are ids that were never added
+            int id = random.nextInt(size);
+            batches[i / BATCH][i % BATCH] = (i & 1) == 0 ? DEVICE_ID_PREFIX + id : DEVICE_ID_PREFIX + (size + id);
+        }
+        results = new boolean[BATCH];
+    }
+
+    private String[] nextBatch() {
+        String[] batch = batches[next];
+        next = (next + 1) % batches.length;
+        return batch;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public boolean[] singleKeyLoop() {
+        String[] batch = nextBatch();
+        for (int i = 0; i < batch.length; i++) {
+            results[i] = store.isSuspectDevice(batch[i]);
+        }
+        return results;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public boolean[] isSuspectDevices() {
+        store.isSuspectDevices(nextBatch(), results);
+        return results;
+    }
+}
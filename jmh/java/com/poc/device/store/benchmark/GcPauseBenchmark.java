@@ -0,0 +1,68 @@
+package com.poc.device.store.benchmark;
+
+import com.poc.device.store.FilterType;
+import com.poc.device.store.SuspectDeviceStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the pause of a full garbage collection while a store of 100M suspect devices is live, with the filter on
+ * the Java heap and off heap.
+ *
+ * Every invocation is one {@link System#gc()}, so the score is the pause time. The parallel collector compacts the
+ * old generation and may move the heap filter, G1 keeps it in humongous regions and only marks it. Add
+ * {@code -prof gc} to see the collections the JVM reports.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, batchSize = 1)
+@Measurement(iterations = 20, batchSize = 1)
+@State(Scope.Benchmark)
+public class GcPauseBenchmark {
+    private static final int SUSPECT_DEVICES = 100_000_000;
+
+    @Param({"false", "true"})
+    public boolean offHeap;
+
+    private SuspectDeviceStore store;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        store = SuspectDeviceStore.builder()
+                .expectedInsertions(SUSPECT_DEVICES)
+                .filterFactory(FilterType.BLOCKED_BLOOM)
+                .offHeap(offHeap)
+                .build();
+        for (int i = 0; i < SUSPECT_DEVICES; i += 1000) {
+            store.addSuspectDevice("DEVICE_" + i);
+        }
+        System.out.println("Filter of " + store.suspectDeviceStoreBitSize() / 8 / 1024 / 1024 + " MB, off heap: "
+                + offHeap);
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = {"-Xmx2g", "-XX:+UseParallelGC"})
+    public SuspectDeviceStore fullGcParallel() {
+        System.gc();
+        return store;
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = {"-Xmx2g", "-XX:+UseG1GC"})
+    public SuspectDeviceStore fullGcG1() {
+        System.gc();
+        return store;
+    }
+}
@@ -0,0 +1,87 @@
+package com.poc.device.store.benchmark;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import com.poc.device.store.DeviceFunnel;
+import com.poc.device.store.DeviceHashStrategy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the {@link DeviceHashStrategy}s, and Guava's Murmur3_128 through a {@link com.google.common.hash.Hasher}
+ * as the filters hashed before, on ASCII device ids of 10 to 40 chars.
+ *
+ * The hashes cycle over 1024 random device ids of the given length, which stay in the L1 cache, so only the cost of
+ * hashing is measured. Measured on a single shared vCPU, so only the ratios are meaningful, ns per device id:
+ *
+ * <pre>
+ * length  guavaMurmur3  MURMUR3_128  XXH3_64  WYHASH
+ *     10           ~85          ~26      ~25     ~21
+ *     20          ~105          ~47      ~40     ~31
+ *     40          ~205          ~62      ~91     ~62
+ * </pre>
+ *
+ * Device ids are read char by char from the string, which is why XXH3_64 does not pull ahead of MURMUR3_128 past 16
+ * chars.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HashStrategyBenchmark {
+    private static final int DEVICE_IDS = 1024;
+    private static final String CHARS = "0123456789abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ-_";
+    private static final HashFunction GUAVA_MURMUR3 = Hashing.murmur3_128();
+
+    @Param({"10", "20", "40"})
+    public int length;
+
+    @Param({"MURMUR3_128", "XXH3_64", "WYHASH"})
+    public DeviceHashStrategy hashStrategy;
+
+    private String[] deviceIds;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        deviceIds = new String[DEVICE_IDS];
+        for (int i = 0; i < DEVICE_IDS; i++) {
+            char[] chars = new char[length];
+            for (int j = 0; j < length; j++) {
+                chars[j] = CHARS.charAt(random.nextInt(CHARS.length()));
+            }
+            deviceIds[i] = new String(chars);
+        }
+    }
+
+    @Benchmark
+    public long hash64() {
+        String deviceId = deviceIds[next];
+        next = (next + 1) & (DEVICE_IDS - 1);
+        return hashStrategy.hash64(deviceId);
+    }
+
+    /** The hash of Guava's Bloom filter, independent of {@link #hashStrategy} */
+    @Benchmark
+    public long guavaMurmur3() {
+        String deviceId = deviceIds[next];
+        next = (next + 1) & (DEVICE_IDS - 1);
+        return GUAVA_MURMUR3.hashObject(deviceId, DeviceFunnel.INSTANCE).asLong();
+    }
+}
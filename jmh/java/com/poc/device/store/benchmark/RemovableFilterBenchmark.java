@@ -0,0 +1,110 @@
+package com.poc.device.store.benchmark;
+
+import com.poc.device.store.FilterType;
+import com.poc.device.store.SuspectDeviceStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the removable filters under a mixed add/remove/query workload against the Guava Bloom filter
+ * put/mightContain path.
+ *
+ * The store holds a sliding window of 1M device ids: every operation adds the next id, removes the oldest one (only on
+ * removable filters) and queries {@link #QUERIES_PER_OPERATION} ids, half of them inside the window. The bit size of
+ * every store is printed once during setup to compare memory.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RemovableFilterBenchmark {
+    private static final String DEVICE_ID_PREFIX = "DEVICE_";
+    private static final int WINDOW = 1 << 20;
+    private static final int QUERIES_PER_OPERATION = 8;
+
+    /** Device ids of a ring twice the window, so an id that is added is never inside the window */
+    private static final String[] DEVICE_IDS = new String[2 * WINDOW];
+
+    static {
+        for (int i = 0; i < DEVICE_IDS.length; i++) {
+            DEVICE_IDS[i] = DEVICE_ID_PREFIX + i;
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Window {
+        SuspectDeviceStore store;
+        int oldest;
+
+        void fill(FilterType filterType) {
+            store = SuspectDeviceStore.getSuspectDeviceStore(WINDOW, filterType);
+            for (int i = 0; i < WINDOW; i++) {
+                store.addSuspectDevice(DEVICE_IDS[i]);
+            }
+            oldest = 0;
+            System.out.println(filterType + " bits: " + store.suspectDeviceStoreBitSize() + " ("
+                    + store.suspectDeviceStoreBitSize() / 8 / 1024 + " KB)");
+        }
+
+        boolean queryAround(int position) {
+            boolean suspect = false;
+            for (int i = 0; i < QUERIES_PER_OPERATION; i++) {
+                int index = (position + i * (WINDOW / QUERIES_PER_OPERATION) + (i & 1) * WINDOW) & (2 * WINDOW - 1);
+                suspect ^= store.isSuspectDevice(DEVICE_IDS[index]);
+            }
+            return suspect;
+        }
+    }
+
+    public static class RemovableWindow extends Window {
+        @Param({"COUNTING_BLOOM", "CUCKOO"})
+        public FilterType filterType;
+
+        @Setup(Level.Iteration)
+        public void setUp() {
+            fill(filterType);
+        }
+    }
+
+    public static class BloomWindow extends Window {
+        @Param({"GUAVA_BLOOM", "COUNTING_BLOOM"})
+        public FilterType filterType;
+
+        @Setup(Level.Iteration)
+        public void setUp() {
+            fill(filterType);
+        }
+    }
+
+    /** Slides the window by one device: add the newest, remove the oldest and query */
+    @Benchmark
+    public boolean addRemoveQuery(RemovableWindow window) {
+        int oldest = window.oldest;
+        window.store.addSuspectDevice(DEVICE_IDS[(oldest + WINDOW) & (2 * WINDOW - 1)]);
+        window.store.removeSuspectDevice(DEVICE_IDS[oldest]);
+        window.oldest = (oldest + 1) & (2 * WINDOW - 1);
+        return window.queryAround(oldest);
+    }
+
+    /** The same operation without the removal, which the Guava Bloom filter does not support */
+    @Benchmark
+    public boolean addQuery(BloomWindow window) {
+        int oldest = window.oldest;
+        window.store.addSuspectDevice(DEVICE_IDS[(oldest + WINDOW) & (2 * WINDOW - 1)]);
+        window.oldest = (oldest + 1) & (2 * WINDOW - 1);
+        return window.queryAround(oldest);
+    }
+}
@@ -0,0 +1,72 @@
+package com.poc.device.store.benchmark;
+
+import com.poc.device.store.FilterType;
+import com.poc.device.store.SuspectDeviceStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link SuspectDeviceStore#isSuspectDevice(String)} on the Guava Bloom filter and on the cache-line
+ * blocked Bloom filter.
+ *
+ * The lookups cycle over 1M device ids in random order, half of them suspect, so that at 10M and 100M entries the
+ * probed cache lines do not stay in the CPU caches between two lookups of the same id.
+ *
+ * Run with {@code -Xmx4g}, the 100M store alone takes ~130 MB and the setup creates 100M short lived strings.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class SuspectDeviceLookupBenchmark {
+    private static final String DEVICE_ID_PREFIX = "DEVICE_";
+    private static final int LOOKUP_IDS = 1 << 20;
+
+    @Param({"1000000", "10000000", "100000000"})
+    public int size;
+
+    @Param({"GUAVA_BLOOM", "BLOCKED_BLOOM"})
+    public FilterType filterType;
+
+    private SuspectDeviceStore store;
+    private String[] lookupIds;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        store = SuspectDeviceStore.getSuspectDeviceStore(size, filterType);
+        for (int i = 0; i < size; i++) {
+            store.addSuspectDevice(DEVICE_ID_PREFIX + i);
+        }
+
+        Random random = new Random(42);
+        lookupIds = new String[LOOKUP_IDS];
+        for (int i = 0; i < LOOKUP_IDS; i++) {
+            // Even slots are suspect devices, odd slots are ids that were never added
+            int id = random.nextInt(size);
+            lookupIds[i] = (i & 1) == 0 ? DEVICE_ID_PREFIX + id : DEVICE_ID_PREFIX + (size + id);
+        }
+    }
+
+    @Benchmark
+    public boolean isSuspectDevice() {
+        String deviceId = lookupIds[next];
+        next = (next + 1) & (LOOKUP_IDS - 1);
+        return store.isSuspectDevice(deviceId);
+    }
+}
@@ -0,0 +1,320 @@
+package com.poc.device.store;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A filter of device ids that forgets them after a number of periods, e.g. the last 90 days as 90 daily generations.
+ *
+ * The filter is a ring of generations, each a filter of one {@link FilterType}. Device ids are put into the newest
+ * generation; putting a device id again puts it into the newest generation again, so it stays suspect for another
+ * full window. A lookup hashes the device id once and probes the generations newest first. {@link #advance()}, e.g.
+ * once a day, replaces the oldest generation with an empty one: the empty generation is allocated first, then
+ * installed in the slot of the oldest with a single reference store, so expiring a whole period of device ids costs
+ * lookups nothing and the memory of the filter never grows.
+ *
+ * Every generation is sized for the device ids of one period, with a false positive probability such that all of them
+ * together stay below the configured one. Each generation costs a probe on every lookup of a device id that is not
+ * suspect, so a coarser ring, e.g. 13 weekly generations for 90 days, answers faster than 90 daily ones at the price
+ * of expiring device ids less precisely.
+ *
+ * Lookups and advances never block each other. Puts are as concurrent as those of the generation type.
+ */
+public final class AgingMembershipFilter extends HashedMembershipFilter implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /** The largest number of generations of a filter */
+    public static final int MAX_GENERATIONS = 1024;
+
+    private final FilterType generationType;
+    private final long generationCapacity;
+    private final double fpp;
+    private final boolean offHeap;
+    private final DeviceHashStrategy hashStrategy;
+    private final AtomicReferenceArray<HashedMembershipFilter> generations;
+    /** The slot of the newest generation, the older ones precede it around the ring */
+    private volatile int newest;
+
+    private AgingMembershipFilter(FilterType generationType, long generationCapacity, double fpp, boolean offHeap,
+                                  DeviceHashStrategy hashStrategy,
+                                  AtomicReferenceArray<HashedMembershipFilter> generations, int newest) {
+        this.generationType = generationType;
+        this.generationCapacity = generationCapacity;
+        this.fpp = fpp;
+        this.offHeap = offHeap;
+        this.hashStrategy = hashStrategy;
+        this.generations = generations;
+        this.newest = newest;
+    }
+
+    /**
+     * Returns a factory of aging filters, for {@link SuspectDeviceStore.Builder#filterFactory}. The expected
+     * insertions passed to the factory are the device ids of one period.
+     *
+     * @param generationType the type of filter of every generation, one that puts device ids by their hash, like
+     *                       {@link FilterType#BLOCKED_BLOOM}
+     * @param generations the number of periods a device id stays in the filter, at least 2
+     * @return the factory
+     */
+    public static MembershipFilterFactory factory(FilterType generationType, int generations) {
+        checkGenerations(generations);
+        return new Factory(generationType, generations);
+    }
+
+    /**
+     * Creates a filter.
+     *
+     * @param generationType the type of filter of every generation, one that puts device ids by their hash
+     * @param generations the number of periods a device id stays in the filter, at least 2
+     * @param expectedInsertions the number of device ids put per period
+     * @param fpp the false positive probability of all generations together, must be between 0 and 1 (exclusive)
+     * @param hashStrategy the hash function of every generation, must be supported by {@code generationType}
+     * @return the filter
+     * @throws IllegalArgumentException if the generation type cannot age device ids
+     */
+    public static AgingMembershipFilter create(FilterType generationType, int generations, long expectedInsertions,
+                                               double fpp, DeviceHashStrategy hashStrategy) {
+        return create(generationType, generations, expectedInsertions, fpp, hashStrategy, false);
+    }
+
+    /** Creates a filter like {@link #create} whose generations are allocated outside the Java heap */
+    public static AgingMembershipFilter createOffHeap(FilterType generationType, int generations,
+                                                      long expectedInsertions, double fpp,
+                                                      DeviceHashStrategy hashStrategy) {
+        return create(generationType, generations, expectedInsertions, fpp, hashStrategy, true);
+    }
+
+    private static AgingMembershipFilter create(FilterType generationType, int generations, long expectedInsertions,
+                                                double fpp, DeviceHashStrategy hashStrategy, boolean offHeap) {
+        checkGenerations(generations);
+        if (generationType == null) {
+            throw new IllegalArgumentException("Generation type cannot be null");
+        }
+        if (!(fpp > 0.0 && fpp < 1.0)) {
+            throw new IllegalArgumentException("False positive probability must be in (0, 1): " + fpp);
+        }
+        long generationCapacity = Math.max(expectedInsertions, 1);
+        AtomicReferenceArray<HashedMembershipFilter> ring = new AtomicReferenceArray<>(generations);
+        AgingMembershipFilter filter = new AgingMembershipFilter(generationType, generationCapacity, fpp, offHeap,
+                hashStrategy, ring, generations - 1);
+        for (int i = 0; i < generations; i++) {
+            ring.set(i, filter.newGeneration());
+        }
+        return filter;
+    }
+
+    private static void checkGenerations(int generations) {
+        if (generations < 2 || generations > MAX_GENERATIONS) {
+            throw new IllegalArgumentException("An aging filter needs 2 to " + MAX_GENERATIONS + " generations: "
+                    + generations);
+        }
+    }
+
+    private HashedMembershipFilter newGeneration() {
+        double generationFpp = -Math.expm1(Math.log1p(-fpp) / generations.length());
+        MembershipFilter generation = offHeap
+                ? generationType.createOffHeap(generationCapacity, generationFpp, hashStrategy)
+                : generationType.create(generationCapacity, generationFpp, hashStrategy);
+        if (!(generation instanceof HashedMembershipFilter)) {
+            throw new IllegalArgumentException("Filter type " + generationType
+                    + " cannot be a generation of an aging filter");
+        }
+        return (HashedMembershipFilter) generation;
+    }
+
+    /**
+     * Drops the oldest generation, and with it the device ids put only in that period, and starts a new empty one
+     * that puts go to from now on.
+     */
+    public synchronized void advance() {
+        HashedMembershipFilter next = newGeneration();
+        int slot = newest + 1 == generations.length() ? 0 : newest + 1;
+        generations.set(slot, next);
+        newest = slot;
+    }
+
+    /**
+     * Puts the hash of a device id into the newest generation, even if an older one contains it.
+     *
+     * @return true if the newest generation changed
+     */
+    @Override
+    boolean putHash(long hash) {
+        return generations.get(newest).putHash(hash);
+    }
+
+    @Override
+    boolean mightContainHash(long hash) {
+        int length = generations.length();
+        int slot = newest;
+        for (int i = 0; i < length; i++) {
+            if (generations.get(slot).mightContainHash(hash)) {
+                return true;
+            }
+            slot = slot == 0 ? length - 1 : slot - 1;
+        }
+        return false;
+    }
+
+    /** Probes each generation with its own batch lookup and merges the answers */
+    @Override
+    void mightContainHashes(long[] hashes, int count, boolean[] results, int offset) {
+        boolean[] generationResults = new boolean[count];
+        for (int i = 0; i < count; i++) {
+            results[offset + i] = false;
+        }
+        for (int g = 0; g < generations.length(); g++) {
+            generations.get(g).mightContainHashes(hashes, count, generationResults, 0);
+            for (int i = 0; i < count; i++) {
+                results[offset + i] |= generationResults[i];
+            }
+        }
+    }
+
+    /** Returns the probability that any of the generations answers a false positive */
+    @Override
+    public double expectedFpp() {
+        double trueNegative = 1.0;
+        for (int i = 0; i < generations.length(); i++) {
+            trueNegative *= 1.0 - generations.get(i).expectedFpp();
+        }
+        return 1.0 - trueNegative;
+    }
+
+    @Override
+    public long bitSize() {
+        long bitSize = 0;
+        for (int i = 0; i < generations.length(); i++) {
+            bitSize += generations.get(i).bitSize();
+        }
+        return bitSize;
+    }
+
+    @Override
+    public DeviceHashStrategy hashStrategy() {
+        return hashStrategy;
+    }
+
+    @Override
+    public boolean supportsConcurrentPuts() {
+        return generations.get(newest).supportsConcurrentPuts();
+    }
+
+    @Override
+    public void preTouch() {
+        for (int i = 0; i < generations.length(); i++) {
+            generations.get(i).preTouch();
+        }
+    }
+
+    /** Returns the number of periods a device id stays in the filter */
+    public int generationCount() {
+        return generations.length();
+    }
+
+    /**
+     * Writes this filter to an output stream, with a custom format (not Java serialization). The generations are
+     * written oldest first.
+     *
+     * @param out the stream to write to
+     * @throws IOException if writing to the stream fails
+     */
+    @Override
+    public synchronized void writeTo(OutputStream out) throws IOException {
+        DataOutputStream dout = new DataOutputStream(out);
+        dout.writeUTF(generationType.name());
+        dout.writeLong(generationCapacity);
+        dout.writeDouble(fpp);
+        dout.writeInt(hashStrategy.snapshotId());
+        dout.writeInt(generations.length());
+        for (int i = 1; i <= generations.length(); i++) {
+            generations.get((newest + i) % generations.length()).writeTo(dout);
+        }
+        dout.flush();
+    }
+
+    /**
+     * Reads a filter written by {@link #writeTo(OutputStream)}, with its generations on the Java heap.
+     *
+     * @param in the stream to read from
+     * @return the filter
+     * @throws IOException if the stream is truncated or does not contain an aging filter
+     */
+    public static AgingMembershipFilter readFrom(InputStream in) throws IOException {
+        DataInputStream din = new DataInputStream(in);
+        FilterType generationType;
+        try {
+            generationType = FilterType.valueOf(din.readUTF());
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Corrupt aging filter header", e);
+        }
+        long generationCapacity = din.readLong();
+        double fpp = din.readDouble();
+        DeviceHashStrategy hashStrategy = DeviceHashStrategy.read(din);
+        int generationCount = din.readInt();
+        if (generationCapacity < 1 || !(fpp > 0.0 && fpp < 1.0) || generationCount < 2
+                || generationCount > MAX_GENERATIONS) {
+            throw new IOException("Corrupt aging filter header: generationCapacity=" + generationCapacity
+                    + ", fpp=" + fpp + ", generations=" + generationCount);
+        }
+        AtomicReferenceArray<HashedMembershipFilter> ring = new AtomicReferenceArray<>(generationCount);
+        for (int i = 0; i < generationCount; i++) {
+            MembershipFilter generation = generationType.readFrom(din);
+            if (!(generation instanceof HashedMembershipFilter) || generation.hashStrategy() != hashStrategy) {
+                throw new IOException("Corrupt aging filter generation " + i);
+            }
+            ring.set(i, (HashedMembershipFilter) generation);
+        }
+        return new AgingMembershipFilter(generationType, generationCapacity, fpp, false, hashStrategy, ring,
+                generationCount - 1);
+    }
+
+    /** Creates aging filters of a generation type and number of generations */
+    private static final class Factory implements MembershipFilterFactory, Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final FilterType generationType;
+        private final int generations;
+
+        private Factory(FilterType generationType, int generations) {
+            this.generationType = generationType;
+            this.generations = generations;
+        }
+
+        @Override
+        public MembershipFilter create(long expectedInsertions, double fpp) {
+            return create(expectedInsertions, fpp, DeviceHashStrategy.MURMUR3_128);
+        }
+
+        @Override
+        public MembershipFilter create(long expectedInsertions, double fpp, DeviceHashStrategy hashStrategy) {
+            return AgingMembershipFilter.create(generationType, generations, expectedInsertions, fpp, hashStrategy);
+        }
+
+        @Override
+        public MembershipFilter createOffHeap(long expectedInsertions, double fpp) {
+            return createOffHeap(expectedInsertions, fpp, DeviceHashStrategy.MURMUR3_128);
+        }
+
+        @Override
+        public MembershipFilter createOffHeap(long expectedInsertions, double fpp, DeviceHashStrategy hashStrategy) {
+            return AgingMembershipFilter.createOffHeap(generationType, generations, expectedInsertions, fpp,
+                    hashStrategy);
+        }
+
+        @Override
+        public MembershipFilter readFrom(InputStream in) throws IOException {
+            return AgingMembershipFilter.readFrom(in);
+        }
+
+        @Override
+        public String toString() {
+            return "AGING(" + generations + " x " + generationType + ")";
+        }
+    }
+}
@@ -0,0 +1,282 @@
+package com.poc.device.store;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Random;
+
+/**
+ * An immutable binary fuse filter of device ids with 8 bit fingerprints (Graf and Lemire, "Binary Fuse Filters: Fast
+ * and Smaller Than Xor Filters", 2022).
+ *
+ * The filter is built once from the complete list of device ids and cannot be added to afterwards. In exchange it
+ * uses ~9 bits per device id (slightly more below a few million ids) at a false positive probability of 1/256
+ * (0.39%), and a lookup reads exactly three fingerprints, which are close to each other in the array.
+ *
+ * Building needs about 32 bytes of temporary memory per device id on top of the filter.
+ *
+ * Device ids are hashed with a {@link DeviceHashStrategy}, {@link DeviceHashStrategy#MURMUR3_128} unless the filter
+ * is built with another one.
+ */
+public final class BinaryFuseFilter extends HashedMembershipFilter implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /** The false positive probability of 8 bit fingerprints */
+    public static final double FPP = 1.0 / 256;
+
+    private static final int ARITY = 3;
+    private static final int MAX_SEGMENT_LENGTH = 1 << 18;
+    private static final int MAX_ATTEMPTS = 100;
+
+    private final long seed;
+    private final int segmentLength;
+    private final int segmentLengthMask;
+    private final int segmentCountLength;
+    private final byte[] fingerprints;
+    private final DeviceHashStrategy hashStrategy;
+
+    private BinaryFuseFilter(long seed, int segmentLength, int segmentCount, byte[] fingerprints,
+                             DeviceHashStrategy hashStrategy) {
+        this.seed = seed;
+        this.segmentLength = segmentLength;
+        this.segmentLengthMask = segmentLength - 1;
+        this.segmentCountLength = segmentCount * segmentLength;
+        this.fingerprints = fingerprints;
+        this.hashStrategy = hashStrategy;
+    }
+
+    /**
+     * Builds a filter of the device ids. Duplicate device ids are allowed.
+     *
+     * @param deviceUids the device ids
+     * @param fpp the desired false positive probability, cannot be below {@link #FPP}
+     * @return the filter
+     */
+    public static BinaryFuseFilter create(Collection<String> deviceUids, double fpp) {
+        return create(deviceUids, fpp, DeviceHashStrategy.MURMUR3_128);
+    }
+
+    /** Builds a filter like {@link #create(Collection, double)} that hashes device ids with the given strategy */
+    public static BinaryFuseFilter create(Collection<String> deviceUids, double fpp, DeviceHashStrategy hashStrategy) {
+        if (hashStrategy == null) {
+            throw new IllegalArgumentException("Hash strategy cannot be null");
+        }
+        if (!(fpp >= FPP && fpp < 1.0)) {
+            throw new IllegalArgumentException("Binary fuse filters have a fixed FPP of " + FPP + ", cannot reach " + fpp);
+        }
+        long[] hashes = new long[deviceUids.size()];
+        int size = 0;
+        for (String deviceUid : deviceUids) {
+            if (deviceUid == null || deviceUid.isEmpty()) {
+                throw new IllegalArgumentException("Device Id cannot be null");
+            }
+            hashes[size++] = hashStrategy.hash64(deviceUid);
+        }
+        return create(hashes, size, hashStrategy);
+    }
+
+    /** Builds a filter of the first {@code size} device id hashes, the array is sorted in place */
+    static BinaryFuseFilter create(long[] hashes, int size, DeviceHashStrategy hashStrategy) {
+        // Peeling cannot succeed on a duplicate key, so remove them up front
+        Arrays.sort(hashes, 0, size);
+        int distinct = 0;
+        for (int i = 0; i < size; i++) {
+            if (i == 0 || hashes[i] != hashes[distinct - 1]) {
+                hashes[distinct++] = hashes[i];
+            }
+        }
+        size = distinct;
+
+        int segmentLength = size == 0 ? 4
+                : Math.min(1 << (int) Math.floor(Math.log(size) / Math.log(3.33) + 2.25), MAX_SEGMENT_LENGTH);
+        double sizeFactor = size <= 1 ? 0 : Math.max(1.125, 0.875 + 0.25 * Math.log(1_000_000) / Math.log(size));
+        int capacity = (int) Math.round(size * sizeFactor);
+        int initSegmentCount = (capacity + segmentLength - 1) / segmentLength - (ARITY - 1);
+        int arrayLength = (initSegmentCount + ARITY - 1) * segmentLength;
+        int segmentCount = (arrayLength + segmentLength - 1) / segmentLength;
+        segmentCount = segmentCount <= ARITY - 1 ? 1 : segmentCount - (ARITY - 1);
+        arrayLength = (segmentCount + ARITY - 1) * segmentLength;
+
+        long[] reverseOrder = new long[size];
+        byte[] reverseH = new byte[size];
+        // The lowest 2 bits of a count hold the xor of the slot indexes (0, 1 or 2) of the keys mapped to it
+        byte[] t2count = new byte[arrayLength];
+        long[] t2hash = new long[arrayLength];
+        int[] alone = new int[arrayLength];
+        Random random = new Random();
+
+        for (int attempt = 0; ; attempt++) {
+            if (attempt == MAX_ATTEMPTS) {
+                throw new IllegalStateException("Could not build a binary fuse filter of " + size + " device ids");
+            }
+            BinaryFuseFilter filter = new BinaryFuseFilter(random.nextLong(), segmentLength, segmentCount,
+                    new byte[arrayLength], hashStrategy);
+            if (attempt > 0) {
+                Arrays.fill(t2count, (byte) 0);
+                Arrays.fill(t2hash, 0);
+            }
+
+            byte countMask = 0;
+            for (int i = 0; i < size; i++) {
+                long hash = filter.mix(hashes[i]);
+                for (int slot = 0; slot < ARITY; slot++) {
+                    int index = filter.position(hash, slot);
+                    t2count[index] += 4;
+                    t2count[index] ^= slot;
+                    t2hash[index] ^= hash;
+                    countMask |= t2count[index];
+                }
+            }
+            if (countMask < 0) {
+                // A count overflowed its 6 bits, try another seed
+                continue;
+            }
+
+            // Peel: repeatedly remove a key that is alone in one of its slots
+            int alonePos = 0;
+            for (int i = 0; i < arrayLength; i++) {
+                alone[alonePos] = i;
+                alonePos += (t2count[i] >> 2) == 1 ? 1 : 0;
+            }
+            int reverseOrderPos = 0;
+            while (alonePos > 0) {
+                int index = alone[--alonePos];
+                if ((t2count[index] >> 2) != 1) {
+                    continue;
+                }
+                long hash = t2hash[index];
+                int found = t2count[index] & 3;
+                reverseH[reverseOrderPos] = (byte) found;
+                reverseOrder[reverseOrderPos++] = hash;
+                for (int other = 1; other < ARITY; other++) {
+                    int slot = (found + other) % ARITY;
+                    int otherIndex = filter.position(hash, slot);
+                    alone[alonePos] = otherIndex;
+                    alonePos += (t2count[otherIndex] >> 2) == 2 ? 1 : 0;
+                    t2count[otherIndex] -= 4;
+                    t2count[otherIndex] ^= slot;
+                    t2hash[otherIndex] ^= hash;
+                }
+            }
+            if (reverseOrderPos != size) {
+                continue;
+            }
+
+            // Assign fingerprints in reverse peeling order, each key owns the slot it was peeled from
+            byte[] fingerprints = filter.fingerprints;
+            for (int i = size - 1; i >= 0; i--) {
+                long hash = reverseOrder[i];
+                int found = reverseH[i];
+                int index = filter.position(hash, found);
+                fingerprints[index] = (byte) (fingerprint(hash)
+                        ^ fingerprints[filter.position(hash, (found + 1) % ARITY)]
+                        ^ fingerprints[filter.position(hash, (found + 2) % ARITY)]);
+            }
+            return filter;
+        }
+    }
+
+    /** Binary fuse filters are immutable, every put throws {@link UnsupportedOperationException} */
+    @Override
+    boolean putHash(long hash) {
+        throw new UnsupportedOperationException("A binary fuse filter is immutable, rebuild it to add devices");
+    }
+
+    @Override
+    boolean mightContainHash(long deviceHash) {
+        long hash = mix(deviceHash);
+        int h0 = (int) mulHigh(hash, segmentCountLength);
+        int h1 = h0 + segmentLength;
+        int h2 = h1 + segmentLength;
+        h1 ^= (int) (hash >>> 18) & segmentLengthMask;
+        h2 ^= (int) hash & segmentLengthMask;
+        return (byte) (fingerprint(hash) ^ fingerprints[h0] ^ fingerprints[h1] ^ fingerprints[h2]) == 0;
+    }
+
+    @Override
+    public double expectedFpp() {
+        return FPP;
+    }
+
+    @Override
+    public long bitSize() {
+        return (long) fingerprints.length * Byte.SIZE;
+    }
+
+    @Override
+    public DeviceHashStrategy hashStrategy() {
+        return hashStrategy;
+    }
+
+    /**
+     * Writes this filter to an output stream, with a custom format (not Java serialization).
+     *
+     * @param out the stream to write to
+     * @throws IOException if writing to the stream fails
+     */
+    @Override
+    public void writeTo(OutputStream out) throws IOException {
+        DataOutputStream dout = new DataOutputStream(out);
+        dout.writeInt(hashStrategy.snapshotId());
+        dout.writeLong(seed);
+        dout.writeInt(segmentLength);
+        dout.writeInt(segmentCountLength / segmentLength);
+        dout.writeInt(fingerprints.length);
+        dout.write(fingerprints);
+        dout.flush();
+    }
+
+    /**
+     * Reads a filter written by {@link #writeTo(OutputStream)}.
+     *
+     * @param in the stream to read from
+     * @return the filter
+     * @throws IOException if the stream is truncated or does not contain a binary fuse filter
+     */
+    public static BinaryFuseFilter readFrom(InputStream in) throws IOException {
+        DataInputStream din = new DataInputStream(in);
+        DeviceHashStrategy hashStrategy = DeviceHashStrategy.read(din);
+        long seed = din.readLong();
+        int segmentLength = din.readInt();
+        int segmentCount = din.readInt();
+        int arrayLength = din.readInt();
+        if (Integer.bitCount(segmentLength) != 1 || segmentLength > MAX_SEGMENT_LENGTH || segmentCount < 1
+                || (long) (segmentCount + ARITY - 1) * segmentLength != arrayLength) {
+            throw new IOException("Corrupt binary fuse filter header: segmentLength=" + segmentLength
+                    + ", segmentCount=" + segmentCount + ", arrayLength=" + arrayLength);
+        }
+        byte[] fingerprints = new byte[arrayLength];
+        din.readFully(fingerprints);
+        return new BinaryFuseFilter(seed, segmentLength, segmentCount, fingerprints, hashStrategy);
+    }
+
+    /** Re-hashes a device hash with the seed, so a failed build can retry with different positions */
+    private long mix(long deviceHash) {
+        return DeviceHashing.mix64(deviceHash + seed);
+    }
+
+    /** Returns the fingerprint array index of one of the three slots of a hash */
+    private int position(long hash, int slot) {
+        int index = (int) mulHigh(hash, segmentCountLength) + slot * segmentLength;
+        if (slot == 1) {
+            index ^= (int) (hash >>> 18) & segmentLengthMask;
+        } else if (slot == 2) {
+            index ^= (int) hash & segmentLengthMask;
+        }
+        return index;
+    }
+
+    private static byte fingerprint(long hash) {
+        return (byte) (hash ^ (hash >>> 32));
+    }
+
+    /** The upper 64 bits of the unsigned 128 bit product of a hash and a non-negative int */
+    private static long mulHigh(long hash, int multiplier) {
+        return Math.multiplyHigh(hash, multiplier) + ((hash >> 63) & multiplier);
+    }
+}
@@ -0,0 +1,332 @@
+package com.poc.device.store;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+
+/**
+ * A cache-line blocked Bloom filter of device ids.
+ *
+ * The bit array is split into blocks of 512 bits, which is one 64 byte cache line. A device id is hashed once, the
+ * upper 32 bits of the hash select the block and all k probes set or test bits inside that block. A lookup therefore
+ * costs one memory access instead of the k scattered accesses of a standard Bloom filter.
+ *
+ * Blocking makes some blocks fuller than others, so for the same number of bits the false positive probability is
+ * higher than the one of a standard Bloom filter. {@link #create(long, double)} accounts for this and sizes the
+ * filter with the exact blocked false positive probability, at a 1% FPP that is ~10 bits per device id instead of
+ * the 9.6 bits of a standard Bloom filter.
+ *
+ * Additions are lock free, bits are set with an atomic OR, so a filter can be filled from several threads.
+ *
+ * The bits are kept either on the Java heap or, with {@link #createOffHeap(long, double)}, in memory outside of it
+ * that the garbage collector neither scans nor copies, or in a snapshot file mapped by {@link SnapshotFile}. All of
+ * them answer every lookup identically.
+ *
+ * Device ids are hashed with a {@link DeviceHashStrategy}, {@link DeviceHashStrategy#MURMUR3_128} unless the filter
+ * is created with another one.
+ */
+public final class BlockedBloomFilter extends HashedMembershipFilter implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private static final int BLOCK_BITS = 512;
+    private static final int LONGS_PER_BLOCK = BLOCK_BITS / Long.SIZE;
+    private static final int MAX_NUM_BLOCKS = Integer.MAX_VALUE / LONGS_PER_BLOCK;
+    private static final int MAX_HASH_FUNCTIONS = 16;
+    private static final int BIT_SHIFT = Integer.SIZE - Integer.numberOfTrailingZeros(BLOCK_BITS);
+    private static final int PAGE_LONGS = 4096 / Long.BYTES;
+
+    private final LongStorage words;
+    private final int numBlocks;
+    private final int numHashFunctions;
+    private final DeviceHashStrategy hashStrategy;
+
+    private BlockedBloomFilter(LongStorage words, int numHashFunctions, DeviceHashStrategy hashStrategy) {
+        this.words = words;
+        this.numBlocks = words.length() / LONGS_PER_BLOCK;
+        this.numHashFunctions = numHashFunctions;
+        this.hashStrategy = hashStrategy;
+    }
+
+    /**
+     * Creates a filter for the expected number of insertions and the required false positive probability.
+     *
+     * @param expectedInsertions the number of expected insertions(n) to the constructed filter
+     * @param fpp the desired false positive probability, must be between 0 and 1 (exclusive)
+     * @return a filter with the smallest number of blocks that achieves {@code fpp} for {@code expectedInsertions}
+     */
+    public static BlockedBloomFilter create(long expectedInsertions, double fpp) {
+        return create(expectedInsertions, fpp, DeviceHashStrategy.MURMUR3_128, false);
+    }
+
+    /** Creates a filter like {@link #create(long, double)} that hashes device ids with the given strategy */
+    public static BlockedBloomFilter create(long expectedInsertions, double fpp, DeviceHashStrategy hashStrategy) {
+        return create(expectedInsertions, fpp, hashStrategy, false);
+    }
+
+    /**
+     * Creates a filter like {@link #create(long, double)} whose bits are allocated outside the Java heap.
+     *
+     * @throws IllegalArgumentException if the filter exceeds the 2 GB a buffer can address
+     */
+    public static BlockedBloomFilter createOffHeap(long expectedInsertions, double fpp) {
+        return create(expectedInsertions, fpp, DeviceHashStrategy.MURMUR3_128, true);
+    }
+
+    /** Creates a filter like {@link #createOffHeap(long, double)} that hashes device ids with the given strategy */
+    public static BlockedBloomFilter createOffHeap(long expectedInsertions, double fpp,
+                                                   DeviceHashStrategy hashStrategy) {
+        return create(expectedInsertions, fpp, hashStrategy, true);
+    }
+
+    private static BlockedBloomFilter create(long expectedInsertions, double fpp, DeviceHashStrategy hashStrategy,
+                                             boolean offHeap) {
+        if (hashStrategy == null) {
+            throw new IllegalArgumentException("Hash strategy cannot be null");
+        }
+        if (expectedInsertions < 0) {
+            throw new IllegalArgumentException("Expected insertions cannot be negative: " + expectedInsertions);
+        }
+        if (!(fpp > 0.0 && fpp < 1.0)) {
+            throw new IllegalArgumentException("False positive probability must be in (0, 1): " + fpp);
+        }
+        long n = Math.max(expectedInsertions, 1);
+
+        // Start from the bits a standard Bloom filter needs and grow by 2% until the blocked FPP is met
+        double bitsPerKey = -Math.log(fpp) / (Math.log(2) * Math.log(2));
+        while (true) {
+            long blocks = (long) Math.ceil(n * bitsPerKey / BLOCK_BITS);
+            if (blocks > MAX_NUM_BLOCKS) {
+                throw new IllegalArgumentException("Filter for " + expectedInsertions + " insertions at FPP " + fpp
+                        + " exceeds the maximum of " + MAX_NUM_BLOCKS + " blocks");
+            }
+            double keysPerBlock = (double) n / blocks;
+            for (int k = 1; k <= MAX_HASH_FUNCTIONS; k++) {
+                if (blockedFpp(keysPerBlock, k) <= fpp) {
+                    int length = (int) blocks * LONGS_PER_BLOCK;
+                    return new BlockedBloomFilter(
+                            offHeap ? LongStorage.offHeap(length) : LongStorage.onHeap(length), k, hashStrategy);
+                }
+            }
+            bitsPerKey *= 1.02;
+        }
+    }
+
+    @Override
+    boolean putHash(long hash) {
+        int offset = blockOffset(hash);
+        int probe = (int) hash;
+        boolean bitsChanged = false;
+        for (int i = 0; i < numHashFunctions; i++) {
+            probe = nextProbe(probe);
+            int bit = probe >>> BIT_SHIFT;
+            int index = offset + (bit >>> 6);
+            long mask = 1L << bit;
+            if ((words.get(index) & mask) == 0) {
+                words.or(index, mask);
+                bitsChanged = true;
+            }
+        }
+        return bitsChanged;
+    }
+
+    @Override
+    boolean mightContainHash(long hash) {
+        int offset = blockOffset(hash);
+        int probe = (int) hash;
+        for (int i = 0; i < numHashFunctions; i++) {
+            probe = nextProbe(probe);
+            int bit = probe >>> BIT_SHIFT;
+            if ((words.get(offset + (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Bits are set with an atomic OR, so puts from several threads need no lock */
+    @Override
+    public boolean supportsConcurrentPuts() {
+        return true;
+    }
+
+    /**
+     * Probes a batch of hashes so that their cache misses overlap. Each probe tests all k bits without branching on
+     * them, so the loads of one hash do not depend on the answer for the previous one, and the CPU keeps the misses of
+     * several hashes in flight instead of waiting for one block at a time.
+     */
+    @Override
+    void mightContainHashes(long[] hashes, int count, boolean[] results, int offset) {
+        for (int i = 0; i < count; i++) {
+            long hash = hashes[i];
+            int blockOffset = blockOffset(hash);
+            int probe = (int) hash;
+            long missing = 0;
+            for (int j = 0; j < numHashFunctions; j++) {
+                probe = nextProbe(probe);
+                int bit = probe >>> BIT_SHIFT;
+                missing |= ~words.get(blockOffset + (bit >>> 6)) & (1L << bit);
+            }
+            results[offset + i] = missing == 0;
+        }
+    }
+
+    /**
+     * Steps the lower 32 bits of the hash through a multiplicative congruential sequence whose top 9 bits pick the
+     * probed bits. Unlike double hashing inside the block, every one of the 2^32 seeds gives its own probe pattern.
+     */
+    private static int nextProbe(int probe) {
+        return probe * 0x9E3779B9 + 0x7F4A7C15;
+    }
+
+    /** Maps the upper 32 bits of the hash onto [0, numBlocks) with a multiply-shift instead of a modulo */
+    private int blockOffset(long hash) {
+        return (int) (((hash >>> 32) * numBlocks) >>> 32) * LONGS_PER_BLOCK;
+    }
+
+    /**
+     * Returns the probability that {@link #mightContain(String)} erroneously returns true for a device id that has
+     * not been put in the filter. It is computed from the fill of every block, so it costs one pass over the bits.
+     */
+    @Override
+    public double expectedFpp() {
+        double sum = 0;
+        for (int offset = 0; offset < words.length(); offset += LONGS_PER_BLOCK) {
+            int bitCount = 0;
+            for (int i = 0; i < LONGS_PER_BLOCK; i++) {
+                bitCount += Long.bitCount(words.get(offset + i));
+            }
+            sum += Math.pow((double) bitCount / BLOCK_BITS, numHashFunctions);
+        }
+        return sum / numBlocks;
+    }
+
+    @Override
+    public long bitSize() {
+        return (long) words.length() * Long.SIZE;
+    }
+
+    /** Reads one long per 4 KB page */
+    @Override
+    public void preTouch() {
+        for (int i = 0; i < words.length(); i += PAGE_LONGS) {
+            words.getOpaque(i);
+        }
+    }
+
+    /** Returns true if the bits of this filter are outside the Java heap */
+    public boolean isOffHeap() {
+        return words.isOffHeap();
+    }
+
+    /** Writes the changes of a filter mapped writable from a snapshot file back to the file */
+    void force() {
+        words.force();
+    }
+
+    @Override
+    public DeviceHashStrategy hashStrategy() {
+        return hashStrategy;
+    }
+
+    /** Returns the number of bits probed inside a block per device id */
+    public int numHashFunctions() {
+        return numHashFunctions;
+    }
+
+    /** Returns the number of 512 bit blocks */
+    int numBlocks() {
+        return numBlocks;
+    }
+
+    /**
+     * Writes this filter to an output stream, with a custom format (not Java serialization).
+     *
+     * @param out the stream to write to
+     * @throws IOException if writing to the stream fails
+     */
+    @Override
+    public void writeTo(OutputStream out) throws IOException {
+        DataOutputStream dout = new DataOutputStream(out);
+        dout.writeInt(hashStrategy.snapshotId());
+        dout.writeInt(numHashFunctions);
+        dout.writeInt(numBlocks);
+        for (int i = 0; i < words.length(); i++) {
+            dout.writeLong(words.get(i));
+        }
+        dout.flush();
+    }
+
+    /**
+     * Reads a filter written by {@link #writeTo(OutputStream)}.
+     *
+     * @param in the stream to read from
+     * @return the filter
+     * @throws IOException if the stream is truncated or does not contain a blocked filter
+     */
+    public static BlockedBloomFilter readFrom(InputStream in) throws IOException {
+        DataInputStream din = new DataInputStream(in);
+        DeviceHashStrategy hashStrategy = DeviceHashStrategy.read(din);
+        int numHashFunctions = din.readInt();
+        int numBlocks = din.readInt();
+        checkHeader(numHashFunctions, numBlocks);
+        LongStorage words = LongStorage.onHeap(numBlocks * LONGS_PER_BLOCK);
+        for (int i = 0; i < words.length(); i++) {
+            words.set(i, din.readLong());
+        }
+        return new BlockedBloomFilter(words, numHashFunctions, hashStrategy);
+    }
+
+    /** Returns the bits of this filter */
+    LongStorage storage() {
+        return words;
+    }
+
+    /**
+     * Returns a filter over the bits of another blocked filter, e.g. read or mapped from a {@link SnapshotFile}.
+     *
+     * @param words the bits, a whole number of 512 bit blocks
+     * @param numHashFunctions the number of bits probed per device id of the filter that set the bits
+     * @param hashStrategy the hash function of the filter that set the bits
+     * @return the filter
+     * @throws IOException if the parameters are not those of a blocked filter
+     */
+    static BlockedBloomFilter of(LongStorage words, int numHashFunctions, DeviceHashStrategy hashStrategy)
+            throws IOException {
+        if (words.length() % LONGS_PER_BLOCK != 0) {
+            throw new IOException("Blocked Bloom filter of " + words.length() + " longs is not made of blocks");
+        }
+        checkHeader(numHashFunctions, words.length() / LONGS_PER_BLOCK);
+        return new BlockedBloomFilter(words, numHashFunctions, hashStrategy);
+    }
+
+    private static void checkHeader(int numHashFunctions, int numBlocks) throws IOException {
+        if (numHashFunctions < 1 || numHashFunctions > MAX_HASH_FUNCTIONS
+                || numBlocks < 1 || numBlocks > MAX_NUM_BLOCKS) {
+            throw new IOException("Corrupt blocked Bloom filter header: numHashFunctions=" + numHashFunctions
+                    + ", numBlocks=" + numBlocks);
+        }
+    }
+
+    /**
+     * The false positive probability of a blocked filter whose blocks hold on average {@code keysPerBlock} keys. The
+     * number of keys in a block is Poisson distributed and a block holding i keys answers a false positive with the
+     * standard Bloom filter probability for i keys in 512 bits.
+     */
+    private static double blockedFpp(double keysPerBlock, int numHashFunctions) {
+        double fpp = 0;
+        double logPoisson = -keysPerBlock;
+        double logKeysPerBlock = Math.log(keysPerBlock);
+        int limit = (int) (keysPerBlock + 12 * Math.sqrt(keysPerBlock) + 20);
+        for (int i = 0; i <= limit; i++) {
+            if (i > 0) {
+                logPoisson += logKeysPerBlock - Math.log(i);
+            }
+            double bitSetProbability = 1.0 - Math.pow(1.0 - 1.0 / BLOCK_BITS, (double) numHashFunctions * i);
+            fpp += Math.exp(logPoisson) * Math.pow(bitSetProbability, numHashFunctions);
+        }
+        return fpp;
+    }
+}
@@ -0,0 +1,47 @@
+package com.poc.device.store;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The outcome of a bulk load of suspect devices, such as
+ * {@link SuspectDeviceStore#addAllSuspectDevices(java.util.List, java.util.concurrent.ForkJoinPool)} or
+ * {@link SuspectDeviceStore#addAllSuspectDevices(java.nio.file.Path, java.util.concurrent.ForkJoinPool)}: how many
+ * devices were added, by how many threads and how fast.
+ */
+public final class BulkLoadStats {
+    private final long devices;
+    private final int threads;
+    private final long elapsedNanos;
+
+    BulkLoadStats(long devices, int threads, long elapsedNanos) {
+        this.devices = devices;
+        this.threads = threads;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /** Returns the number of devices added */
+    public long devices() {
+        return devices;
+    }
+
+    /** Returns the number of threads the devices were added on, 1 if the filter does not support concurrent puts */
+    public int threads() {
+        return threads;
+    }
+
+    /** Returns the wall clock time of the load */
+    public long elapsed(TimeUnit unit) {
+        return unit.convert(elapsedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /** Returns the load throughput in devices per second */
+    public double devicesPerSecond() {
+        return elapsedNanos == 0 ? 0.0 : devices * 1e9 / elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Loaded %d devices on %d threads in %d ms, %.0f devices/s", devices, threads,
+                elapsed(TimeUnit.MILLISECONDS), devicesPerSecond());
+    }
+}
@@ -0,0 +1,135 @@
+package com.poc.device.store;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Little endian reads of the bytes of a hash input, so a hash function is written once for byte arrays, buffers and
+ * device ids whose UTF-8 bytes are their chars.
+ *
+ * @param <T> the type of the input
+ */
+abstract class ByteAccess<T> {
+    /** Reads the bytes of a byte[] */
+    static final ByteAccess<byte[]> BYTES = new ByteAccess<byte[]>() {
+        private final VarHandle longs = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+        private final VarHandle ints = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+
+        @Override
+        long getLong(byte[] input, int offset) {
+            return (long) longs.get(input, offset);
+        }
+
+        @Override
+        long getUnsignedInt(byte[] input, int offset) {
+            return (int) ints.get(input, offset) & 0xFFFF_FFFFL;
+        }
+
+        @Override
+        int getUnsignedByte(byte[] input, int offset) {
+            return input[offset] & 0xFF;
+        }
+    };
+
+    /** Reads the chars of a string of ASCII chars, which are its UTF-8 bytes */
+    static final ByteAccess<String> ASCII = new ByteAccess<String>() {
+        @Override
+        long getLong(String input, int offset) {
+            return (long) input.charAt(offset)
+                    | (long) input.charAt(offset + 1) << 8
+                    | (long) input.charAt(offset + 2) << 16
+                    | (long) input.charAt(offset + 3) << 24
+                    | (long) input.charAt(offset + 4) << 32
+                    | (long) input.charAt(offset + 5) << 40
+                    | (long) input.charAt(offset + 6) << 48
+                    | (long) input.charAt(offset + 7) << 56;
+        }
+
+        @Override
+        long getUnsignedInt(String input, int offset) {
+            return (long) input.charAt(offset)
+                    | (long) input.charAt(offset + 1) << 8
+                    | (long) input.charAt(offset + 2) << 16
+                    | (long) input.charAt(offset + 3) << 24;
+        }
+
+        @Override
+        int getUnsignedByte(String input, int offset) {
+            return input.charAt(offset);
+        }
+    };
+
+    /** Reads the bytes of a ByteBuffer at absolute indexes, whatever the order and position of the buffer */
+    static final ByteAccess<ByteBuffer> BUFFER = new ByteAccess<ByteBuffer>() {
+        private final VarHandle longs = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+        private final VarHandle ints = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+
+        @Override
+        long getLong(ByteBuffer input, int offset) {
+            return (long) longs.get(input, offset);
+        }
+
+        @Override
+        long getUnsignedInt(ByteBuffer input, int offset) {
+            return (int) ints.get(input, offset) & 0xFFFF_FFFFL;
+        }
+
+        @Override
+        int getUnsignedByte(ByteBuffer input, int offset) {
+            return input.get(offset) & 0xFF;
+        }
+    };
+
+    /**
+     * Reads the chars of a char sequence of ASCII chars, which are its UTF-8 bytes. Kept apart from {@link #ASCII} so
+     * that the string reads stay monomorphic.
+     */
+    static final ByteAccess<CharSequence> CHARS = new ByteAccess<CharSequence>() {
+        @Override
+        long getLong(CharSequence input, int offset) {
+            return getUnsignedInt(input, offset) | getUnsignedInt(input, offset + 4) << 32;
+        }
+
+        @Override
+        long getUnsignedInt(CharSequence input, int offset) {
+            return (long) input.charAt(offset)
+                    | (long) input.charAt(offset + 1) << 8
+                    | (long) input.charAt(offset + 2) << 16
+                    | (long) input.charAt(offset + 3) << 24;
+        }
+
+        @Override
+        int getUnsignedByte(CharSequence input, int offset) {
+            return input.charAt(offset);
+        }
+    };
+
+    /** Returns true if every char of the string is ASCII, so {@link #ASCII} reads its UTF-8 bytes */
+    static boolean isAscii(String input) {
+        int chars = 0;
+        for (int i = 0; i < input.length(); i++) {
+            chars |= input.charAt(i);
+        }
+        return chars < 0x80;
+    }
+
+    /** Returns true if every char of the char sequence is ASCII, so {@link #CHARS} reads its UTF-8 bytes */
+    static boolean isAscii(CharSequence input) {
+        int chars = 0;
+        for (int i = 0; i < input.length(); i++) {
+            chars |= input.charAt(i);
+        }
+        return chars < 0x80;
+    }
+
+    /** Reads 8 bytes as a little endian long */
+    abstract long getLong(T input, int offset);
+
+    /** Reads 4 bytes as an unsigned little endian int */
+    abstract long getUnsignedInt(T input, int offset);
+
+    /** Reads a byte as an unsigned value */
+    abstract int getUnsignedByte(T input, int offset);
+}
@@ -0,0 +1,136 @@
+package com.poc.device.store;
+
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+
+/**
+ * A filter whose positive answers are confirmed by a {@link FingerprintSet} of the 64 bit hashes of the device ids.
+ *
+ * Every device id put is put into the filter and its hash into the set. A lookup asks the filter first and only
+ * hashes the device id for the set when the filter answers true, so negative lookups cost what they cost without
+ * the set, while positive ones are answered exactly: the false positives of the filter are rejected by the set.
+ *
+ * Devices cannot be removed and the filter cannot be written to a snapshot, the set would not be in it.
+ */
+final class ConfirmedMembershipFilter implements MembershipFilter, Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final MembershipFilter filter;
+    private final FingerprintSet fingerprints;
+
+    ConfirmedMembershipFilter(MembershipFilter filter, FingerprintSet fingerprints) {
+        this.filter = filter;
+        this.fingerprints = fingerprints;
+    }
+
+    @Override
+    public boolean put(String deviceUid) {
+        boolean changed = filter.put(deviceUid);
+        return fingerprints.add(filter.hashStrategy().hash64(deviceUid)) || changed;
+    }
+
+    @Override
+    public boolean mightContain(String deviceUid) {
+        return filter.mightContain(deviceUid) && fingerprints.contains(filter.hashStrategy().hash64(deviceUid));
+    }
+
+    @Override
+    public boolean put(long deviceId) {
+        boolean changed = filter.put(deviceId);
+        return fingerprints.add(filter.hashStrategy().hash64(deviceId)) || changed;
+    }
+
+    @Override
+    public boolean mightContain(long deviceId) {
+        return filter.mightContain(deviceId) && fingerprints.contains(filter.hashStrategy().hash64(deviceId));
+    }
+
+    @Override
+    public boolean put(CharSequence deviceUid) {
+        boolean changed = filter.put(deviceUid);
+        return fingerprints.add(filter.hashStrategy().hash64(deviceUid)) || changed;
+    }
+
+    @Override
+    public boolean mightContain(CharSequence deviceUid) {
+        return filter.mightContain(deviceUid) && fingerprints.contains(filter.hashStrategy().hash64(deviceUid));
+    }
+
+    @Override
+    public boolean put(byte[] deviceUid, int offset, int length) {
+        boolean changed = filter.put(deviceUid, offset, length);
+        return fingerprints.add(filter.hashStrategy().hash64(deviceUid, offset, length)) || changed;
+    }
+
+    @Override
+    public boolean mightContain(byte[] deviceUid, int offset, int length) {
+        return filter.mightContain(deviceUid, offset, length)
+                && fingerprints.contains(filter.hashStrategy().hash64(deviceUid, offset, length));
+    }
+
+    @Override
+    public boolean put(ByteBuffer deviceUid) {
+        boolean changed = filter.put(deviceUid);
+        return fingerprints.add(filter.hashStrategy().hash64(deviceUid)) || changed;
+    }
+
+    @Override
+    public boolean mightContain(ByteBuffer deviceUid) {
+        return filter.mightContain(deviceUid) && fingerprints.contains(filter.hashStrategy().hash64(deviceUid));
+    }
+
+    /** Checks the batch with the filter, then confirms its positive answers one by one */
+    @Override
+    public void mightContain(String[] deviceUids, boolean[] results) {
+        filter.mightContain(deviceUids, results);
+        DeviceHashStrategy hashStrategy = filter.hashStrategy();
+        for (int i = 0; i < deviceUids.length; i++) {
+            results[i] = results[i] && fingerprints.contains(hashStrategy.hash64(deviceUids[i]));
+        }
+    }
+
+    /** Checks the batch with the filter, then confirms its positive answers one by one */
+    @Override
+    public void mightContain(long[] deviceIds, boolean[] results) {
+        filter.mightContain(deviceIds, results);
+        DeviceHashStrategy hashStrategy = filter.hashStrategy();
+        for (int i = 0; i < deviceIds.length; i++) {
+            results[i] = results[i] && fingerprints.contains(hashStrategy.hash64(deviceIds[i]));
+        }
+    }
+
+    /** Returns the probability that two device ids share a 64 bit hash, the answers are exact otherwise */
+    @Override
+    public double expectedFpp() {
+        return filter.expectedFpp() * fingerprints.size() / 0x1p64;
+    }
+
+    /** Returns the bits of the filter and of the set */
+    @Override
+    public long bitSize() {
+        return filter.bitSize() + fingerprints.bitSize();
+    }
+
+    @Override
+    public DeviceHashStrategy hashStrategy() {
+        return filter.hashStrategy();
+    }
+
+    @Override
+    public boolean supportsConcurrentPuts() {
+        return filter.supportsConcurrentPuts();
+    }
+
+    @Override
+    public void preTouch() {
+        filter.preTouch();
+        fingerprints.preTouch();
+    }
+
+    /** Always throws, the set is not part of the format of the filter */
+    @Override
+    public void writeTo(OutputStream out) {
+        throw new UnsupportedOperationException("A filter with exact confirmation cannot be written");
+    }
+}
@@ -0,0 +1,148 @@
+package com.poc.device.store;
+
+import java.io.Serializable;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * A Count-Min sketch (Cormode and Muthukrishnan, "An Improved Data Stream Summary: The Count-Min Sketch and its
+ * Applications", 2005) that estimates how many times each device id was reported.
+ *
+ * The sketch is {@code depth} rows of {@code width} int counters in a single int[]. A device id increments one counter
+ * per row, and its estimate is the smallest of them. Estimates never undercount; with the conservative update, which
+ * raises only the counters below the new estimate, they overcount less than the {@code epsilon * total reports} the
+ * plain sketch guarantees with probability {@code 1 - delta}. Counters saturate at {@link Integer#MAX_VALUE}.
+ *
+ * The counters of a device id are derived from its 64 bit hash by the {@link DeviceHashStrategy} of the sketch, the
+ * hash a {@link HashedMembershipFilter} of the same strategy probes, so one hash serves both. Estimates are lock free,
+ * reports are serialized.
+ */
+public final class CountMinSketch implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private static final VarHandle COUNTERS = MethodHandles.arrayElementVarHandle(int[].class);
+    private static final int MAX_DEPTH = 32;
+
+    private final int[] counters;
+    private final int width;
+    private final int depth;
+    private final DeviceHashStrategy hashStrategy;
+    private long totalReports;
+
+    private CountMinSketch(int width, int depth, DeviceHashStrategy hashStrategy) {
+        this.counters = new int[width * depth];
+        this.width = width;
+        this.depth = depth;
+        this.hashStrategy = hashStrategy;
+    }
+
+    /**
+     * Creates a sketch whose estimates exceed the true count by at most {@code epsilon} times the total number of
+     * reports, with probability {@code 1 - delta}. It takes {@code 4 * ceil(e / epsilon) * ceil(ln(1 / delta))} bytes.
+     *
+     * @param epsilon the error relative to the total number of reports, must be between 0 and 1 (exclusive)
+     * @param delta the probability of exceeding the error, must be between 0 and 1 (exclusive)
+     * @param hashStrategy the hash function of device ids
+     * @return the sketch
+     */
+    public static CountMinSketch create(double epsilon, double delta, DeviceHashStrategy hashStrategy) {
+        if (hashStrategy == null) {
+            throw new IllegalArgumentException("Hash strategy cannot be null");
+        }
+        if (!(epsilon > 0.0 && epsilon < 1.0) || !(delta > 0.0 && delta < 1.0)) {
+            throw new IllegalArgumentException("Epsilon and delta must be in (0, 1): " + epsilon + ", " + delta);
+        }
+        long width = (long) Math.ceil(Math.E / epsilon);
+        int depth = Math.min(MAX_DEPTH, (int) Math.ceil(Math.log(1 / delta)));
+        if (width * depth > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Count-Min sketch for epsilon " + epsilon + " is too large");
+        }
+        return new CountMinSketch((int) width, Math.max(depth, 1), hashStrategy);
+    }
+
+    /**
+     * Counts a report of a device id.
+     *
+     * @return the estimated number of reports of the device id, including this one
+     */
+    public int add(String deviceUid) {
+        return addHash(hashStrategy.hash64(deviceUid));
+    }
+
+    /** Counts a report of a numeric device id, see {@link #add(String)} */
+    public int add(long deviceId) {
+        return addHash(hashStrategy.hash64(deviceId));
+    }
+
+    /** Returns the estimated number of reports of a device id, never less than the true number */
+    public int estimate(String deviceUid) {
+        return estimateHash(hashStrategy.hash64(deviceUid));
+    }
+
+    /** Returns the estimated number of reports of a numeric device id, see {@link #estimate(String)} */
+    public int estimate(long deviceId) {
+        return estimateHash(hashStrategy.hash64(deviceId));
+    }
+
+    /** Counts a report of the hash of a device id with the conservative update, returns its new estimate */
+    synchronized int addHash(long hash) {
+        int estimate = estimateHash(hash);
+        if (estimate == Integer.MAX_VALUE) {
+            return estimate;
+        }
+        int next = estimate + 1;
+        long combinedHash = hash;
+        long step = DeviceHashing.mix64(hash) | 1;
+        for (int row = 0; row < depth; row++) {
+            int index = index(row, combinedHash);
+            if (counters[index] < next) {
+                COUNTERS.setOpaque(counters, index, next);
+            }
+            combinedHash += step;
+        }
+        totalReports++;
+        return next;
+    }
+
+    /** Returns the smallest counter of the hash of a device id */
+    int estimateHash(long hash) {
+        int estimate = Integer.MAX_VALUE;
+        long combinedHash = hash;
+        long step = DeviceHashing.mix64(hash) | 1;
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, (int) COUNTERS.getOpaque(counters, index(row, combinedHash)));
+            combinedHash += step;
+        }
+        return estimate;
+    }
+
+    /** Maps the high 32 bits of the hash of a row onto the row, without a division */
+    private int index(int row, long combinedHash) {
+        return row * width + (int) (((combinedHash >>> 32) * width) >>> 32);
+    }
+
+    /** Returns the number of reports counted */
+    public synchronized long totalReports() {
+        return totalReports;
+    }
+
+    /** Returns the number of counters per row */
+    public int width() {
+        return width;
+    }
+
+    /** Returns the number of rows, each a counter per device id */
+    public int depth() {
+        return depth;
+    }
+
+    /** Returns the number of bits of the counters */
+    public long bitSize() {
+        return (long) counters.length * Integer.SIZE;
+    }
+
+    /** Returns the hash function of device ids */
+    public DeviceHashStrategy hashStrategy() {
+        return hashStrategy;
+    }
+}
@@ -0,0 +1,251 @@
+package com.poc.device.store;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A counting Bloom filter of device ids that supports removing device ids.
+ *
+ * It is laid out like a standard Bloom filter, with k probes per device id over m positions sized for the expected
+ * insertions and false positive probability, but every position is a 4 bit counter instead of a bit. Sixteen
+ * counters are packed into a long, so the filter takes 4x the memory of a standard Bloom filter.
+ *
+ * Counters saturate at 15 and are never decremented afterwards, since their true count is unknown. Each put counts,
+ * so a device id that was put twice has to be removed twice.
+ *
+ * Counters are updated with compare-and-set, puts from several threads do not need a lock. Removes are serialized,
+ * so that two removes of a device id put once cannot both find it and decrement the counters of other device ids.
+ *
+ * Device ids are hashed with a {@link DeviceHashStrategy}, {@link DeviceHashStrategy#MURMUR3_128} unless the filter
+ * is created with another one.
+ */
+public final class CountingBloomFilter extends HashedMembershipFilter
+        implements RemovableMembershipFilter, Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private static final int COUNTER_BITS = 4;
+    private static final int COUNTERS_PER_LONG = Long.SIZE / COUNTER_BITS;
+    private static final long MAX_COUNT = (1L << COUNTER_BITS) - 1;
+    private static final VarHandle WORDS = MethodHandles.arrayElementVarHandle(long[].class);
+
+    private final long[] words;
+    private final long numCounters;
+    private final int numHashFunctions;
+    private final AtomicLong nonZeroCounters;
+    private final DeviceHashStrategy hashStrategy;
+
+    private CountingBloomFilter(long[] words, long numCounters, int numHashFunctions, long nonZeroCounters,
+                                DeviceHashStrategy hashStrategy) {
+        this.words = words;
+        this.numCounters = numCounters;
+        this.numHashFunctions = numHashFunctions;
+        this.nonZeroCounters = new AtomicLong(nonZeroCounters);
+        this.hashStrategy = hashStrategy;
+    }
+
+    /**
+     * Creates a filter for the expected number of insertions and the required false positive probability.
+     *
+     * @param expectedInsertions the number of expected insertions(n) to the constructed filter
+     * @param fpp the desired false positive probability, must be between 0 and 1 (exclusive)
+     * @return the filter
+     */
+    public static CountingBloomFilter create(long expectedInsertions, double fpp) {
+        return create(expectedInsertions, fpp, DeviceHashStrategy.MURMUR3_128);
+    }
+
+    /** Creates a filter like {@link #create(long, double)} that hashes device ids with the given strategy */
+    public static CountingBloomFilter create(long expectedInsertions, double fpp, DeviceHashStrategy hashStrategy) {
+        if (hashStrategy == null) {
+            throw new IllegalArgumentException("Hash strategy cannot be null");
+        }
+        if (expectedInsertions < 0) {
+            throw new IllegalArgumentException("Expected insertions cannot be negative: " + expectedInsertions);
+        }
+        if (!(fpp > 0.0 && fpp < 1.0)) {
+            throw new IllegalArgumentException("False positive probability must be in (0, 1): " + fpp);
+        }
+        long n = Math.max(expectedInsertions, 1);
+        long numCounters = Math.max((long) Math.ceil(-n * Math.log(fpp) / (Math.log(2) * Math.log(2))), Long.SIZE);
+        int numHashFunctions = Math.max(1, (int) Math.round((double) numCounters / n * Math.log(2)));
+        long numWords = (numCounters + COUNTERS_PER_LONG - 1) / COUNTERS_PER_LONG;
+        if (numWords > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Counting filter for " + expectedInsertions + " insertions is too large");
+        }
+        return new CountingBloomFilter(new long[(int) numWords], numCounters, numHashFunctions, 0, hashStrategy);
+    }
+
+    /**
+     * Puts a device id into the filter, incrementing its k counters.
+     *
+     * @param deviceUid the device id
+     * @return true if any counter was zero, that is the filter did not report the device id as a member before
+     */
+    @Override
+    public boolean put(String deviceUid) {
+        return putHash(hashStrategy.hash64(deviceUid));
+    }
+
+    /** Removes a device id by decrementing its k counters, if the filter reports it as a member */
+    @Override
+    public boolean remove(String deviceUid) {
+        return removeHash(hashStrategy.hash64(deviceUid));
+    }
+
+    @Override
+    public boolean remove(long deviceId) {
+        return removeHash(hashStrategy.hash64(deviceId));
+    }
+
+    @Override
+    boolean putHash(long hash) {
+        long combinedHash = hash;
+        long step = DeviceHashing.mix64(hash) | 1;
+        boolean changed = false;
+        for (int i = 0; i < numHashFunctions; i++) {
+            changed |= add(counterIndex(combinedHash), 1);
+            combinedHash += step;
+        }
+        return changed;
+    }
+
+    @Override
+    boolean mightContainHash(long hash) {
+        long combinedHash = hash;
+        long step = DeviceHashing.mix64(hash) | 1;
+        for (int i = 0; i < numHashFunctions; i++) {
+            long index = counterIndex(combinedHash);
+            if (count(words[(int) (index / COUNTERS_PER_LONG)], index) == 0) {
+                return false;
+            }
+            combinedHash += step;
+        }
+        return true;
+    }
+
+    synchronized boolean removeHash(long hash) {
+        if (!mightContainHash(hash)) {
+            return false;
+        }
+        long combinedHash = hash;
+        long step = DeviceHashing.mix64(hash) | 1;
+        for (int i = 0; i < numHashFunctions; i++) {
+            add(counterIndex(combinedHash), -1);
+            combinedHash += step;
+        }
+        return true;
+    }
+
+    /**
+     * Adds 1 or -1 to a counter unless it is saturated, or would drop below zero. Returns true if the counter moved
+     * between zero and non zero.
+     */
+    private boolean add(long index, int delta) {
+        int wordIndex = (int) (index / COUNTERS_PER_LONG);
+        long shift = (index % COUNTERS_PER_LONG) * COUNTER_BITS;
+        while (true) {
+            long word = (long) WORDS.getVolatile(words, wordIndex);
+            long count = (word >>> shift) & MAX_COUNT;
+            if (count == MAX_COUNT || (count == 0 && delta < 0)) {
+                return false;
+            }
+            if (WORDS.compareAndSet(words, wordIndex, word, word + ((long) delta << shift))) {
+                if (count == 0) {
+                    nonZeroCounters.incrementAndGet();
+                    return true;
+                }
+                if (count == 1 && delta < 0) {
+                    nonZeroCounters.decrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        }
+    }
+
+    private long counterIndex(long combinedHash) {
+        return (combinedHash & Long.MAX_VALUE) % numCounters;
+    }
+
+    private static long count(long word, long index) {
+        return (word >>> ((index % COUNTERS_PER_LONG) * COUNTER_BITS)) & MAX_COUNT;
+    }
+
+    /** Counters are updated with compare-and-set, puts need no lock */
+    @Override
+    public boolean supportsConcurrentPuts() {
+        return true;
+    }
+
+    /** Returns the probability of a false positive given the current number of non zero counters */
+    @Override
+    public double expectedFpp() {
+        return Math.pow((double) nonZeroCounters.get() / numCounters, numHashFunctions);
+    }
+
+    @Override
+    public long bitSize() {
+        return (long) words.length * Long.SIZE;
+    }
+
+    @Override
+    public DeviceHashStrategy hashStrategy() {
+        return hashStrategy;
+    }
+
+    /**
+     * Writes this filter to an output stream, with a custom format (not Java serialization).
+     *
+     * @param out the stream to write to
+     * @throws IOException if writing to the stream fails
+     */
+    @Override
+    public void writeTo(OutputStream out) throws IOException {
+        DataOutputStream dout = new DataOutputStream(out);
+        dout.writeInt(hashStrategy.snapshotId());
+        dout.writeLong(numCounters);
+        dout.writeInt(numHashFunctions);
+        for (long word : words) {
+            dout.writeLong(word);
+        }
+        dout.flush();
+    }
+
+    /**
+     * Reads a filter written by {@link #writeTo(OutputStream)}.
+     *
+     * @param in the stream to read from
+     * @return the filter
+     * @throws IOException if the stream is truncated or does not contain a counting filter
+     */
+    public static CountingBloomFilter readFrom(InputStream in) throws IOException {
+        DataInputStream din = new DataInputStream(in);
+        DeviceHashStrategy hashStrategy = DeviceHashStrategy.read(din);
+        long numCounters = din.readLong();
+        int numHashFunctions = din.readInt();
+        long numWords = (numCounters + COUNTERS_PER_LONG - 1) / COUNTERS_PER_LONG;
+        if (numCounters < 1 || numWords > Integer.MAX_VALUE - 8 || numHashFunctions < 1) {
+            throw new IOException("Corrupt counting Bloom filter header: numCounters=" + numCounters
+                    + ", numHashFunctions=" + numHashFunctions);
+        }
+        long[] words = new long[(int) numWords];
+        long nonZeroCounters = 0;
+        for (int i = 0; i < words.length; i++) {
+            long word = din.readLong();
+            words[i] = word;
+            for (int counter = 0; counter < COUNTERS_PER_LONG; counter++) {
+                if (((word >>> (counter * COUNTER_BITS)) & MAX_COUNT) != 0) {
+                    nonZeroCounters++;
+                }
+            }
+        }
+        return new CountingBloomFilter(words, numCounters, numHashFunctions, nonZeroCounters, hashStrategy);
+    }
+}
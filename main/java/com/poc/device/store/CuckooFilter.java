@@ -0,0 +1,315 @@
+package com.poc.device.store;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Random;
+
+/**
+ * A cuckoo filter of device ids (Fan et al., "Cuckoo Filter: Practically Better Than Bloom", 2014) that supports
+ * removing device ids.
+ *
+ * Every device id stores a 16 bit fingerprint in one of two candidate buckets of four slots. A bucket is a single
+ * long, so a lookup reads at most two longs and compares all four fingerprints of a bucket at once. The filter is
+ * sized for a 95% load, ~17 bits per device id, and answers false positives with a probability of ~0.01%.
+ *
+ * Every put stores a fingerprint, even if an equal one is already in the buckets of the device id, so two device ids
+ * that share a fingerprint and buckets each keep their own entry and removing one never removes the other. As in the
+ * reference filter, a fingerprint is stored at most {@code 2 * 4} times in its two buckets: further puts of a device
+ * id put that many times are not recorded, and each put of the same device id takes a slot, so a device id must be
+ * removed as many times as it was put.
+ *
+ * Lookups are lock free. Puts and removes are serialized, and a put that has to relocate fingerprints moves each of
+ * them into its other bucket before clearing its old slot, so a concurrent lookup never misses a stored device id.
+ *
+ * Device ids are hashed with a {@link DeviceHashStrategy}, {@link DeviceHashStrategy#MURMUR3_128} unless the filter
+ * is created with another one.
+ */
+public final class CuckooFilter extends HashedMembershipFilter implements RemovableMembershipFilter, Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private static final int SLOTS_PER_BUCKET = 4;
+    private static final int FINGERPRINT_BITS = 16;
+    private static final long FINGERPRINT_MASK = (1L << FINGERPRINT_BITS) - 1;
+    private static final long LOW_BITS = 0x0001_0001_0001_0001L;
+    private static final long HIGH_BITS = 0x8000_8000_8000_8000L;
+    private static final double MAX_LOAD = 0.95;
+    private static final int MAX_KICKS = 500;
+    private static final int MAX_WALKS = 8;
+    private static final VarHandle BUCKETS = MethodHandles.arrayElementVarHandle(long[].class);
+
+    /** The smallest false positive probability the 16 bit fingerprints can deliver at full load */
+    public static final double MIN_FPP = 2.0 * SLOTS_PER_BUCKET / FINGERPRINT_MASK;
+
+    private final long[] buckets;
+    private final DeviceHashStrategy hashStrategy;
+    private final Random random = new Random();
+    private long count;
+
+    private CuckooFilter(long[] buckets, long count, DeviceHashStrategy hashStrategy) {
+        this.buckets = buckets;
+        this.count = count;
+        this.hashStrategy = hashStrategy;
+    }
+
+    /**
+     * Creates a filter for the expected number of insertions.
+     *
+     * @param expectedInsertions the number of expected insertions(n) to the constructed filter
+     * @param fpp the desired false positive probability, cannot be below {@link #MIN_FPP}
+     * @return the filter
+     */
+    public static CuckooFilter create(long expectedInsertions, double fpp) {
+        return create(expectedInsertions, fpp, DeviceHashStrategy.MURMUR3_128);
+    }
+
+    /** Creates a filter like {@link #create(long, double)} that hashes device ids with the given strategy */
+    public static CuckooFilter create(long expectedInsertions, double fpp, DeviceHashStrategy hashStrategy) {
+        if (hashStrategy == null) {
+            throw new IllegalArgumentException("Hash strategy cannot be null");
+        }
+        if (expectedInsertions < 0) {
+            throw new IllegalArgumentException("Expected insertions cannot be negative: " + expectedInsertions);
+        }
+        if (!(fpp >= MIN_FPP && fpp < 1.0)) {
+            throw new IllegalArgumentException("Cuckoo filters with 16 bit fingerprints cannot reach FPP " + fpp);
+        }
+        long numBuckets = (long) Math.ceil(Math.max(expectedInsertions, 1) / (SLOTS_PER_BUCKET * MAX_LOAD));
+        if (numBuckets > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Cuckoo filter for " + expectedInsertions + " insertions is too large");
+        }
+        return new CuckooFilter(new long[(int) numBuckets], 0, hashStrategy);
+    }
+
+    /**
+     * Puts a device id into the filter.
+     *
+     * @param deviceUid the device id
+     * @return true if the filter changed, false if its buckets already hold the fingerprint of the device id
+     *         {@code 2 * 4} times
+     * @throws IllegalStateException if the filter is too full to place the device id
+     */
+    @Override
+    public boolean put(String deviceUid) {
+        return putHash(hashStrategy.hash64(deviceUid));
+    }
+
+    @Override
+    public boolean remove(String deviceUid) {
+        return removeHash(hashStrategy.hash64(deviceUid));
+    }
+
+    @Override
+    public boolean remove(long deviceId) {
+        return removeHash(hashStrategy.hash64(deviceId));
+    }
+
+    @Override
+    synchronized boolean putHash(long hash) {
+        long fingerprint = fingerprint(hash);
+        int bucket = index(hash);
+        int altBucket = altIndex(bucket, fingerprint);
+        if (copies(buckets[bucket], fingerprint) + copies(buckets[altBucket], fingerprint)
+                >= 2 * SLOTS_PER_BUCKET) {
+            return false;
+        }
+        if (!insert(bucket, fingerprint) && !insert(altBucket, fingerprint)) {
+            for (int walk = 0; walk < MAX_WALKS; walk++) {
+                if (relocate(random.nextBoolean() ? bucket : altBucket, fingerprint)) {
+                    break;
+                }
+                if (walk == MAX_WALKS - 1) {
+                    throw new IllegalStateException("Cuckoo filter is full at " + count + " device ids");
+                }
+            }
+        }
+        count++;
+        return true;
+    }
+
+    @Override
+    boolean mightContainHash(long hash) {
+        long fingerprint = fingerprint(hash);
+        int bucket = index(hash);
+        return contains(buckets[bucket], fingerprint) || contains(buckets[altIndex(bucket, fingerprint)], fingerprint);
+    }
+
+    synchronized boolean removeHash(long hash) {
+        long fingerprint = fingerprint(hash);
+        int bucket = index(hash);
+        if (clear(bucket, fingerprint) || clear(altIndex(bucket, fingerprint), fingerprint)) {
+            count--;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Makes room for a fingerprint in a full bucket with a random cuckoo walk. The walk is planned first without
+     * changing the filter, then applied backwards from the free slot it found, so every fingerprint is written to its
+     * new bucket before its old slot is overwritten.
+     */
+    private boolean relocate(int bucket, long fingerprint) {
+        int[] pathBuckets = new int[MAX_KICKS];
+        int[] pathSlots = new int[MAX_KICKS];
+        int current = bucket;
+        for (int depth = 0; depth < MAX_KICKS; depth++) {
+            int slot = random.nextInt(SLOTS_PER_BUCKET);
+            for (int i = 0; i < depth; i++) {
+                if (pathBuckets[i] == current && pathSlots[i] == slot) {
+                    return false;
+                }
+            }
+            pathBuckets[depth] = current;
+            pathSlots[depth] = slot;
+            long victim = lane(buckets[current], slot);
+            int next = altIndex(current, victim);
+            if (insert(next, victim)) {
+                for (int i = depth; i > 0; i--) {
+                    setLane(pathBuckets[i], pathSlots[i], lane(buckets[pathBuckets[i - 1]], pathSlots[i - 1]));
+                }
+                setLane(bucket, pathSlots[0], fingerprint);
+                return true;
+            }
+            current = next;
+        }
+        return false;
+    }
+
+    /** Stores the fingerprint in a free slot of the bucket, returns false if the bucket is full */
+    private boolean insert(int bucket, long fingerprint) {
+        long word = buckets[bucket];
+        for (int slot = 0; slot < SLOTS_PER_BUCKET; slot++) {
+            if (lane(word, slot) == 0) {
+                setLane(bucket, slot, fingerprint);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Clears one slot of the bucket holding the fingerprint, returns false if there is none */
+    private boolean clear(int bucket, long fingerprint) {
+        long word = buckets[bucket];
+        for (int slot = 0; slot < SLOTS_PER_BUCKET; slot++) {
+            if (lane(word, slot) == fingerprint) {
+                setLane(bucket, slot, 0);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void setLane(int bucket, int slot, long fingerprint) {
+        int shift = slot * FINGERPRINT_BITS;
+        long word = (buckets[bucket] & ~(FINGERPRINT_MASK << shift)) | (fingerprint << shift);
+        BUCKETS.setRelease(buckets, bucket, word);
+    }
+
+    private static long lane(long word, int slot) {
+        return (word >>> (slot * FINGERPRINT_BITS)) & FINGERPRINT_MASK;
+    }
+
+    /** Counts the slots of a bucket that hold the fingerprint */
+    private static int copies(long word, long fingerprint) {
+        int copies = 0;
+        for (int slot = 0; slot < SLOTS_PER_BUCKET; slot++) {
+            if (lane(word, slot) == fingerprint) {
+                copies++;
+            }
+        }
+        return copies;
+    }
+
+    /** Tests all four 16 bit lanes of a bucket for the fingerprint at once */
+    private static boolean contains(long word, long fingerprint) {
+        long diff = word ^ (fingerprint * LOW_BITS);
+        return ((diff - LOW_BITS) & ~diff & HIGH_BITS) != 0;
+    }
+
+    /** Takes the fingerprint from the low 16 bits of the hash, 0 marks an empty slot */
+    private static long fingerprint(long hash) {
+        long fingerprint = hash & FINGERPRINT_MASK;
+        return fingerprint == 0 ? 1 : fingerprint;
+    }
+
+    private int index(long hash) {
+        return (int) (((hash >>> 32) * buckets.length) >>> 32);
+    }
+
+    /**
+     * Returns the other bucket of a fingerprint. Using {@code (h(fingerprint) - bucket) mod numBuckets} instead of the
+     * usual xor keeps the mapping an involution without rounding the number of buckets up to a power of two.
+     */
+    private int altIndex(int bucket, long fingerprint) {
+        long offset = ((DeviceHashing.mix64(fingerprint) >>> 32) * buckets.length) >>> 32;
+        return (int) Math.floorMod(offset - bucket, (long) buckets.length);
+    }
+
+    /** Returns the probability of a false positive at the current load of the filter */
+    @Override
+    public synchronized double expectedFpp() {
+        double load = (double) count / ((long) buckets.length * SLOTS_PER_BUCKET);
+        return 1.0 - Math.pow(1.0 - 1.0 / FINGERPRINT_MASK, 2.0 * SLOTS_PER_BUCKET * load);
+    }
+
+    @Override
+    public long bitSize() {
+        return (long) buckets.length * Long.SIZE;
+    }
+
+    @Override
+    public DeviceHashStrategy hashStrategy() {
+        return hashStrategy;
+    }
+
+    /** Returns the number of device ids in the filter */
+    public synchronized long size() {
+        return count;
+    }
+
+    /**
+     * Writes this filter to an output stream, with a custom format (not Java serialization).
+     *
+     * @param out the stream to write to
+     * @throws IOException if writing to the stream fails
+     */
+    @Override
+    public synchronized void writeTo(OutputStream out) throws IOException {
+        DataOutputStream dout = new DataOutputStream(out);
+        dout.writeInt(hashStrategy.snapshotId());
+        dout.writeInt(buckets.length);
+        dout.writeLong(count);
+        for (long bucket : buckets) {
+            dout.writeLong(bucket);
+        }
+        dout.flush();
+    }
+
+    /**
+     * Reads a filter written by {@link #writeTo(OutputStream)}.
+     *
+     * @param in the stream to read from
+     * @return the filter
+     * @throws IOException if the stream is truncated or does not contain a cuckoo filter
+     */
+    public static CuckooFilter readFrom(InputStream in) throws IOException {
+        DataInputStream din = new DataInputStream(in);
+        DeviceHashStrategy hashStrategy = DeviceHashStrategy.read(din);
+        int numBuckets = din.readInt();
+        long count = din.readLong();
+        if (numBuckets < 1 || count < 0 || count > (long) numBuckets * SLOTS_PER_BUCKET) {
+            throw new IOException("Corrupt cuckoo filter header: numBuckets=" + numBuckets + ", count=" + count);
+        }
+        long[] buckets = new long[numBuckets];
+        for (int i = 0; i < numBuckets; i++) {
+            buckets[i] = din.readLong();
+        }
+        return new CuckooFilter(buckets, count, hashStrategy);
+    }
+}
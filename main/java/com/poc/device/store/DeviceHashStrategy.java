@@ -0,0 +1,152 @@
+package com.poc.device.store;
+
+import java.io.DataInput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The 64 bit hash functions the filters other than {@link FilterType#GUAVA_BLOOM} can hash device ids with. All of
+ * them hash the UTF-8 bytes of a device id with seed 0 and are implemented in pure Java, without allocating for ASCII
+ * device ids.
+ *
+ * Numeric device ids are hashed as their 8 little endian bytes.
+ *
+ * A filter answers lookups correctly only with the strategy it was filled with, so the strategy is part of the
+ * serialized form of every filter and of the snapshot header.
+ */
+public enum DeviceHashStrategy {
+    /**
+     * The lower 64 bits of Murmur3_x64_128, the hash of Guava's {@link com.google.common.hash.BloomFilter} and the
+     * default.
+     */
+    MURMUR3_128(1) {
+        /** Reads the chars once for both the ASCII check and the hash */
+        @Override
+        public long hash64(String deviceUid) {
+            return DeviceHashing.hash64(deviceUid);
+        }
+
+        @Override
+        public long hash64(long deviceId) {
+            return DeviceHashing.hash64(deviceId);
+        }
+
+        @Override
+        <T> long hash64(ByteAccess<T> access, T input, int offset, int length) {
+            return DeviceHashing.hash64(access, input, offset, length);
+        }
+    },
+
+    /** XXH3 64 bit (xxHash 0.8), hashes device ids of up to 16 bytes with at most one 128 bit multiplication */
+    XXH3_64(2) {
+        @Override
+        public long hash64(long deviceId) {
+            return Xxh3.hash64(deviceId);
+        }
+
+        @Override
+        <T> long hash64(ByteAccess<T> access, T input, int offset, int length) {
+            return Xxh3.hash64(access, input, offset, length);
+        }
+    },
+
+    /** wyhash version 3, hashes device ids of up to 32 bytes with two or three 128 bit multiplications */
+    WYHASH(3) {
+        @Override
+        public long hash64(long deviceId) {
+            return WyHash.hash64(deviceId);
+        }
+
+        @Override
+        <T> long hash64(ByteAccess<T> access, T input, int offset, int length) {
+            return WyHash.hash64(access, input, offset, length);
+        }
+    };
+
+    private final int snapshotId;
+
+    DeviceHashStrategy(int snapshotId) {
+        this.snapshotId = snapshotId;
+    }
+
+    /** Returns the 64 bit hash of the UTF-8 bytes of the device id */
+    public long hash64(String deviceUid) {
+        if (ByteAccess.isAscii(deviceUid)) {
+            return hash64(ByteAccess.ASCII, deviceUid, 0, deviceUid.length());
+        }
+        byte[] bytes = deviceUid.getBytes(StandardCharsets.UTF_8);
+        return hash64(ByteAccess.BYTES, bytes, 0, bytes.length);
+    }
+
+    /**
+     * Returns the 64 bit hash of the UTF-8 bytes of the device id, equal to {@link #hash64(String)} of its string.
+     * ASCII char sequences are hashed in place, others are converted to a string first.
+     */
+    public long hash64(CharSequence deviceUid) {
+        if (deviceUid instanceof String) {
+            return hash64((String) deviceUid);
+        }
+        if (ByteAccess.isAscii(deviceUid)) {
+            return hash64(ByteAccess.CHARS, deviceUid, 0, deviceUid.length());
+        }
+        return hash64(deviceUid.toString());
+    }
+
+    /**
+     * Returns the 64 bit hash of {@code length} bytes from {@code offset} on. For the UTF-8 bytes of a device id this
+     * is {@link #hash64(String)} of the device id.
+     */
+    public long hash64(byte[] bytes, int offset, int length) {
+        if (offset < 0 || length < 0 || offset > bytes.length - length) {
+            throw new IndexOutOfBoundsException("Range [" + offset + ", " + offset + " + " + length
+                    + ") out of bounds for length " + bytes.length);
+        }
+        return hash64(ByteAccess.BYTES, bytes, offset, length);
+    }
+
+    /**
+     * Returns the 64 bit hash of the remaining bytes of the buffer, from its position to its limit, without moving
+     * its position. For the UTF-8 bytes of a device id this is {@link #hash64(String)} of the device id.
+     */
+    public long hash64(ByteBuffer bytes) {
+        if (bytes.hasArray()) {
+            return hash64(ByteAccess.BYTES, bytes.array(), bytes.arrayOffset() + bytes.position(), bytes.remaining());
+        }
+        return hash64(ByteAccess.BUFFER, bytes, bytes.position(), bytes.remaining());
+    }
+
+    /**
+     * Returns the 64 bit hash of a numeric device id, the hash of its 8 little endian bytes computed without storing
+     * them. A numeric device id is a key of its own, it does not hash like its decimal string.
+     */
+    public abstract long hash64(long deviceId);
+
+    /** Returns the 64 bit hash of {@code length} bytes of the input from {@code offset} on */
+    abstract <T> long hash64(ByteAccess<T> access, T input, int offset, int length);
+
+    /** Returns the id identifying this strategy in snapshot files and serialized filters */
+    int snapshotId() {
+        return snapshotId;
+    }
+
+    /** Returns the strategy with the snapshot id, or null if there is none */
+    static DeviceHashStrategy forSnapshotId(int snapshotId) {
+        for (DeviceHashStrategy strategy : values()) {
+            if (strategy.snapshotId == snapshotId) {
+                return strategy;
+            }
+        }
+        return null;
+    }
+
+    /** Reads the snapshot id of a strategy from a serialized filter */
+    static DeviceHashStrategy read(DataInput in) throws IOException {
+        int snapshotId = in.readInt();
+        DeviceHashStrategy strategy = forSnapshotId(snapshotId);
+        if (strategy == null) {
+            throw new IOException("Unknown hash strategy " + snapshotId);
+        }
+        return strategy;
+    }
+}
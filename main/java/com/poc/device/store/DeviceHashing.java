@@ -0,0 +1,133 @@
+package com.poc.device.store;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Hashing shared by the filters that work on a single 64 bit hash of a device id instead of a Guava
+ * {@link com.google.common.hash.Funnel}.
+ *
+ * The hash is the lower 64 bits of Murmur3_x64_128 with seed 0 over the UTF-8 bytes of the device id, the value of
+ * {@code Hashing.murmur3_128().hashObject(deviceUid, DeviceFunnel.INSTANCE).asLong()}. It is computed here without
+ * a {@link com.google.common.hash.Hasher} and, for ASCII device ids, without encoding them: the UTF-8 bytes of an
+ * ASCII string are its chars, so they are read straight from the string. Other device ids are encoded first.
+ *
+ * Filters that need a second hash for double hashing derive it with {@link #mix64(long)} instead of carrying the
+ * upper 64 bits of Murmur3_x64_128 around.
+ */
+final class DeviceHashing {
+    private static final long C1 = 0x87c37b91114253d5L;
+    private static final long C2 = 0x4cf5ad432745937fL;
+
+    private DeviceHashing() {
+    }
+
+    /** Returns the lower 64 bits of the Murmur3_128 hash of the device id funneled by {@link DeviceFunnel} */
+    static long hash64(String deviceUid) {
+        int length = deviceUid.length();
+        long h1 = 0;
+        long h2 = 0;
+        int chars = 0;
+        int i = 0;
+        for (int blocks = length & ~15; i < blocks; i += 16) {
+            long k1 = 0;
+            long k2 = 0;
+            for (int j = 7; j >= 0; j--) {
+                char c1 = deviceUid.charAt(i + j);
+                char c2 = deviceUid.charAt(i + 8 + j);
+                chars |= c1 | c2;
+                k1 = k1 << 8 | c1;
+                k2 = k2 << 8 | c2;
+            }
+            h1 ^= mixK1(k1);
+            h1 = Long.rotateLeft(h1, 27) + h2;
+            h1 = h1 * 5 + 0x52dce729;
+            h2 ^= mixK2(k2);
+            h2 = Long.rotateLeft(h2, 31) + h1;
+            h2 = h2 * 5 + 0x38495ab5;
+        }
+        long k1 = 0;
+        long k2 = 0;
+        for (int j = length - 1; j >= i; j--) {
+            char c = deviceUid.charAt(j);
+            chars |= c;
+            if (j - i < 8) {
+                k1 = k1 << 8 | c;
+            } else {
+                k2 = k2 << 8 | c;
+            }
+        }
+        if (chars >= 0x80) {
+            byte[] bytes = deviceUid.getBytes(StandardCharsets.UTF_8);
+            return hash64(bytes, 0, bytes.length);
+        }
+        return finish(h1 ^ mixK1(k1), h2 ^ mixK2(k2), length);
+    }
+
+    /** Returns the lower 64 bits of the Murmur3_128 hash of the bytes */
+    static long hash64(byte[] bytes, int offset, int length) {
+        return hash64(ByteAccess.BYTES, bytes, offset, length);
+    }
+
+    /** Returns the lower 64 bits of the Murmur3_128 hash of {@code length} bytes of the input from {@code offset} on */
+    static <T> long hash64(ByteAccess<T> access, T input, int offset, int length) {
+        long h1 = 0;
+        long h2 = 0;
+        int i = 0;
+        for (int blocks = length & ~15; i < blocks; i += 16) {
+            h1 ^= mixK1(access.getLong(input, offset + i));
+            h1 = Long.rotateLeft(h1, 27) + h2;
+            h1 = h1 * 5 + 0x52dce729;
+            h2 ^= mixK2(access.getLong(input, offset + i + 8));
+            h2 = Long.rotateLeft(h2, 31) + h1;
+            h2 = h2 * 5 + 0x38495ab5;
+        }
+        int remaining = length - i;
+        long k1 = littleEndianLong(access, input, offset + i, Math.min(remaining, 8));
+        long k2 = remaining > 8 ? littleEndianLong(access, input, offset + i + 8, remaining - 8) : 0;
+        return finish(h1 ^ mixK1(k1), h2 ^ mixK2(k2), length);
+    }
+
+    /**
+     * Returns the lower 64 bits of the Murmur3_128 hash of the 8 little endian bytes of the value, which is what
+     * Guava's {@code Hasher.putLong} hashes.
+     */
+    static long hash64(long value) {
+        return finish(mixK1(value), 0, Long.BYTES);
+    }
+
+    /** The 64 bit finalizer of Murmur3, every input bit affects every output bit */
+    static long mix64(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    private static long finish(long h1, long h2, int length) {
+        h1 ^= length;
+        h2 ^= length;
+        h1 += h2;
+        h2 += h1;
+        h1 = mix64(h1);
+        h2 = mix64(h2);
+        return h1 + h2;
+    }
+
+    private static long mixK1(long k1) {
+        return Long.rotateLeft(k1 * C1, 31) * C2;
+    }
+
+    private static long mixK2(long k2) {
+        return Long.rotateLeft(k2 * C2, 33) * C1;
+    }
+
+    private static <T> long littleEndianLong(ByteAccess<T> access, T input, int offset, int length) {
+        long value = 0;
+        for (int j = length - 1; j >= 0; j--) {
+            value = value << 8 | access.getUnsignedByte(input, offset + j);
+        }
+        return value;
+    }
+}
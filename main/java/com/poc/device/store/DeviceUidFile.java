@@ -0,0 +1,244 @@
+package com.poc.device.store;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Reads a file of device ids, one per line, UTF-8 encoded, straight into a filter. Lines are split in a reused byte
+ * buffer and put as their bytes, so neither the file nor a string per device id is ever held in memory. Lines may
+ * end with {@code \n} or {@code \r\n}; empty lines are skipped. Files starting with the gzip magic bytes are
+ * decompressed on the fly, whatever their name.
+ *
+ * Plain files can also be memory mapped instead of read, in mappings of up to 1 GB cut at line boundaries. The lines
+ * of a mapping are put straight from the page cache, in parallel on a pool, without copying them at all.
+ *
+ * Neither path allocates per device id for the filters of every {@link FilterType} but
+ * {@link FilterType#GUAVA_BLOOM}, which funnels the bytes without creating a string but allocates a hasher per device
+ * id. Filters that do not override {@link MembershipFilter#put(byte[], int, int)}, for read lines, or
+ * {@link MembershipFilter#put(ByteBuffer)}, for mapped lines, decode each line to a string.
+ */
+final class DeviceUidFile {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int GZIP_MAGIC = 0x8b1f;
+    private static final long MAX_MAPPING = 1L << 30;
+    /** The smallest range of a mapping a parallel load hands to one task */
+    private static final int MIN_MAPPED_CHUNK = 1 << 20;
+
+    private DeviceUidFile() {
+    }
+
+    /**
+     * Puts the device ids of a file into a filter.
+     *
+     * @return the number of device ids put
+     * @throws IOException if the file cannot be read
+     */
+    static long putAll(Path path, MembershipFilter filter) throws IOException {
+        try (InputStream in = open(path)) {
+            return putAll(in, filter);
+        }
+    }
+
+    /** Opens a file of device ids, decompressing it if it is gzipped */
+    static InputStream open(Path path) throws IOException {
+        InputStream in = new BufferedInputStream(Files.newInputStream(path), BUFFER_SIZE);
+        try {
+            in.mark(2);
+            int magic = in.read() | (in.read() << 8);
+            in.reset();
+            return magic == GZIP_MAGIC ? new GZIPInputStream(in, BUFFER_SIZE) : in;
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Puts the device ids of a stream of lines into a filter, reading it through a buffer of 64 KB that only grows for
+     * a line longer than that.
+     *
+     * @return the number of device ids put
+     * @throws IOException if the stream cannot be read
+     */
+    static long putAll(InputStream in, MembershipFilter filter) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int start = 0;
+        int end = 0;
+        long devices = 0;
+        while (true) {
+            if (end == buffer.length) {
+                // Move the partial line to the front, or grow the buffer if it fills the whole buffer
+                if (start == 0) {
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                } else {
+                    System.arraycopy(buffer, start, buffer, 0, end - start);
+                    end -= start;
+                    start = 0;
+                }
+            }
+            int read = in.read(buffer, end, buffer.length - end);
+            if (read < 0) {
+                break;
+            }
+            int scanFrom = end;
+            end += read;
+            for (int i = scanFrom; i < end; i++) {
+                if (buffer[i] == '\n') {
+                    devices += putLine(buffer, start, i, filter);
+                    start = i + 1;
+                }
+            }
+        }
+        return devices + putLine(buffer, start, end, filter);
+    }
+
+    /**
+     * Puts the device ids of a file into a filter by mapping it, on the threads of a pool if the filter
+     * {@link MembershipFilter#supportsConcurrentPuts() supports concurrent puts}. A gzipped file cannot be mapped and
+     * is read by {@link #putAll(Path, MembershipFilter)} instead.
+     *
+     * @param pool the pool to put on, or null to put on the calling thread
+     * @return the number of device ids put
+     * @throws IOException if the file cannot be mapped, or has a line longer than 1 GB
+     */
+    static long putAllMapped(Path path, MembershipFilter filter, ForkJoinPool pool) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long devices = 0;
+            long position = 0;
+            while (position < size) {
+                MappedByteBuffer mapping = channel.map(FileChannel.MapMode.READ_ONLY, position,
+                        Math.min(MAX_MAPPING, size - position));
+                if (position == 0 && isGzip(mapping)) {
+                    return putAll(path, filter);
+                }
+                int end = mapping.limit();
+                if (position + end < size) {
+                    // Leave the last partial line to the next mapping
+                    end = lastLineEnd(mapping);
+                    if (end == 0) {
+                        throw new IOException("Line longer than " + MAX_MAPPING + " bytes at offset " + position
+                                + " of " + path);
+                    }
+                }
+                if (pool != null && pool.getParallelism() > 1 && filter.supportsConcurrentPuts()) {
+                    int chunk = Math.max(MIN_MAPPED_CHUNK, end / (pool.getParallelism() * 8));
+                    devices += pool.invoke(new PutMappedLines(mapping, 0, end, chunk, filter));
+                } else {
+                    devices += putLines(mapping, 0, end, filter);
+                }
+                position += end;
+            }
+            return devices;
+        }
+    }
+
+    private static boolean isGzip(ByteBuffer mapping) {
+        return mapping.limit() >= 2 && ((mapping.get(0) & 0xff) | (mapping.get(1) & 0xff) << 8) == GZIP_MAGIC;
+    }
+
+    /** Returns the index after the last line terminator of a mapping, 0 if it has none */
+    private static int lastLineEnd(ByteBuffer mapping) {
+        for (int i = mapping.limit() - 1; i >= 0; i--) {
+            if (mapping.get(i) == '\n') {
+                return i + 1;
+            }
+        }
+        return 0;
+    }
+
+    /** Returns the index after the first line terminator at or after from, or to if there is none before it */
+    private static int nextLineStart(ByteBuffer mapping, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (mapping.get(i) == '\n') {
+                return i + 1;
+            }
+        }
+        return to;
+    }
+
+    /**
+     * Puts the lines between from and to of a mapping, from being the start of a line. Each line is put as the
+     * remaining bytes of a single view of the mapping, so no line is copied or wrapped in an object of its own.
+     */
+    private static long putLines(ByteBuffer mapping, int from, int to, MembershipFilter filter) {
+        ByteBuffer line = mapping.duplicate();
+        long devices = 0;
+        int start = from;
+        for (int i = from; i < to; i++) {
+            if (mapping.get(i) == '\n') {
+                devices += putLine(mapping, line, start, i, filter);
+                start = i + 1;
+            }
+        }
+        return devices + putLine(mapping, line, start, to, filter);
+    }
+
+    /** Puts the line between start and end of a mapping as the remaining bytes of the view, returns 1 if not empty */
+    private static int putLine(ByteBuffer mapping, ByteBuffer line, int start, int end, MembershipFilter filter) {
+        if (end > start && mapping.get(end - 1) == '\r') {
+            end--;
+        }
+        if (end == start) {
+            return 0;
+        }
+        line.limit(end);
+        line.position(start);
+        filter.put(line);
+        return 1;
+    }
+
+    /** Puts the lines of a range of a mapping, splitting it in halves at line boundaries down to a chunk */
+    private static final class PutMappedLines extends RecursiveTask<Long> {
+        private static final long serialVersionUID = 1L;
+
+        private final transient ByteBuffer mapping;
+        private final int from;
+        private final int to;
+        private final int chunk;
+        private final transient MembershipFilter filter;
+
+        private PutMappedLines(ByteBuffer mapping, int from, int to, int chunk, MembershipFilter filter) {
+            this.mapping = mapping;
+            this.from = from;
+            this.to = to;
+            this.chunk = chunk;
+            this.filter = filter;
+        }
+
+        @Override
+        protected Long compute() {
+            int middle = to - from <= chunk ? to : nextLineStart(mapping, (from + to) >>> 1, to);
+            if (middle == to) {
+                return putLines(mapping, from, to, filter);
+            }
+            PutMappedLines second = new PutMappedLines(mapping, middle, to, chunk, filter);
+            second.fork();
+            long devices = new PutMappedLines(mapping, from, middle, chunk, filter).compute();
+            return devices + second.join();
+        }
+    }
+
+    /** Puts the line between start and end, without its line terminator, returns 1 if it was not empty */
+    private static int putLine(byte[] buffer, int start, int end, MembershipFilter filter) {
+        if (end > start && buffer[end - 1] == '\r') {
+            end--;
+        }
+        if (end == start) {
+            return 0;
+        }
+        filter.put(buffer, start, end - start);
+        return 1;
+    }
+}
@@ -0,0 +1,218 @@
+package com.poc.device.store;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collection;
+
+/**
+ * The filter implementations a {@link SuspectDeviceStore} can be built with. All of them but {@link #GUAVA_BLOOM},
+ * whose hash is fixed to Murmur3_128, can hash device ids with any {@link DeviceHashStrategy}.
+ */
+public enum FilterType implements MembershipFilterFactory {
+    /** Guava's {@link com.google.common.hash.BloomFilter}, the k probes of a device id are spread over the bit array */
+    GUAVA_BLOOM(1) {
+        @Override
+        public MembershipFilter create(long expectedInsertions, double fpp) {
+            return GuavaMembershipFilter.create(expectedInsertions, fpp);
+        }
+
+        @Override
+        public MembershipFilter readFrom(InputStream in) throws IOException {
+            return GuavaMembershipFilter.readFrom(in);
+        }
+    },
+
+    /** A {@link BlockedBloomFilter}, all k probes of a device id land in the same 64 byte block */
+    BLOCKED_BLOOM(2) {
+        @Override
+        public MembershipFilter create(long expectedInsertions, double fpp) {
+            return BlockedBloomFilter.create(expectedInsertions, fpp);
+        }
+
+        @Override
+        public MembershipFilter create(long expectedInsertions, double fpp, DeviceHashStrategy hashStrategy) {
+            return BlockedBloomFilter.create(expectedInsertions, fpp, hashStrategy);
+        }
+
+        @Override
+        public MembershipFilter createOffHeap(long expectedInsertions, double fpp) {
+            return BlockedBloomFilter.createOffHeap(expectedInsertions, fpp);
+        }
+
+        @Override
+        public MembershipFilter createOffHeap(long expectedInsertions, double fpp, DeviceHashStrategy hashStrategy) {
+            return BlockedBloomFilter.createOffHeap(expectedInsertions, fpp, hashStrategy);
+        }
+
+        @Override
+        public MembershipFilter readFrom(InputStream in) throws IOException {
+            return BlockedBloomFilter.readFrom(in);
+        }
+    },
+
+    /**
+     * An immutable {@link BinaryFuseFilter}, built once from the complete list of device ids with
+     * {@link #create(Collection, double)}. Its false positive probability is fixed at 0.39%.
+     */
+    BINARY_FUSE(3) {
+        /** Always throws {@link UnsupportedOperationException}, a binary fuse filter needs all device ids up front */
+        @Override
+        public MembershipFilter create(long expectedInsertions, double fpp) {
+            throw new UnsupportedOperationException("A binary fuse filter is built from the complete device list");
+        }
+
+        /** Always throws {@link UnsupportedOperationException}, a binary fuse filter needs all device ids up front */
+        @Override
+        public MembershipFilter create(long expectedInsertions, double fpp, DeviceHashStrategy hashStrategy) {
+            return create(expectedInsertions, fpp);
+        }
+
+        @Override
+        public MembershipFilter create(Collection<String> deviceUids, double fpp) {
+            return BinaryFuseFilter.create(deviceUids, fpp);
+        }
+
+        @Override
+        public MembershipFilter create(Collection<String> deviceUids, double fpp, DeviceHashStrategy hashStrategy) {
+            return BinaryFuseFilter.create(deviceUids, fpp, hashStrategy);
+        }
+
+        @Override
+        public MembershipFilter readFrom(InputStream in) throws IOException {
+            return BinaryFuseFilter.readFrom(in);
+        }
+    },
+
+    /**
+     * A {@link CuckooFilter}, which supports removing device ids. A lookup reads two buckets, each a single long.
+     */
+    CUCKOO(4) {
+        @Override
+        public MembershipFilter create(long expectedInsertions, double fpp) {
+            return CuckooFilter.create(expectedInsertions, fpp);
+        }
+
+        @Override
+        public MembershipFilter create(long expectedInsertions, double fpp, DeviceHashStrategy hashStrategy) {
+            return CuckooFilter.create(expectedInsertions, fpp, hashStrategy);
+        }
+
+        @Override
+        public MembershipFilter readFrom(InputStream in) throws IOException {
+            return CuckooFilter.readFrom(in);
+        }
+    },
+
+    /**
+     * A {@link CountingBloomFilter}, which supports removing device ids at 4x the memory of a Bloom filter.
+     */
+    COUNTING_BLOOM(5) {
+        @Override
+        public MembershipFilter create(long expectedInsertions, double fpp) {
+            return CountingBloomFilter.create(expectedInsertions, fpp);
+        }
+
+        @Override
+        public MembershipFilter create(long expectedInsertions, double fpp, DeviceHashStrategy hashStrategy) {
+            return CountingBloomFilter.create(expectedInsertions, fpp, hashStrategy);
+        }
+
+        @Override
+        public MembershipFilter readFrom(InputStream in) throws IOException {
+            return CountingBloomFilter.readFrom(in);
+        }
+    },
+
+    /**
+     * A {@link ScalableBloomFilter} of blocked Bloom filter stages, which adds stages as device ids are put so its
+     * false positive probability stays below the configured one.
+     */
+    SCALABLE_BLOOM(6) {
+        @Override
+        public MembershipFilter create(long expectedInsertions, double fpp) {
+            return ScalableBloomFilter.create(expectedInsertions, fpp);
+        }
+
+        @Override
+        public MembershipFilter create(long expectedInsertions, double fpp, DeviceHashStrategy hashStrategy) {
+            return ScalableBloomFilter.create(BLOCKED_BLOOM, expectedInsertions, fpp, hashStrategy);
+        }
+
+        @Override
+        public MembershipFilter readFrom(InputStream in) throws IOException {
+            return ScalableBloomFilter.readFrom(in);
+        }
+    },
+
+    /**
+     * A {@link FingerprintSetFilter}, an exact set of the 64 bit hashes of device ids at 11 to 21 bytes per device
+     * id. The false positive probability is that of colliding hashes, the configured one is ignored.
+     */
+    FINGERPRINT_SET(7) {
+        @Override
+        public MembershipFilter create(long expectedInsertions, double fpp) {
+            return FingerprintSetFilter.create(expectedInsertions, fpp);
+        }
+
+        @Override
+        public MembershipFilter create(long expectedInsertions, double fpp, DeviceHashStrategy hashStrategy) {
+            return FingerprintSetFilter.create(expectedInsertions, fpp, hashStrategy);
+        }
+
+        @Override
+        public MembershipFilter createOffHeap(long expectedInsertions, double fpp) {
+            return FingerprintSetFilter.createOffHeap(expectedInsertions, fpp);
+        }
+
+        @Override
+        public MembershipFilter createOffHeap(long expectedInsertions, double fpp, DeviceHashStrategy hashStrategy) {
+            return FingerprintSetFilter.createOffHeap(expectedInsertions, fpp, hashStrategy);
+        }
+
+        @Override
+        public MembershipFilter readFrom(InputStream in) throws IOException {
+            return FingerprintSetFilter.readFrom(in);
+        }
+    };
+
+    private final int snapshotId;
+
+    FilterType(int snapshotId) {
+        this.snapshotId = snapshotId;
+    }
+
+    /** Returns the id identifying this type in snapshot files, unlike the ordinal it never changes */
+    int snapshotId() {
+        return snapshotId;
+    }
+
+    /** Returns the type with the snapshot id, or null if there is none */
+    static FilterType forSnapshotId(int snapshotId) {
+        for (FilterType filterType : values()) {
+            if (filterType.snapshotId == snapshotId) {
+                return filterType;
+            }
+        }
+        return null;
+    }
+
+    /** Returns the type of a filter created by one of the types, or null for filters of other factories */
+    static FilterType of(MembershipFilter filter) {
+        if (filter instanceof GuavaMembershipFilter) {
+            return GUAVA_BLOOM;
+        } else if (filter instanceof BlockedBloomFilter) {
+            return BLOCKED_BLOOM;
+        } else if (filter instanceof BinaryFuseFilter) {
+            return BINARY_FUSE;
+        } else if (filter instanceof CuckooFilter) {
+            return CUCKOO;
+        } else if (filter instanceof CountingBloomFilter) {
+            return COUNTING_BLOOM;
+        } else if (filter instanceof ScalableBloomFilter) {
+            return SCALABLE_BLOOM;
+        } else if (filter instanceof FingerprintSetFilter) {
+            return FINGERPRINT_SET;
+        }
+        return null;
+    }
+}
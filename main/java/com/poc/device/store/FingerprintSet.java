@@ -0,0 +1,175 @@
+package com.poc.device.store;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A set of 64 bit fingerprints, the hashes of device ids, in an open addressing table of longs with linear probing.
+ *
+ * There are no objects per entry, a fingerprint costs 8 bytes divided by the load of at most 75%. The slot of a
+ * fingerprint is picked by its mixed bits and probing walks the following slots, 8 per cache line, so a lookup
+ * usually reads a single cache line and rarely two. The slots are kept on the Java heap or outside of it in a
+ * {@link LongStorage}.
+ *
+ * Two device ids share a fingerprint only if their 64 bit hashes collide, with a probability of about n / 2^64 per
+ * lookup, ~5e-12 for 100M devices, so the set answers exactly for all practical purposes.
+ *
+ * Additions are lock free: an empty slot is claimed with compare-and-set, and fingerprints are never moved or removed,
+ * so concurrent lookups never miss one that was added.
+ */
+final class FingerprintSet implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private static final long EMPTY = 0L;
+    private static final double LOAD = 0.75;
+    private static final double MAX_LOAD = 0.9;
+    private static final int MAX_SLOTS = 1 << 30;
+    private static final int MIN_SLOTS = LongStorage.ALIGNMENT / Long.BYTES;
+    private static final int PAGE_LONGS = 4096 / Long.BYTES;
+
+    private final LongStorage slots;
+    private final int mask;
+    private final long maxSize;
+    private final AtomicLong size = new AtomicLong();
+    /** The empty slot value is a fingerprint too, kept out of the table */
+    private final AtomicBoolean containsEmpty = new AtomicBoolean();
+
+    private FingerprintSet(LongStorage slots) {
+        this.slots = slots;
+        this.mask = slots.length() - 1;
+        this.maxSize = (long) (slots.length() * MAX_LOAD);
+    }
+
+    /**
+     * Creates a set for the expected number of fingerprints.
+     *
+     * @param expectedInsertions the number of fingerprints the set is sized for, at a 75% load
+     * @param offHeap true to allocate the slots outside the Java heap
+     * @throws IllegalArgumentException if the set exceeds 2^30 slots, or 2 GB outside the heap
+     */
+    static FingerprintSet create(long expectedInsertions, boolean offHeap) {
+        if (expectedInsertions < 0) {
+            throw new IllegalArgumentException("Expected insertions cannot be negative: " + expectedInsertions);
+        }
+        long minSlots = (long) Math.ceil(Math.max(expectedInsertions, 1) / LOAD);
+        if (minSlots > MAX_SLOTS) {
+            throw new IllegalArgumentException("Fingerprint set for " + expectedInsertions
+                    + " insertions exceeds the maximum of " + MAX_SLOTS + " slots");
+        }
+        int length = Math.max(MIN_SLOTS, Integer.highestOneBit((int) minSlots - 1) << 1);
+        return new FingerprintSet(offHeap ? LongStorage.offHeap(length) : LongStorage.onHeap(length));
+    }
+
+    /**
+     * Adds a fingerprint.
+     *
+     * @return true if the set changed, false if it already contained the fingerprint
+     * @throws IllegalStateException if the set is 90% full
+     */
+    boolean add(long fingerprint) {
+        if (fingerprint == EMPTY) {
+            if (containsEmpty.getAndSet(true)) {
+                return false;
+            }
+            size.incrementAndGet();
+            return true;
+        }
+        int slot = slot(fingerprint);
+        while (true) {
+            long current = slots.getOpaque(slot);
+            if (current == fingerprint) {
+                return false;
+            }
+            if (current != EMPTY) {
+                slot = (slot + 1) & mask;
+                continue;
+            }
+            if (size.get() >= maxSize) {
+                throw new IllegalStateException("Fingerprint set is full at " + size.get() + " device ids");
+            }
+            // Claim the empty slot, or read again what the thread that claimed it first stored
+            if (slots.compareAndSet(slot, EMPTY, fingerprint)) {
+                size.incrementAndGet();
+                return true;
+            }
+        }
+    }
+
+    /** Returns true if the set contains the fingerprint */
+    boolean contains(long fingerprint) {
+        if (fingerprint == EMPTY) {
+            return containsEmpty.get();
+        }
+        for (int slot = slot(fingerprint); ; slot = (slot + 1) & mask) {
+            long current = slots.getOpaque(slot);
+            if (current == fingerprint) {
+                return true;
+            }
+            if (current == EMPTY) {
+                return false;
+            }
+        }
+    }
+
+    /** Returns the number of fingerprints in the set */
+    long size() {
+        return size.get();
+    }
+
+    /** Returns the number of bits of the slots */
+    long bitSize() {
+        return (long) slots.length() * Long.SIZE;
+    }
+
+    /** Returns true if the slots are outside the Java heap */
+    boolean isOffHeap() {
+        return slots.isOffHeap();
+    }
+
+    /** Reads every page of the slots once */
+    void preTouch() {
+        for (int i = 0; i < slots.length(); i += PAGE_LONGS) {
+            slots.getOpaque(i);
+        }
+    }
+
+    /** Writes the number of slots, the size and the slots, read back by {@link #readFrom(DataInputStream)} */
+    void writeTo(DataOutputStream out) throws IOException {
+        out.writeInt(slots.length());
+        out.writeLong(size.get());
+        out.writeBoolean(containsEmpty.get());
+        for (int i = 0; i < slots.length(); i++) {
+            out.writeLong(slots.getOpaque(i));
+        }
+    }
+
+    /**
+     * Reads a set written by {@link #writeTo(DataOutputStream)}, into slots on the Java heap.
+     *
+     * @throws IOException if the stream is truncated or does not contain a fingerprint set
+     */
+    static FingerprintSet readFrom(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        long size = in.readLong();
+        boolean containsEmpty = in.readBoolean();
+        if (length < MIN_SLOTS || length > MAX_SLOTS || Integer.bitCount(length) != 1 || size < 0
+                || size > (long) (length * MAX_LOAD) + 1) {
+            throw new IOException("Corrupt fingerprint set header: slots=" + length + ", size=" + size);
+        }
+        FingerprintSet set = new FingerprintSet(LongStorage.onHeap(length));
+        for (int i = 0; i < length; i++) {
+            set.slots.set(i, in.readLong());
+        }
+        set.size.set(size);
+        set.containsEmpty.set(containsEmpty);
+        return set;
+    }
+
+    private int slot(long fingerprint) {
+        return (int) DeviceHashing.mix64(fingerprint) & mask;
+    }
+}
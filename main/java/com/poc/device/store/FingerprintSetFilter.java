@@ -0,0 +1,145 @@
+package com.poc.device.store;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+
+/**
+ * An exact set of device ids, kept as their 64 bit hashes in an open addressing table of longs.
+ *
+ * Unlike the Bloom filters it answers false positives only when two 64 bit hashes collide, ~n / 2^64 per lookup. A
+ * slot is 8 bytes and the number of slots is a power of two for a load of at most 75%, 11 to 21 bytes per device id.
+ * That is 10 to 20 times a Bloom filter of 1% FPP, ~1.2 bytes per device id, but still a fraction of a
+ * {@code HashSet<String>}, which spends ~100 bytes per device id on the entry, the string and its array. A lookup
+ * reads the home slot of the hash and rarely the next cache line.
+ *
+ * Puts are lock free and can run on several threads at once. Device ids cannot be removed. The slots are kept on the
+ * Java heap or, with {@link #createOffHeap(long, double)}, outside of it.
+ *
+ * Device ids are hashed with a {@link DeviceHashStrategy}, {@link DeviceHashStrategy#MURMUR3_128} unless the filter
+ * is created with another one.
+ */
+public final class FingerprintSetFilter extends HashedMembershipFilter implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final FingerprintSet fingerprints;
+    private final DeviceHashStrategy hashStrategy;
+
+    private FingerprintSetFilter(FingerprintSet fingerprints, DeviceHashStrategy hashStrategy) {
+        this.fingerprints = fingerprints;
+        this.hashStrategy = hashStrategy;
+    }
+
+    /**
+     * Creates a filter for the expected number of insertions. The false positive probability is not configurable, it
+     * is that of colliding 64 bit hashes.
+     *
+     * @param expectedInsertions the number of expected insertions(n) to the constructed filter
+     * @param fpp ignored
+     * @return the filter
+     * @throws IllegalStateException on puts beyond 1.2x the expected insertions
+     */
+    public static FingerprintSetFilter create(long expectedInsertions, double fpp) {
+        return create(expectedInsertions, fpp, DeviceHashStrategy.MURMUR3_128, false);
+    }
+
+    /** Creates a filter like {@link #create(long, double)} that hashes device ids with the given strategy */
+    public static FingerprintSetFilter create(long expectedInsertions, double fpp, DeviceHashStrategy hashStrategy) {
+        return create(expectedInsertions, fpp, hashStrategy, false);
+    }
+
+    /** Creates a filter like {@link #create(long, double)} whose slots are outside the Java heap */
+    public static FingerprintSetFilter createOffHeap(long expectedInsertions, double fpp) {
+        return create(expectedInsertions, fpp, DeviceHashStrategy.MURMUR3_128, true);
+    }
+
+    /** Creates a filter like {@link #createOffHeap(long, double)} that hashes device ids with the given strategy */
+    public static FingerprintSetFilter createOffHeap(long expectedInsertions, double fpp,
+                                                     DeviceHashStrategy hashStrategy) {
+        return create(expectedInsertions, fpp, hashStrategy, true);
+    }
+
+    private static FingerprintSetFilter create(long expectedInsertions, double fpp, DeviceHashStrategy hashStrategy,
+                                               boolean offHeap) {
+        if (hashStrategy == null) {
+            throw new IllegalArgumentException("Hash strategy cannot be null");
+        }
+        return new FingerprintSetFilter(FingerprintSet.create(expectedInsertions, offHeap), hashStrategy);
+    }
+
+    @Override
+    boolean putHash(long hash) {
+        return fingerprints.add(hash);
+    }
+
+    @Override
+    boolean mightContainHash(long hash) {
+        return fingerprints.contains(hash);
+    }
+
+    /** Returns the probability of two 64 bit hashes colliding at the current size of the filter */
+    @Override
+    public double expectedFpp() {
+        return fingerprints.size() / 0x1p64;
+    }
+
+    @Override
+    public long bitSize() {
+        return fingerprints.bitSize();
+    }
+
+    @Override
+    public DeviceHashStrategy hashStrategy() {
+        return hashStrategy;
+    }
+
+    @Override
+    public boolean supportsConcurrentPuts() {
+        return true;
+    }
+
+    @Override
+    public void preTouch() {
+        fingerprints.preTouch();
+    }
+
+    /** Returns the number of device ids in the filter */
+    public long size() {
+        return fingerprints.size();
+    }
+
+    /** Returns true if the slots of this filter are outside the Java heap */
+    public boolean isOffHeap() {
+        return fingerprints.isOffHeap();
+    }
+
+    /**
+     * Writes this filter to an output stream, with a custom format (not Java serialization).
+     *
+     * @param out the stream to write to
+     * @throws IOException if writing to the stream fails
+     */
+    @Override
+    public void writeTo(OutputStream out) throws IOException {
+        DataOutputStream dout = new DataOutputStream(out);
+        dout.writeInt(hashStrategy.snapshotId());
+        fingerprints.writeTo(dout);
+        dout.flush();
+    }
+
+    /**
+     * Reads a filter written by {@link #writeTo(OutputStream)}.
+     *
+     * @param in the stream to read from
+     * @return the filter
+     * @throws IOException if the stream is truncated or does not contain a fingerprint set
+     */
+    public static FingerprintSetFilter readFrom(InputStream in) throws IOException {
+        DataInputStream din = new DataInputStream(in);
+        DeviceHashStrategy hashStrategy = DeviceHashStrategy.read(din);
+        return new FingerprintSetFilter(FingerprintSet.readFrom(din), hashStrategy);
+    }
+}
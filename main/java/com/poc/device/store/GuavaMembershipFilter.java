@@ -0,0 +1,192 @@
+package com.poc.device.store;
+
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnel;
+import com.google.common.hash.PrimitiveSink;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+
+/**
+ * A {@link MembershipFilter} backed by Guava's {@link BloomFilter}, funneling device ids with {@link DeviceFunnel}.
+ * Numeric device ids are funneled as a long, so they hash like {@link DeviceHashStrategy#hash64(long)}; Guava boxes
+ * them, unlike the other filters. Device ids given as UTF-8 bytes, in an array or a buffer, are funneled as they are,
+ * without decoding them to a string, which hashes them like the string; Guava still allocates a hasher per device id.
+ *
+ * This is the filter the store has always used and remains its default.
+ */
+public final class GuavaMembershipFilter implements MembershipFilter, Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final BloomFilter<Object> bloomFilter;
+    private transient long bitSize;
+
+    private GuavaMembershipFilter(BloomFilter<Object> bloomFilter) {
+        this.bloomFilter = bloomFilter;
+    }
+
+    /**
+     * Creates a filter for the expected number of insertions and the required false positive probability.
+     *
+     * @param expectedInsertions the number of expected insertions(n) to the constructed filter
+     * @param fpp the desired false positive probability, must be between 0 and 1 (exclusive)
+     * @return the filter
+     */
+    public static GuavaMembershipFilter create(long expectedInsertions, double fpp) {
+        return new GuavaMembershipFilter(BloomFilter.create(KeyFunnel.INSTANCE, expectedInsertions, fpp));
+    }
+
+    /**
+     * Reads a filter written by {@link #writeTo(OutputStream)}.
+     *
+     * @param in the stream to read from
+     * @return the filter
+     * @throws IOException if the stream cannot be read or does not contain a Bloom filter
+     */
+    public static GuavaMembershipFilter readFrom(InputStream in) throws IOException {
+        return new GuavaMembershipFilter(BloomFilter.readFrom(in, KeyFunnel.INSTANCE));
+    }
+
+    @Override
+    public boolean put(String deviceUid) {
+        return bloomFilter.put(deviceUid);
+    }
+
+    @Override
+    public boolean mightContain(String deviceUid) {
+        return bloomFilter.mightContain(deviceUid);
+    }
+
+    @Override
+    public boolean put(long deviceId) {
+        return bloomFilter.put(deviceId);
+    }
+
+    @Override
+    public boolean mightContain(long deviceId) {
+        return bloomFilter.mightContain(deviceId);
+    }
+
+    @Override
+    public boolean put(byte[] deviceUid, int offset, int length) {
+        return bloomFilter.put(new Utf8Bytes(deviceUid, offset, length));
+    }
+
+    @Override
+    public boolean mightContain(byte[] deviceUid, int offset, int length) {
+        return bloomFilter.mightContain(new Utf8Bytes(deviceUid, offset, length));
+    }
+
+    @Override
+    public boolean put(ByteBuffer deviceUid) {
+        return bloomFilter.put(new Utf8Bytes(deviceUid));
+    }
+
+    @Override
+    public boolean mightContain(ByteBuffer deviceUid) {
+        return bloomFilter.mightContain(new Utf8Bytes(deviceUid));
+    }
+
+    /** Guava's Bloom filter sets its bits with compare-and-set since Guava 23, puts need no lock */
+    @Override
+    public boolean supportsConcurrentPuts() {
+        return true;
+    }
+
+    @Override
+    public double expectedFpp() {
+        return bloomFilter.expectedFpp();
+    }
+
+    /**
+     * Returns the number of bits of the underlying Bloom filter. Guava does not expose it, so it is measured once from
+     * the serialized form.
+     */
+    @Override
+    public long bitSize() {
+        if (bitSize == 0) {
+            // Guava's format is a strategy byte, a hash function count byte and an int word count before the words
+            CountingOutputStream out = new CountingOutputStream();
+            try {
+                bloomFilter.writeTo(out);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            bitSize = (out.count - 6) * Byte.SIZE;
+        }
+        return bitSize;
+    }
+
+    @Override
+    public void writeTo(OutputStream out) throws IOException {
+        bloomFilter.writeTo(out);
+    }
+
+    /**
+     * Funnels string device ids with {@link DeviceFunnel}, numeric device ids as a long and UTF-8 bytes as they are,
+     * the bytes {@link DeviceFunnel} funnels for the string they encode
+     */
+    private enum KeyFunnel implements Funnel<Object> {
+        INSTANCE;
+
+        @Override
+        public void funnel(Object deviceKey, PrimitiveSink into) {
+            if (deviceKey instanceof Long) {
+                into.putLong((Long) deviceKey);
+            } else if (deviceKey instanceof Utf8Bytes) {
+                Utf8Bytes bytes = (Utf8Bytes) deviceKey;
+                if (bytes.buffer != null) {
+                    // Guava's hasher moves the position and switches the order of the buffer it reads
+                    into.putBytes(bytes.buffer.duplicate());
+                } else {
+                    into.putBytes(bytes.array, bytes.offset, bytes.length);
+                }
+            } else {
+                DeviceFunnel.INSTANCE.funnel((String) deviceKey, into);
+            }
+        }
+    }
+
+    /**
+     * A range of an array, or the remaining bytes of a buffer, holding the UTF-8 bytes of a device id, a key that is
+     * funneled and never stored
+     */
+    private static final class Utf8Bytes {
+        private final byte[] array;
+        private final int offset;
+        private final int length;
+        private final ByteBuffer buffer;
+
+        private Utf8Bytes(byte[] array, int offset, int length) {
+            this.array = array;
+            this.offset = offset;
+            this.length = length;
+            this.buffer = null;
+        }
+
+        private Utf8Bytes(ByteBuffer buffer) {
+            this.array = null;
+            this.offset = 0;
+            this.length = 0;
+            this.buffer = buffer;
+        }
+    }
+
+    /** Counts the bytes written to it and discards them */
+    private static final class CountingOutputStream extends OutputStream {
+        private long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.poc.device.store;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Base of the filters that probe a single 64 bit hash of a device id computed by their {@link DeviceHashStrategy}.
+ * Every form of a device id, a string, a char sequence, UTF-8 bytes or a number, is hashed in place here, so a
+ * filter only implements the probes of a hash and all forms of the same device id find the same entry.
+ */
+abstract class HashedMembershipFilter implements MembershipFilter {
+    /** The number of hashes a batch lookup computes before probing them, 2 KB that stay in the L1 cache */
+    private static final int BATCH_HASHES = 256;
+
+    /** Puts the hash of a device id, returns true if the filter changed */
+    abstract boolean putHash(long hash);
+
+    /** Returns true if the hash of a device id might have been put */
+    abstract boolean mightContainHash(long hash);
+
+    /**
+     * Stores {@link #mightContainHash(long)} of {@code hashes[i]} in {@code results[offset + i]} for the first
+     * {@code count} hashes. Filters override this to overlap the cache misses of the probes.
+     */
+    void mightContainHashes(long[] hashes, int count, boolean[] results, int offset) {
+        for (int i = 0; i < count; i++) {
+            results[offset + i] = mightContainHash(hashes[i]);
+        }
+    }
+
+    @Override
+    public abstract DeviceHashStrategy hashStrategy();
+
+    @Override
+    public boolean put(String deviceUid) {
+        return putHash(hashStrategy().hash64(deviceUid));
+    }
+
+    @Override
+    public boolean mightContain(String deviceUid) {
+        return mightContainHash(hashStrategy().hash64(deviceUid));
+    }
+
+    @Override
+    public boolean put(long deviceId) {
+        return putHash(hashStrategy().hash64(deviceId));
+    }
+
+    @Override
+    public boolean mightContain(long deviceId) {
+        return mightContainHash(hashStrategy().hash64(deviceId));
+    }
+
+    /** Hashes the device ids of every 256 first, then probes the hashes */
+    @Override
+    public void mightContain(String[] deviceUids, boolean[] results) {
+        DeviceHashStrategy hashStrategy = hashStrategy();
+        long[] hashes = new long[Math.min(deviceUids.length, BATCH_HASHES)];
+        for (int offset = 0; offset < deviceUids.length; offset += hashes.length) {
+            int count = Math.min(hashes.length, deviceUids.length - offset);
+            for (int i = 0; i < count; i++) {
+                hashes[i] = hashStrategy.hash64(deviceUids[offset + i]);
+            }
+            mightContainHashes(hashes, count, results, offset);
+        }
+    }
+
+    /** Hashes the device ids of every 256 first, then probes the hashes */
+    @Override
+    public void mightContain(long[] deviceIds, boolean[] results) {
+        DeviceHashStrategy hashStrategy = hashStrategy();
+        long[] hashes = new long[Math.min(deviceIds.length, BATCH_HASHES)];
+        for (int offset = 0; offset < deviceIds.length; offset += hashes.length) {
+            int count = Math.min(hashes.length, deviceIds.length - offset);
+            for (int i = 0; i < count; i++) {
+                hashes[i] = hashStrategy.hash64(deviceIds[offset + i]);
+            }
+            mightContainHashes(hashes, count, results, offset);
+        }
+    }
+
+    @Override
+    public boolean put(CharSequence deviceUid) {
+        return putHash(hashStrategy().hash64(deviceUid));
+    }
+
+    @Override
+    public boolean mightContain(CharSequence deviceUid) {
+        return mightContainHash(hashStrategy().hash64(deviceUid));
+    }
+
+    @Override
+    public boolean put(byte[] deviceUid, int offset, int length) {
+        return putHash(hashStrategy().hash64(deviceUid, offset, length));
+    }
+
+    @Override
+    public boolean mightContain(byte[] deviceUid, int offset, int length) {
+        return mightContainHash(hashStrategy().hash64(deviceUid, offset, length));
+    }
+
+    @Override
+    public boolean put(ByteBuffer deviceUid) {
+        return putHash(hashStrategy().hash64(deviceUid));
+    }
+
+    @Override
+    public boolean mightContain(ByteBuffer deviceUid) {
+        return mightContainHash(hashStrategy().hash64(deviceUid));
+    }
+}
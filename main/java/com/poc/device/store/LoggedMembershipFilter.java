@@ -0,0 +1,145 @@
+package com.poc.device.store;
+
+import java.io.IOException;
+import java.io.ObjectStreamException;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A filter whose puts are recorded in a {@link SuspectDeviceLog}, for a store recovered with
+ * {@link SuspectDeviceStore#recover}.
+ *
+ * A device id is put into the filter first and appended to the log after, so a put the filter rejects is never
+ * logged, and the put returns once the log commits it according to its sync interval. A snapshot written at a log
+ * position therefore contains every device id logged before it. Lookups go to the filter alone.
+ *
+ * Only puts are logged, so devices cannot be removed. Java serialization writes the filter without the log.
+ */
+final class LoggedMembershipFilter implements MembershipFilter, Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final MembershipFilter filter;
+    private final transient SuspectDeviceLog log;
+
+    LoggedMembershipFilter(MembershipFilter filter, SuspectDeviceLog log) {
+        this.filter = filter;
+        this.log = log;
+    }
+
+    /** Returns the filter the device ids are put into */
+    MembershipFilter filter() {
+        return filter;
+    }
+
+    /** Returns the log the device ids are recorded in */
+    SuspectDeviceLog log() {
+        return log;
+    }
+
+    @Override
+    public boolean put(String deviceUid) {
+        boolean changed = filter.put(deviceUid);
+        byte[] bytes = deviceUid.getBytes(StandardCharsets.UTF_8);
+        log.commit(log.append(bytes, 0, bytes.length));
+        return changed;
+    }
+
+    @Override
+    public boolean mightContain(String deviceUid) {
+        return filter.mightContain(deviceUid);
+    }
+
+    @Override
+    public boolean put(long deviceId) {
+        boolean changed = filter.put(deviceId);
+        log.commit(log.append(deviceId));
+        return changed;
+    }
+
+    @Override
+    public boolean mightContain(long deviceId) {
+        return filter.mightContain(deviceId);
+    }
+
+    @Override
+    public boolean put(CharSequence deviceUid) {
+        return put(deviceUid.toString());
+    }
+
+    @Override
+    public boolean mightContain(CharSequence deviceUid) {
+        return filter.mightContain(deviceUid);
+    }
+
+    @Override
+    public boolean put(byte[] deviceUid, int offset, int length) {
+        boolean changed = filter.put(deviceUid, offset, length);
+        log.commit(log.append(deviceUid, offset, length));
+        return changed;
+    }
+
+    @Override
+    public boolean mightContain(byte[] deviceUid, int offset, int length) {
+        return filter.mightContain(deviceUid, offset, length);
+    }
+
+    @Override
+    public boolean put(ByteBuffer deviceUid) {
+        boolean changed = filter.put(deviceUid);
+        byte[] bytes = new byte[deviceUid.remaining()];
+        deviceUid.duplicate().get(bytes);
+        log.commit(log.append(bytes, 0, bytes.length));
+        return changed;
+    }
+
+    @Override
+    public boolean mightContain(ByteBuffer deviceUid) {
+        return filter.mightContain(deviceUid);
+    }
+
+    @Override
+    public void mightContain(String[] deviceUids, boolean[] results) {
+        filter.mightContain(deviceUids, results);
+    }
+
+    @Override
+    public void mightContain(long[] deviceIds, boolean[] results) {
+        filter.mightContain(deviceIds, results);
+    }
+
+    @Override
+    public double expectedFpp() {
+        return filter.expectedFpp();
+    }
+
+    @Override
+    public long bitSize() {
+        return filter.bitSize();
+    }
+
+    @Override
+    public DeviceHashStrategy hashStrategy() {
+        return filter.hashStrategy();
+    }
+
+    @Override
+    public boolean supportsConcurrentPuts() {
+        return filter.supportsConcurrentPuts();
+    }
+
+    @Override
+    public void preTouch() {
+        filter.preTouch();
+    }
+
+    @Override
+    public void writeTo(OutputStream out) throws IOException {
+        filter.writeTo(out);
+    }
+
+    private Object writeReplace() throws ObjectStreamException {
+        return filter;
+    }
+}
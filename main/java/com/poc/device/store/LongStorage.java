@@ -0,0 +1,263 @@
+package com.poc.device.store;
+
+import java.io.IOException;
+import java.io.ObjectStreamException;
+import java.io.Serializable;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A fixed length array of longs backing a filter, either a long[] on the Java heap or a buffer outside of it.
+ *
+ * Filters of hundreds of MB on the heap are scanned and, by compacting collectors, copied by full collections. A
+ * buffer outside the heap is a single small object to the garbage collector whatever its size. Longs in a buffer are
+ * little endian, so the bytes of a buffer have the same layout on every host.
+ */
+abstract class LongStorage implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /** The alignment of buffers allocated outside the heap, one cache line */
+    static final int ALIGNMENT = 64;
+
+    /** Allocates a zeroed long[] on the Java heap */
+    static LongStorage onHeap(int length) {
+        return new HeapLongStorage(new long[length]);
+    }
+
+    /**
+     * Allocates zeroed memory outside the Java heap, aligned to a cache line. The memory is freed once the storage is
+     * garbage collected.
+     *
+     * @throws IllegalArgumentException if the longs do not fit the 2 GB a buffer can address
+     */
+    static LongStorage offHeap(int length) {
+        if ((long) length * Long.BYTES > Integer.MAX_VALUE - ALIGNMENT) {
+            throw new IllegalArgumentException("Off heap storage of " + length + " longs exceeds 2 GB");
+        }
+        ByteBuffer buffer = ByteBuffer.allocateDirect(length * Long.BYTES + ALIGNMENT).alignedSlice(ALIGNMENT);
+        buffer.limit(length * Long.BYTES);
+        return wrap(buffer);
+    }
+
+    /**
+     * Wraps a buffer, e.g. a mapped file. The buffer must be direct and its position aligned to 8 bytes, for the
+     * atomic updates of {@link #or(int, long)}.
+     */
+    static LongStorage wrap(ByteBuffer buffer) {
+        if (!buffer.isDirect() || buffer.alignmentOffset(buffer.position(), Long.BYTES) != 0) {
+            throw new IllegalArgumentException("Long storage needs a direct buffer aligned to " + Long.BYTES
+                    + " bytes");
+        }
+        return new BufferLongStorage(buffer.slice().order(ByteOrder.LITTLE_ENDIAN));
+    }
+
+    /**
+     * Maps longs of a file. A read-only mapping throws {@link java.nio.ReadOnlyBufferException} on writes; changes
+     * to a writable mapping are written to the file by the operating system, or by {@link #force()}.
+     *
+     * @param channel the file
+     * @param position the offset of the first long in the file, a multiple of 8 bytes
+     * @param length the number of longs
+     * @param writable true to map the file read-write, it must then be open for writing
+     * @throws IOException if the file cannot be mapped
+     */
+    static LongStorage map(FileChannel channel, long position, int length, boolean writable) throws IOException {
+        if (position % Long.BYTES != 0 || (long) length * Long.BYTES > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Cannot map " + length + " longs at offset " + position);
+        }
+        MappedByteBuffer buffer = channel.map(writable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY,
+                position, (long) length * Long.BYTES);
+        return new BufferLongStorage(buffer.order(ByteOrder.LITTLE_ENDIAN));
+    }
+
+    /** Returns the number of longs */
+    abstract int length();
+
+    /** Reads a long, without ordering guarantees */
+    abstract long get(int index);
+
+    /** Reads a long, the read is never eliminated or merged with another one */
+    abstract long getOpaque(int index);
+
+    /** Writes a long, without ordering guarantees */
+    abstract void set(int index, long value);
+
+    /** Atomically sets the bits of the mask */
+    abstract void or(int index, long mask);
+
+    /** Atomically sets a long to a value if it holds the expected value, returns true if it did */
+    abstract boolean compareAndSet(int index, long expected, long value);
+
+    /**
+     * Copies longs from {@code index} on into a buffer as little endian, as many as fit into its remaining bytes and
+     * the storage, and advances its position past them.
+     *
+     * @return the number of longs copied
+     */
+    abstract int getLongs(int index, ByteBuffer dst);
+
+    /**
+     * Copies the remaining bytes of a buffer, little endian longs, into the storage from {@code index} on, and advances
+     * its position past them.
+     *
+     * @return the number of longs copied
+     */
+    abstract int setLongs(int index, ByteBuffer src);
+
+    /** Returns true if the longs are outside the Java heap */
+    abstract boolean isOffHeap();
+
+    /** Writes the changes of a writable mapped file back to the file, does nothing for other storage */
+    void force() {
+    }
+
+    /** Storage in a long[] */
+    private static final class HeapLongStorage extends LongStorage {
+        private static final long serialVersionUID = 1L;
+        private static final VarHandle LONGS = MethodHandles.arrayElementVarHandle(long[].class);
+
+        private final long[] longs;
+
+        private HeapLongStorage(long[] longs) {
+            this.longs = longs;
+        }
+
+        @Override
+        int length() {
+            return longs.length;
+        }
+
+        @Override
+        long get(int index) {
+            return longs[index];
+        }
+
+        @Override
+        long getOpaque(int index) {
+            return (long) LONGS.getOpaque(longs, index);
+        }
+
+        @Override
+        void set(int index, long value) {
+            longs[index] = value;
+        }
+
+        @Override
+        void or(int index, long mask) {
+            LONGS.getAndBitwiseOr(longs, index, mask);
+        }
+
+        @Override
+        boolean compareAndSet(int index, long expected, long value) {
+            return LONGS.compareAndSet(longs, index, expected, value);
+        }
+
+        @Override
+        int getLongs(int index, ByteBuffer dst) {
+            int count = Math.min(dst.remaining() / Long.BYTES, longs.length - index);
+            dst.duplicate().order(ByteOrder.LITTLE_ENDIAN).asLongBuffer().put(longs, index, count);
+            dst.position(dst.position() + count * Long.BYTES);
+            return count;
+        }
+
+        @Override
+        int setLongs(int index, ByteBuffer src) {
+            int count = src.remaining() / Long.BYTES;
+            src.duplicate().order(ByteOrder.LITTLE_ENDIAN).asLongBuffer().get(longs, index, count);
+            src.position(src.position() + count * Long.BYTES);
+            return count;
+        }
+
+        @Override
+        boolean isOffHeap() {
+            return false;
+        }
+    }
+
+    /** Storage in a direct little endian buffer, Java serialization copies it to the heap */
+    private static final class BufferLongStorage extends LongStorage {
+        private static final long serialVersionUID = 1L;
+        private static final VarHandle LONGS
+                = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+        private final transient ByteBuffer buffer;
+        private final int length;
+
+        private BufferLongStorage(ByteBuffer buffer) {
+            this.buffer = buffer;
+            this.length = buffer.capacity() / Long.BYTES;
+        }
+
+        @Override
+        int length() {
+            return length;
+        }
+
+        @Override
+        long get(int index) {
+            return buffer.getLong(index * Long.BYTES);
+        }
+
+        @Override
+        long getOpaque(int index) {
+            return (long) LONGS.getOpaque(buffer, index * Long.BYTES);
+        }
+
+        @Override
+        void set(int index, long value) {
+            buffer.putLong(index * Long.BYTES, value);
+        }
+
+        @Override
+        void or(int index, long mask) {
+            LONGS.getAndBitwiseOr(buffer, index * Long.BYTES, mask);
+        }
+
+        @Override
+        boolean compareAndSet(int index, long expected, long value) {
+            return LONGS.compareAndSet(buffer, index * Long.BYTES, expected, value);
+        }
+
+        @Override
+        int getLongs(int index, ByteBuffer dst) {
+            int count = Math.min(dst.remaining() / Long.BYTES, length - index);
+            ByteBuffer longs = buffer.duplicate();
+            longs.position(index * Long.BYTES).limit((index + count) * Long.BYTES);
+            dst.put(longs);
+            return count;
+        }
+
+        @Override
+        int setLongs(int index, ByteBuffer src) {
+            int count = src.remaining() / Long.BYTES;
+            ByteBuffer longs = buffer.duplicate();
+            longs.position(index * Long.BYTES);
+            longs.put(src);
+            return count;
+        }
+
+        @Override
+        boolean isOffHeap() {
+            return true;
+        }
+
+        @Override
+        void force() {
+            if (buffer instanceof MappedByteBuffer && !buffer.isReadOnly()) {
+                ((MappedByteBuffer) buffer).force();
+            }
+        }
+
+        private Object writeReplace() throws ObjectStreamException {
+            long[] longs = new long[length];
+            for (int i = 0; i < length; i++) {
+                longs[i] = get(i);
+            }
+            return new HeapLongStorage(longs);
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.poc.device.store;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A {@link SuspectDeviceStore} that is replaced as a whole, e.g. by the nightly rebuild from the suspect device feed,
+ * while requests keep checking devices.
+ *
+ * Lookups go to the current store, a volatile read of an {@link AtomicReference}; they never take a lock and never
+ * wait for a rebuild. {@link #rebuild(SuspectDeviceStore.Builder, Loader)} builds and loads the next store in the
+ * background and only then publishes it with a volatile write, so a lookup sees either the complete previous store or
+ * the complete next one, never a store being loaded. Lookups that already started on the previous store finish on
+ * it, it is garbage collected once they are done.
+ *
+ * Devices are added to a store before it is published, by the loader of a rebuild; devices added to
+ * {@link #current()} during a rebuild are not in the next store.
+ */
+public final class ManagedSuspectDeviceStore {
+    private final AtomicReference<SuspectDeviceStore> current;
+    private final AtomicReference<CompletableFuture<SuspectDeviceStore>> rebuilding = new AtomicReference<>();
+
+    private ManagedSuspectDeviceStore(SuspectDeviceStore current) {
+        this.current = new AtomicReference<>(current);
+    }
+
+    /** Returns a managed store serving the given store until the first swap */
+    public static ManagedSuspectDeviceStore of(SuspectDeviceStore store) {
+        if (store == null) {
+            throw new IllegalArgumentException("Store cannot be null");
+        }
+        return new ManagedSuspectDeviceStore(store);
+    }
+
+    /** Loads the devices into a store before it is published, e.g. from the suspect device feed */
+    @FunctionalInterface
+    public interface Loader {
+        void load(SuspectDeviceStore store) throws IOException;
+    }
+
+    /**
+     * Returns the store lookups currently go to. Callers should not keep it across requests, the next swap replaces
+     * it.
+     */
+    public SuspectDeviceStore current() {
+        return current.get();
+    }
+
+    /**
+     * Publishes a complete store, lookups that start after this returns go to it.
+     *
+     * @return the store it replaces
+     */
+    public SuspectDeviceStore swap(SuspectDeviceStore store) {
+        if (store == null) {
+            throw new IllegalArgumentException("Store cannot be null");
+        }
+        return current.getAndSet(store);
+    }
+
+    /**
+     * Builds a new store in the background, on the executor of the builder, loads it and publishes it with
+     * {@link #swap(SuspectDeviceStore)}. Lookups keep going to the current store until then. If building or loading
+     * fails, the current store stays and the returned future completes exceptionally.
+     *
+     * @param builder the configuration of the next store
+     * @param loader adds the devices to the next store
+     * @return a future completed with the next store once it is published
+     * @throws IllegalStateException if a rebuild is already running
+     * @throws RejectedExecutionException if the executor of the builder does not accept the rebuild, the store can
+     *         then be rebuilt again
+     */
+    public CompletableFuture<SuspectDeviceStore> rebuild(SuspectDeviceStore.Builder builder, Loader loader) {
+        CompletableFuture<SuspectDeviceStore> published = new CompletableFuture<>();
+        if (!rebuilding.compareAndSet(null, published)) {
+            throw new IllegalStateException("A rebuild of the store is already running");
+        }
+        // Build and load in one task, the loader must not run on the calling thread
+        CompletableFuture<SuspectDeviceStore> next;
+        try {
+            next = CompletableFuture.supplyAsync(() -> {
+                SuspectDeviceStore store = builder.build();
+                try {
+                    loader.load(store);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return store;
+            }, builder.buildExecutor());
+        } catch (RejectedExecutionException e) {
+            rebuilding.set(null);
+            published.completeExceptionally(e);
+            throw e;
+        }
+        next.whenComplete((store, failure) -> {
+            if (failure == null) {
+                swap(store);
+            }
+            rebuilding.set(null);
+            if (failure == null) {
+                published.complete(store);
+            } else {
+                published.completeExceptionally(failure);
+            }
+        });
+        return published;
+    }
+
+    /** Returns true while a rebuild is building or loading the next store */
+    public boolean isRebuilding() {
+        return rebuilding.get() != null;
+    }
+
+    /** Checks if a device might be a suspect device in the current store */
+    public boolean isSuspectDevice(String deviceUid) {
+        return current.get().isSuspectDevice(deviceUid);
+    }
+
+    /** Checks if a device given as a char sequence might be a suspect device in the current store */
+    public boolean isSuspectDevice(CharSequence deviceUid) {
+        return current.get().isSuspectDevice(deviceUid);
+    }
+
+    /** Checks if a device given as its UTF-8 bytes might be a suspect device in the current store */
+    public boolean isSuspectDevice(byte[] deviceUid, int offset, int length) {
+        return current.get().isSuspectDevice(deviceUid, offset, length);
+    }
+
+    /** Checks if a device given as the UTF-8 bytes of a buffer might be a suspect device in the current store */
+    public boolean isSuspectDevice(ByteBuffer deviceUid) {
+        return current.get().isSuspectDevice(deviceUid);
+    }
+
+    /** Checks if a device with a numeric id might be a suspect device in the current store */
+    public boolean isSuspectDevice(long deviceId) {
+        return current.get().isSuspectDevice(deviceId);
+    }
+
+    /** Checks a batch of devices against the current store, all of them against the same store */
+    public void isSuspectDevices(String[] deviceUids, boolean[] results) {
+        current.get().isSuspectDevices(deviceUids, results);
+    }
+
+    /** Checks a batch of devices with numeric ids against the current store, all of them against the same store */
+    public void isSuspectDevices(long[] deviceIds, boolean[] results) {
+        current.get().isSuspectDevices(deviceIds, results);
+    }
+}
@@ -0,0 +1,166 @@
+package com.poc.device.store;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * A probabilistic set of device ids that a {@link SuspectDeviceStore} delegates to.
+ *
+ * A filter never returns a false negative: once a device id is put, {@link #mightContain(String)} returns true for
+ * it. It may return true for device ids that were never put, with the probability returned by {@link #expectedFpp()}.
+ *
+ * Device ids can also be passed as a {@link CharSequence} or as their UTF-8 bytes, in a byte array or a
+ * {@link ByteBuffer}; every form of the same device id finds the same entry as its string. The defaults convert
+ * them to a string, the filters of {@link FilterType} other than {@link FilterType#GUAVA_BLOOM} hash them in place.
+ *
+ * Implementations are created and read back by a {@link MembershipFilterFactory}, {@link FilterType} lists the ones
+ * shipped with the store.
+ */
+public interface MembershipFilter {
+
+    /**
+     * Puts a device id into the filter.
+     *
+     * @param deviceUid the device id
+     * @return true if the filter changed, false if it already reported the device id as a member
+     */
+    boolean put(String deviceUid);
+
+    /** Returns true if the device id might have been put in this filter, false if this is definitely not the case */
+    boolean mightContain(String deviceUid);
+
+    /**
+     * Puts a numeric device id into the filter. A numeric device id is a key of its own, distinct from its decimal
+     * string. The default throws, the filters of {@link FilterType} override this.
+     *
+     * @param deviceId the device id
+     * @return true if the filter changed, false if it already reported the device id as a member
+     * @throws UnsupportedOperationException if the filter does not support numeric device ids
+     */
+    default boolean put(long deviceId) {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " does not support numeric device ids");
+    }
+
+    /**
+     * Returns true if the numeric device id might have been put in this filter, false if this is definitely not the
+     * case. The default throws, the filters of {@link FilterType} override this.
+     *
+     * @throws UnsupportedOperationException if the filter does not support numeric device ids
+     */
+    default boolean mightContain(long deviceId) {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " does not support numeric device ids");
+    }
+
+    /** Puts a device id given as a char sequence, like {@link #put(String)} of its string */
+    default boolean put(CharSequence deviceUid) {
+        return put(deviceUid.toString());
+    }
+
+    /** Returns {@link #mightContain(String)} of the string of the char sequence */
+    default boolean mightContain(CharSequence deviceUid) {
+        return mightContain(deviceUid.toString());
+    }
+
+    /**
+     * Puts a device id given as its UTF-8 bytes, like {@link #put(String)} of the device id.
+     *
+     * @param deviceUid the array holding the UTF-8 bytes of the device id, well-formed
+     * @param offset the index of the first byte of the device id
+     * @param length the number of bytes of the device id
+     * @return true if the filter changed, false if it already reported the device id as a member
+     */
+    default boolean put(byte[] deviceUid, int offset, int length) {
+        return put(new String(deviceUid, offset, length, StandardCharsets.UTF_8));
+    }
+
+    /** Returns {@link #mightContain(String)} of the device id whose UTF-8 bytes are the given range of the array */
+    default boolean mightContain(byte[] deviceUid, int offset, int length) {
+        return mightContain(new String(deviceUid, offset, length, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Puts a device id given as its UTF-8 bytes, the remaining bytes of the buffer, like {@link #put(String)} of the
+     * device id. The position of the buffer does not move.
+     */
+    default boolean put(ByteBuffer deviceUid) {
+        return put(StandardCharsets.UTF_8.decode(deviceUid.duplicate()).toString());
+    }
+
+    /**
+     * Returns {@link #mightContain(String)} of the device id whose UTF-8 bytes are the remaining bytes of the buffer.
+     * The position of the buffer does not move.
+     */
+    default boolean mightContain(ByteBuffer deviceUid) {
+        return mightContain(StandardCharsets.UTF_8.decode(deviceUid.duplicate()).toString());
+    }
+
+    /**
+     * Checks a batch of device ids, storing {@link #mightContain(String)} of {@code deviceUids[i]} in
+     * {@code results[i]}. The default checks them one by one; filters that can overlap the memory accesses of
+     * several lookups override this.
+     *
+     * @param deviceUids the device ids
+     * @param results receives the answers, at least as long as {@code deviceUids}
+     */
+    default void mightContain(String[] deviceUids, boolean[] results) {
+        for (int i = 0; i < deviceUids.length; i++) {
+            results[i] = mightContain(deviceUids[i]);
+        }
+    }
+
+    /**
+     * Checks a batch of numeric device ids, storing {@link #mightContain(long)} of {@code deviceIds[i]} in
+     * {@code results[i]}, like {@link #mightContain(String[], boolean[])}.
+     */
+    default void mightContain(long[] deviceIds, boolean[] results) {
+        for (int i = 0; i < deviceIds.length; i++) {
+            results[i] = mightContain(deviceIds[i]);
+        }
+    }
+
+    /**
+     * Returns the probability that {@link #mightContain(String)} erroneously returns true for a device id that has
+     * not been put in the filter.
+     */
+    double expectedFpp();
+
+    /** Returns the number of bits of memory the filter uses */
+    long bitSize();
+
+    /**
+     * Returns the hash function the filter hashes device ids with. The default is
+     * {@link DeviceHashStrategy#MURMUR3_128}, the hash of Guava's Bloom filter.
+     */
+    default DeviceHashStrategy hashStrategy() {
+        return DeviceHashStrategy.MURMUR3_128;
+    }
+
+    /**
+     * Returns true if puts from several threads at once are safe and do not serialize on a lock, so that
+     * {@link SuspectDeviceStore#addAllSuspectDevices(List, ForkJoinPool)} can load the filter in parallel. The
+     * default is false, the store then loads on a single thread.
+     */
+    default boolean supportsConcurrentPuts() {
+        return false;
+    }
+
+    /**
+     * Reads every page of the memory of the filter once, so that later lookups do not fault pages in. The default
+     * does nothing, which suits filters whose memory was touched when it was allocated.
+     */
+    default void preTouch() {
+    }
+
+    /**
+     * Writes this filter to an output stream, in a format {@link MembershipFilterFactory#readFrom} of the same
+     * factory can read back.
+     *
+     * @param out the stream to write to
+     * @throws IOException if writing to the stream fails
+     */
+    void writeTo(OutputStream out) throws IOException;
+}
@@ -0,0 +1,119 @@
+package com.poc.device.store;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collection;
+
+/**
+ * Creates {@link MembershipFilter}s, either empty for a number of expected insertions or from the bytes written by
+ * {@link MembershipFilter#writeTo}.
+ */
+public interface MembershipFilterFactory {
+
+    /**
+     * Creates an empty filter.
+     *
+     * @param expectedInsertions the number of expected insertions(n) to the constructed filter
+     * @param fpp the desired false positive probability, must be between 0 and 1 (exclusive)
+     * @return the filter
+     */
+    MembershipFilter create(long expectedInsertions, double fpp);
+
+    /**
+     * Creates an empty filter whose memory is allocated outside the Java heap, invisible to the garbage collector.
+     * The default throws, only factories that support it override this.
+     *
+     * @param expectedInsertions the number of expected insertions(n) to the constructed filter
+     * @param fpp the desired false positive probability, must be between 0 and 1 (exclusive)
+     * @return the filter
+     * @throws UnsupportedOperationException if the filters of this factory live on the Java heap
+     */
+    default MembershipFilter createOffHeap(long expectedInsertions, double fpp) {
+        throw new UnsupportedOperationException(this + " filters cannot be allocated off heap");
+    }
+
+    /**
+     * Creates an empty filter that hashes device ids with the given strategy. The default supports only
+     * {@link DeviceHashStrategy#MURMUR3_128}, for which it is {@link #create(long, double)}.
+     *
+     * @param expectedInsertions the number of expected insertions(n) to the constructed filter
+     * @param fpp the desired false positive probability, must be between 0 and 1 (exclusive)
+     * @param hashStrategy the hash function of the filter
+     * @return the filter
+     * @throws UnsupportedOperationException if the filters of this factory cannot hash with the strategy
+     */
+    default MembershipFilter create(long expectedInsertions, double fpp, DeviceHashStrategy hashStrategy) {
+        checkMurmur3(hashStrategy);
+        return create(expectedInsertions, fpp);
+    }
+
+    /**
+     * Creates an empty filter like {@link #createOffHeap(long, double)} that hashes device ids with the given
+     * strategy. The default supports only {@link DeviceHashStrategy#MURMUR3_128}.
+     *
+     * @throws UnsupportedOperationException if the filters of this factory cannot be allocated off heap or cannot
+     *         hash with the strategy
+     */
+    default MembershipFilter createOffHeap(long expectedInsertions, double fpp, DeviceHashStrategy hashStrategy) {
+        checkMurmur3(hashStrategy);
+        return createOffHeap(expectedInsertions, fpp);
+    }
+
+    /**
+     * Creates a filter that contains the given device ids. Filters that can only be built from the complete set of
+     * device ids, like {@link BinaryFuseFilter}, override this; the default creates an empty filter and puts them.
+     *
+     * @param deviceUids the device ids
+     * @param fpp the desired false positive probability, must be between 0 and 1 (exclusive)
+     * @return the filter
+     */
+    default MembershipFilter create(Collection<String> deviceUids, double fpp) {
+        MembershipFilter filter = create(deviceUids.size(), fpp);
+        for (String deviceUid : deviceUids) {
+            if (deviceUid == null || deviceUid.isEmpty()) {
+                throw new IllegalArgumentException("Device Id cannot be null");
+            }
+            filter.put(deviceUid);
+        }
+        return filter;
+    }
+
+    /**
+     * Creates a filter like {@link #create(Collection, double)} that hashes device ids with the given strategy. The
+     * default creates an empty filter with {@link #create(long, double, DeviceHashStrategy)} and puts them.
+     *
+     * @param deviceUids the device ids
+     * @param fpp the desired false positive probability, must be between 0 and 1 (exclusive)
+     * @param hashStrategy the hash function of the filter
+     * @return the filter
+     * @throws UnsupportedOperationException if the filters of this factory cannot hash with the strategy
+     */
+    default MembershipFilter create(Collection<String> deviceUids, double fpp, DeviceHashStrategy hashStrategy) {
+        if (hashStrategy == DeviceHashStrategy.MURMUR3_128) {
+            return create(deviceUids, fpp);
+        }
+        MembershipFilter filter = create(deviceUids.size(), fpp, hashStrategy);
+        for (String deviceUid : deviceUids) {
+            if (deviceUid == null || deviceUid.isEmpty()) {
+                throw new IllegalArgumentException("Device Id cannot be null");
+            }
+            filter.put(deviceUid);
+        }
+        return filter;
+    }
+
+    /**
+     * Reads a filter written by {@link MembershipFilter#writeTo} of a filter this factory created.
+     *
+     * @param in the stream to read from
+     * @return the filter
+     * @throws IOException if the stream cannot be read or does not contain a filter of this factory
+     */
+    MembershipFilter readFrom(InputStream in) throws IOException;
+
+    private void checkMurmur3(DeviceHashStrategy hashStrategy) {
+        if (hashStrategy != DeviceHashStrategy.MURMUR3_128) {
+            throw new UnsupportedOperationException(this + " filters cannot hash with " + hashStrategy);
+        }
+    }
+}
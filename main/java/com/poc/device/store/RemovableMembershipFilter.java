@@ -0,0 +1,28 @@
+package com.poc.device.store;
+
+/**
+ * A {@link MembershipFilter} that device ids can be removed from again.
+ */
+public interface RemovableMembershipFilter extends MembershipFilter {
+
+    /**
+     * Removes a device id from the filter. Only device ids that were put should be removed: removing one that the
+     * filter merely reports as a false positive deletes the entry of another device id.
+     *
+     * @param deviceUid the device id
+     * @return true if an entry of the device id was found and removed
+     */
+    boolean remove(String deviceUid);
+
+    /**
+     * Removes a numeric device id from the filter, like {@link #remove(String)}. The default throws, the filters of
+     * {@link FilterType} override this.
+     *
+     * @param deviceId the device id
+     * @return true if an entry of the device id was found and removed
+     * @throws UnsupportedOperationException if the filter does not support numeric device ids
+     */
+    default boolean remove(long deviceId) {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " does not support numeric device ids");
+    }
+}
@@ -0,0 +1,253 @@
+package com.poc.device.store;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * A scalable Bloom filter of device ids (Almeida et al., "Scalable Bloom Filters", 2007), which grows with the number
+ * of device ids instead of letting its false positive probability degrade.
+ *
+ * The filter is a chain of stages. Once the newest stage holds the number of device ids it was sized for, a new stage
+ * with {@link #GROWTH} times the capacity and {@link #TIGHTENING} times the false positive probability is appended.
+ * The false positive probabilities of the stages form a geometric series that sums to at most the configured one, so
+ * {@link #expectedFpp()} stays bounded however many device ids are put.
+ *
+ * Lookups check the stages newest first and never block. Puts are serialized; appending a stage allocates it but
+ * leaves the existing stages untouched, so nothing is rebuilt.
+ *
+ * Every stage hashes device ids with the {@link DeviceHashStrategy} the filter is created with, so a device id is
+ * hashed once and its hash probes all the stages. Stages must therefore be of a type that probes a hash, every
+ * {@link FilterType} but {@link FilterType#GUAVA_BLOOM}.
+ */
+public final class ScalableBloomFilter extends HashedMembershipFilter implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /** The factor by which the capacity of each new stage grows */
+    public static final int GROWTH = 2;
+    /** The factor by which the false positive probability of each new stage shrinks */
+    public static final double TIGHTENING = 0.5;
+
+    private final FilterType stageType;
+    private final long initialCapacity;
+    private final double fpp;
+    private volatile HashedMembershipFilter[] stages;
+    private long[] stageCounts;
+
+    private ScalableBloomFilter(FilterType stageType, long initialCapacity, double fpp,
+                                HashedMembershipFilter[] stages, long[] stageCounts) {
+        this.stageType = stageType;
+        this.initialCapacity = initialCapacity;
+        this.fpp = fpp;
+        this.stages = stages;
+        this.stageCounts = stageCounts;
+    }
+
+    /**
+     * Creates a filter whose stages are {@link BlockedBloomFilter}s.
+     *
+     * @param expectedInsertions the capacity(n) of the first stage
+     * @param fpp the false positive probability the filter stays below, must be between 0 and 1 (exclusive)
+     * @return the filter
+     */
+    public static ScalableBloomFilter create(long expectedInsertions, double fpp) {
+        return create(FilterType.BLOCKED_BLOOM, expectedInsertions, fpp);
+    }
+
+    /**
+     * Creates a filter whose stages are of the given type.
+     *
+     * @param stageType the type of filter of every stage, must accept puts and probe a hash
+     * @param expectedInsertions the capacity(n) of the first stage
+     * @param fpp the false positive probability the filter stays below, must be between 0 and 1 (exclusive)
+     * @return the filter
+     */
+    public static ScalableBloomFilter create(FilterType stageType, long expectedInsertions, double fpp) {
+        return create(stageType, expectedInsertions, fpp, DeviceHashStrategy.MURMUR3_128);
+    }
+
+    /**
+     * Creates a filter whose stages are of the given type and hash device ids with the given strategy.
+     *
+     * @param stageType the type of filter of every stage, must accept puts and probe a hash
+     * @param expectedInsertions the capacity(n) of the first stage
+     * @param fpp the false positive probability the filter stays below, must be between 0 and 1 (exclusive)
+     * @param hashStrategy the hash function of every stage, must be supported by {@code stageType}
+     * @return the filter
+     */
+    public static ScalableBloomFilter create(FilterType stageType, long expectedInsertions, double fpp,
+                                             DeviceHashStrategy hashStrategy) {
+        if (!(fpp > 0.0 && fpp < 1.0)) {
+            throw new IllegalArgumentException("False positive probability must be in (0, 1): " + fpp);
+        }
+        long initialCapacity = Math.max(expectedInsertions, 1);
+        HashedMembershipFilter firstStage = newStage(stageType, initialCapacity, stageFpp(fpp, 0), hashStrategy);
+        return new ScalableBloomFilter(stageType, initialCapacity, fpp, new HashedMembershipFilter[] {firstStage},
+                new long[1]);
+    }
+
+    private static HashedMembershipFilter newStage(FilterType stageType, long capacity, double fpp,
+                                                   DeviceHashStrategy hashStrategy) {
+        MembershipFilter stage = stageType.create(capacity, fpp, hashStrategy);
+        if (!(stage instanceof HashedMembershipFilter)) {
+            throw new IllegalArgumentException("Filter type " + stageType
+                    + " cannot be a stage of a scalable Bloom filter");
+        }
+        return (HashedMembershipFilter) stage;
+    }
+
+    /** Puts the hash into the newest stage, unless a stage already reports it as a member */
+    @Override
+    synchronized boolean putHash(long hash) {
+        if (mightContainHash(hash)) {
+            return false;
+        }
+        return stageForPut().putHash(hash);
+    }
+
+    @Override
+    boolean mightContainHash(long hash) {
+        HashedMembershipFilter[] current = stages;
+        for (int i = current.length - 1; i >= 0; i--) {
+            if (current[i].mightContainHash(hash)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Probes each stage with its own batch lookup and merges the answers */
+    @Override
+    void mightContainHashes(long[] hashes, int count, boolean[] results, int offset) {
+        HashedMembershipFilter[] current = stages;
+        if (current.length == 1) {
+            current[0].mightContainHashes(hashes, count, results, offset);
+            return;
+        }
+        boolean[] stageResults = new boolean[count];
+        for (int i = 0; i < count; i++) {
+            results[offset + i] = false;
+        }
+        for (HashedMembershipFilter stage : current) {
+            stage.mightContainHashes(hashes, count, stageResults, 0);
+            for (int i = 0; i < count; i++) {
+                results[offset + i] |= stageResults[i];
+            }
+        }
+    }
+
+    /** Returns the newest stage and counts the device id about to be put in it, appending a stage if it is full */
+    private HashedMembershipFilter stageForPut() {
+        HashedMembershipFilter[] current = stages;
+        int newest = current.length - 1;
+        if (stageCounts[newest] >= stageCapacity(newest)) {
+            current = Arrays.copyOf(current, current.length + 1);
+            current[++newest] = newStage(stageType, stageCapacity(newest), stageFpp(fpp, newest), hashStrategy());
+            stageCounts = Arrays.copyOf(stageCounts, current.length);
+            stages = current;
+        }
+        stageCounts[newest]++;
+        return current[newest];
+    }
+
+    /** Returns the probability that any of the stages answers a false positive */
+    @Override
+    public double expectedFpp() {
+        double trueNegative = 1.0;
+        for (MembershipFilter stage : stages) {
+            trueNegative *= 1.0 - stage.expectedFpp();
+        }
+        return 1.0 - trueNegative;
+    }
+
+    @Override
+    public long bitSize() {
+        long bitSize = 0;
+        for (MembershipFilter stage : stages) {
+            bitSize += stage.bitSize();
+        }
+        return bitSize;
+    }
+
+    /** Returns the hash strategy of the stages */
+    @Override
+    public DeviceHashStrategy hashStrategy() {
+        return stages[0].hashStrategy();
+    }
+
+    /** Returns the number of stages the filter has grown to */
+    public int stageCount() {
+        return stages.length;
+    }
+
+    /**
+     * Writes this filter to an output stream, with a custom format (not Java serialization).
+     *
+     * @param out the stream to write to
+     * @throws IOException if writing to the stream fails
+     */
+    @Override
+    public synchronized void writeTo(OutputStream out) throws IOException {
+        DataOutputStream dout = new DataOutputStream(out);
+        dout.writeUTF(stageType.name());
+        dout.writeLong(initialCapacity);
+        dout.writeDouble(fpp);
+        dout.writeInt(stages.length);
+        for (int i = 0; i < stages.length; i++) {
+            dout.writeLong(stageCounts[i]);
+            stages[i].writeTo(dout);
+        }
+        dout.flush();
+    }
+
+    /**
+     * Reads a filter written by {@link #writeTo(OutputStream)}.
+     *
+     * @param in the stream to read from
+     * @return the filter
+     * @throws IOException if the stream is truncated or does not contain a scalable filter
+     */
+    public static ScalableBloomFilter readFrom(InputStream in) throws IOException {
+        DataInputStream din = new DataInputStream(in);
+        FilterType stageType;
+        try {
+            stageType = FilterType.valueOf(din.readUTF());
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Corrupt scalable Bloom filter header", e);
+        }
+        long initialCapacity = din.readLong();
+        double fpp = din.readDouble();
+        int stageCount = din.readInt();
+        if (initialCapacity < 1 || !(fpp > 0.0 && fpp < 1.0) || stageCount < 1 || stageCount > Long.SIZE) {
+            throw new IOException("Corrupt scalable Bloom filter header: initialCapacity=" + initialCapacity
+                    + ", fpp=" + fpp + ", stages=" + stageCount);
+        }
+        HashedMembershipFilter[] stages = new HashedMembershipFilter[stageCount];
+        long[] stageCounts = new long[stageCount];
+        for (int i = 0; i < stageCount; i++) {
+            stageCounts[i] = din.readLong();
+            MembershipFilter stage = stageType.readFrom(din);
+            if (!(stage instanceof HashedMembershipFilter)
+                    || (i > 0 && stage.hashStrategy() != stages[0].hashStrategy())) {
+                throw new IOException("Corrupt scalable Bloom filter: stage " + i + " is a "
+                        + stage.getClass().getSimpleName() + " hashing with " + stage.hashStrategy());
+            }
+            stages[i] = (HashedMembershipFilter) stage;
+        }
+        return new ScalableBloomFilter(stageType, initialCapacity, fpp, stages, stageCounts);
+    }
+
+    private long stageCapacity(int stage) {
+        double capacity = initialCapacity * Math.pow(GROWTH, stage);
+        return capacity >= Long.MAX_VALUE ? Long.MAX_VALUE : (long) capacity;
+    }
+
+    /** The false positive probability of a stage, the series over all stages sums to {@code fpp} */
+    private static double stageFpp(double fpp, int stage) {
+        return fpp * (1 - TIGHTENING) * Math.pow(TIGHTENING, stage);
+    }
+}
@@ -0,0 +1,480 @@
+package com.poc.device.store;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32C;
+
+/**
+ * A versioned, checksummed snapshot file of the filter of a {@link SuspectDeviceStore}.
+ *
+ * The file is a 128 byte header, the payload and a trailer of one CRC32C per 1 MB chunk of the payload. All fields
+ * are little endian. The header is:
+ *
+ * <pre>
+ * offset  size  field
+ *      0     4  magic "SDSF"
+ *      4     4  format version, 3
+ *      8     4  filter type, {@link FilterType#snapshotId()}
+ *     12     4  hash strategy, {@link DeviceHashStrategy#snapshotId()}
+ *     16     4  funnel, 1 for {@link DeviceFunnel}, the UTF-8 bytes of the device id
+ *     20     4  chunk size in bytes
+ *     24     8  payload length in bytes
+ *     32     8  bit size of the filter
+ *     40     8  expected false positive probability of the filter when it was written
+ *     48     4  filter parameter, the number of hash functions of a blocked Bloom filter
+ *     52     4  filter parameter, the number of blocks of a blocked Bloom filter
+ *     56     4  CRC32C of the bytes 0 to 55 and 60 to 67
+ *     60     8  the position of the {@link SuspectDeviceLog} up to which the snapshot contains its device ids, 0
+ *               without a log
+ *     68    60  reserved, zero
+ * </pre>
+ *
+ * Version 2 files, whose header CRC covers only the bytes 0 to 55 and which have no log position, are still read.
+ *
+ * The payload of a {@link BlockedBloomFilter} is its bits as little endian longs, so the file can be memory mapped as
+ * the filter; every block is aligned to a cache line of the mapping. The payload of other filters is what their
+ * {@link MembershipFilter#writeTo(OutputStream)} writes.
+ *
+ * Loading reads the payload sequentially in chunks through a direct buffer and checks every chunk against its CRC
+ * before the filter sees it, so it is bounded by the bandwidth of the disk.
+ */
+final class SnapshotFile {
+    static final int MAGIC = 0x46534453;
+    static final int VERSION = 3;
+    static final int HEADER_BYTES = 128;
+    static final int FUNNEL_UTF_8 = 1;
+    static final int CHUNK_BYTES = 1 << 20;
+
+    private static final int HEADER_CRC_OFFSET = 56;
+    private static final int LOG_POSITION_OFFSET = 60;
+    private static final int VERSION_WITHOUT_LOG_POSITION = 2;
+    private static final boolean WINDOWS = System.getProperty("os.name", "").startsWith("Windows");
+
+    private SnapshotFile() {
+    }
+
+    /**
+     * Writes a snapshot of the filter. The snapshot is written to a temporary file that then replaces the file, so
+     * processes that mapped the previous snapshot keep reading it unchanged.
+     *
+     * @param filter the filter, puts while it is written may or may not be in the snapshot
+     * @param path the snapshot file
+     * @throws IOException if the file cannot be written
+     * @throws UnsupportedOperationException if the filter was not created by a {@link FilterType}
+     */
+    static void write(MembershipFilter filter, Path path) throws IOException {
+        write(filter, path, 0);
+    }
+
+    /**
+     * Writes a snapshot of the filter like {@link #write(MembershipFilter, Path)}, recording the position of a
+     * {@link SuspectDeviceLog} whose device ids up to it the filter contains.
+     */
+    static void write(MembershipFilter filter, Path path, long logPosition) throws IOException {
+        FilterType filterType = FilterType.of(filter);
+        if (filterType == null) {
+            throw new UnsupportedOperationException("Filter " + filter.getClass().getSimpleName()
+                    + " does not support snapshots");
+        }
+        Path directory = path.toAbsolutePath().getParent();
+        Path temporary = Files.createTempFile(directory, path.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+                channel.position(HEADER_BYTES);
+                ChunkWriter payload = new ChunkWriter(channel);
+                if (filter instanceof BlockedBloomFilter) {
+                    LongStorage words = ((BlockedBloomFilter) filter).storage();
+                    for (int index = 0; index < words.length(); ) {
+                        index += words.getLongs(index, payload.chunk());
+                    }
+                } else {
+                    filter.writeTo(payload);
+                }
+                payload.finish();
+                writeHeader(channel, filterType, filter, payload.length, logPosition);
+                writeTrailer(channel, payload.length, Arrays.copyOf(payload.crcs, payload.chunks));
+                channel.force(true);
+            }
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            forceDirectory(directory);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * Reads a snapshot into a filter on the Java heap, checking every chunk of the payload against its CRC.
+     *
+     * @param path the snapshot file
+     * @return the filter
+     * @throws IOException if the file cannot be read, is not a snapshot or is corrupt
+     */
+    static MembershipFilter read(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            Header header = readHeader(channel, path);
+            ChunkReader payload = new ChunkReader(channel, header, readTrailer(channel, header, path));
+            MembershipFilter filter;
+            if (header.filterType == FilterType.BLOCKED_BLOOM) {
+                LongStorage words = LongStorage.onHeap((int) (header.payloadLength / Long.BYTES));
+                for (int index = 0; index < words.length(); ) {
+                    index += words.setLongs(index, payload.nextChunk());
+                }
+                filter = BlockedBloomFilter.of(words, header.numHashFunctions, header.hashStrategy);
+            } else {
+                filter = header.filterType.readFrom(payload);
+                if (filter.hashStrategy() != header.hashStrategy) {
+                    throw new IOException("Snapshot " + path + " has hash strategy " + header.hashStrategy
+                            + " in its header but " + filter.hashStrategy() + " in its payload");
+                }
+            }
+            if (payload.chunk != payload.crcs.length || payload.buffer.hasRemaining()) {
+                throw new IOException("Snapshot " + path + " has trailing payload bytes");
+            }
+            return filter;
+        }
+    }
+
+    /**
+     * Maps the payload of a snapshot of a {@link BlockedBloomFilter} as the bits of the filter. Only the header is
+     * checked, checking the CRCs would read the whole file; {@link #read(Path)} checks them. The mapping stays valid
+     * after the file is closed or replaced.
+     *
+     * @param path the snapshot file
+     * @param writable false to map the file read-only, puts then throw {@link java.nio.ReadOnlyBufferException};
+     *        true to map it read-write, puts then change the file and {@link #force} updates its CRCs
+     * @return the filter
+     * @throws IOException if the file cannot be mapped or is not a snapshot of a blocked Bloom filter
+     */
+    static BlockedBloomFilter map(Path path, boolean writable) throws IOException {
+        try (FileChannel channel = writable
+                ? FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)
+                : FileChannel.open(path, StandardOpenOption.READ)) {
+            Header header = readHeader(channel, path);
+            if (header.filterType != FilterType.BLOCKED_BLOOM) {
+                throw new IOException("Snapshot " + path + " of a " + header.filterType + " filter cannot be mapped");
+            }
+            LongStorage words = LongStorage.map(channel, HEADER_BYTES, (int) (header.payloadLength / Long.BYTES),
+                    writable);
+            return BlockedBloomFilter.of(words, header.numHashFunctions, header.hashStrategy);
+        }
+    }
+
+    /**
+     * Writes the changes of a filter mapped writable by {@link #map(Path, boolean)} to the file, and updates the
+     * header and the CRCs to them. Puts while this runs may leave the CRCs stale until it runs again.
+     *
+     * @param filter the mapped filter
+     * @param path the snapshot file it was mapped from
+     * @throws IOException if the file cannot be written
+     */
+    static void force(BlockedBloomFilter filter, Path path) throws IOException {
+        filter.force();
+        LongStorage words = filter.storage();
+        long payloadLength = (long) words.length() * Long.BYTES;
+        int[] crcs = new int[chunkCount(payloadLength)];
+        ByteBuffer chunk = ByteBuffer.allocateDirect(CHUNK_BYTES);
+        CRC32C crc = new CRC32C();
+        for (int index = 0, i = 0; index < words.length(); i++) {
+            chunk.clear();
+            index += words.getLongs(index, chunk);
+            chunk.flip();
+            crc.reset();
+            crc.update(chunk);
+            crcs[i] = (int) crc.getValue();
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            writeHeader(channel, FilterType.BLOCKED_BLOOM, filter, payloadLength, 0);
+            writeTrailer(channel, payloadLength, crcs);
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Returns the position of the {@link SuspectDeviceLog} recorded in a snapshot, 0 if it was written without a log.
+     *
+     * @throws IOException if the file cannot be read or is not a snapshot
+     */
+    static long logPosition(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return readHeader(channel, path).logPosition;
+        }
+    }
+
+    /**
+     * Writes the entries of a directory to disk, so that a file created in it or moved over one of its files is still
+     * there after a crash. Windows cannot open a directory, and writes its entries with the file.
+     */
+    static void forceDirectory(Path directory) throws IOException {
+        if (WINDOWS) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        }
+    }
+
+    private static void writeHeader(FileChannel channel, FilterType filterType, MembershipFilter filter,
+                                    long payloadLength, long logPosition) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC)
+                .putInt(VERSION)
+                .putInt(filterType.snapshotId())
+                .putInt(filter.hashStrategy().snapshotId())
+                .putInt(FUNNEL_UTF_8)
+                .putInt(CHUNK_BYTES)
+                .putLong(payloadLength)
+                .putLong(filter.bitSize())
+                .putDouble(filter.expectedFpp());
+        if (filter instanceof BlockedBloomFilter) {
+            header.putInt(((BlockedBloomFilter) filter).numHashFunctions())
+                    .putInt(((BlockedBloomFilter) filter).numBlocks());
+        }
+        header.putLong(LOG_POSITION_OFFSET, logPosition);
+        header.putInt(HEADER_CRC_OFFSET, headerCrc(header.array(), VERSION));
+        header.clear();
+        writeFully(channel, header, 0);
+    }
+
+    private static Header readHeader(FileChannel channel, Path path) throws IOException {
+        ByteBuffer bytes = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(channel, bytes, 0, path);
+        if (bytes.getInt(0) != MAGIC) {
+            throw new IOException("Not a suspect device snapshot: " + path);
+        }
+        int version = bytes.getInt(4);
+        if (version != VERSION && version != VERSION_WITHOUT_LOG_POSITION) {
+            throw new IOException("Snapshot " + path + " has unsupported format version " + version);
+        }
+        if (bytes.getInt(HEADER_CRC_OFFSET) != headerCrc(bytes.array(), version)) {
+            throw new IOException("Snapshot " + path + " has a corrupt header");
+        }
+        Header header = new Header();
+        header.filterType = FilterType.forSnapshotId(bytes.getInt(8));
+        header.hashStrategy = DeviceHashStrategy.forSnapshotId(bytes.getInt(12));
+        int funnel = bytes.getInt(16);
+        header.chunkBytes = bytes.getInt(20);
+        header.payloadLength = bytes.getLong(24);
+        header.numHashFunctions = bytes.getInt(48);
+        header.logPosition = version == VERSION_WITHOUT_LOG_POSITION ? 0 : bytes.getLong(LOG_POSITION_OFFSET);
+        if (header.filterType == null || header.hashStrategy == null || funnel != FUNNEL_UTF_8) {
+            throw new IOException("Snapshot " + path + " uses filter type " + bytes.getInt(8) + ", hash strategy "
+                    + bytes.getInt(12) + " and funnel " + funnel + ", which are not supported");
+        }
+        if (header.chunkBytes < Long.BYTES || header.chunkBytes % Long.BYTES != 0 || header.payloadLength < 0
+                || header.logPosition < 0
+                || HEADER_BYTES + header.payloadLength + 4L * chunkCount(header) != channel.size()
+                || (header.filterType == FilterType.BLOCKED_BLOOM
+                        && (header.payloadLength != (long) bytes.getInt(52) * 64
+                                || header.payloadLength / Long.BYTES > Integer.MAX_VALUE - 8))) {
+            throw new IOException("Snapshot " + path + " is truncated or has a corrupt header");
+        }
+        return header;
+    }
+
+    private static void writeTrailer(FileChannel channel, long payloadLength, int[] crcs) throws IOException {
+        ByteBuffer trailer = ByteBuffer.allocate(crcs.length * 4).order(ByteOrder.LITTLE_ENDIAN);
+        trailer.asIntBuffer().put(crcs);
+        writeFully(channel, trailer, HEADER_BYTES + payloadLength);
+        channel.truncate(HEADER_BYTES + payloadLength + trailer.capacity());
+    }
+
+    private static int[] readTrailer(FileChannel channel, Header header, Path path) throws IOException {
+        ByteBuffer trailer = ByteBuffer.allocate(4 * chunkCount(header)).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(channel, trailer, HEADER_BYTES + header.payloadLength, path);
+        int[] crcs = new int[trailer.capacity() / 4];
+        trailer.asIntBuffer().get(crcs);
+        return crcs;
+    }
+
+    private static int chunkCount(Header header) {
+        long chunks = (header.payloadLength + header.chunkBytes - 1) / header.chunkBytes;
+        return chunks > Integer.MAX_VALUE / 4 ? Integer.MAX_VALUE / 4 : (int) chunks;
+    }
+
+    private static int chunkCount(long payloadLength) {
+        return (int) ((payloadLength + CHUNK_BYTES - 1) / CHUNK_BYTES);
+    }
+
+    /** Returns the CRC of a header, version 2 headers do not cover the log position */
+    private static int headerCrc(byte[] header, int version) {
+        CRC32C crc = new CRC32C();
+        crc.update(header, 0, HEADER_CRC_OFFSET);
+        if (version != VERSION_WITHOUT_LOG_POSITION) {
+            crc.update(header, LOG_POSITION_OFFSET, Long.BYTES);
+        }
+        return (int) crc.getValue();
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position, Path path)
+            throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new IOException("Snapshot " + path + " is truncated");
+            }
+            position += read;
+        }
+        buffer.flip();
+    }
+
+    /** The fields of a header that loading needs */
+    private static final class Header {
+        FilterType filterType;
+        DeviceHashStrategy hashStrategy;
+        int chunkBytes;
+        long payloadLength;
+        int numHashFunctions;
+        long logPosition;
+    }
+
+    /** Writes the payload to the channel in chunks, recording the CRC of every chunk */
+    private static final class ChunkWriter extends OutputStream {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(CHUNK_BYTES);
+        private final CRC32C crc = new CRC32C();
+        private int[] crcs = new int[16];
+        private int chunks;
+        private long length;
+
+        ChunkWriter(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        /** Returns the buffer of the current chunk to put bytes into, with room for at least 8 bytes */
+        ByteBuffer chunk() throws IOException {
+            if (buffer.remaining() < Long.BYTES) {
+                flushChunk();
+            }
+            return buffer;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (!buffer.hasRemaining()) {
+                flushChunk();
+            }
+            buffer.put((byte) b);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            while (length > 0) {
+                if (!buffer.hasRemaining()) {
+                    flushChunk();
+                }
+                int count = Math.min(length, buffer.remaining());
+                buffer.put(bytes, offset, count);
+                offset += count;
+                length -= count;
+            }
+        }
+
+        void finish() throws IOException {
+            if (buffer.position() > 0) {
+                flushChunk();
+            }
+        }
+
+        private void flushChunk() throws IOException {
+            buffer.flip();
+            crc.reset();
+            crc.update(buffer);
+            buffer.rewind();
+            length += buffer.remaining();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+            if (chunks == crcs.length) {
+                crcs = Arrays.copyOf(crcs, chunks * 2);
+            }
+            crcs[chunks++] = (int) crc.getValue();
+        }
+    }
+
+    /** Reads the payload from the channel in chunks, checking every chunk against its CRC before returning it */
+    private static final class ChunkReader extends InputStream {
+        private final FileChannel channel;
+        private final long payloadLength;
+        private final int[] crcs;
+        private final ByteBuffer buffer;
+        private final CRC32C crc = new CRC32C();
+        private long position = HEADER_BYTES;
+        private int chunk;
+
+        ChunkReader(FileChannel channel, Header header, int[] crcs) {
+            this.channel = channel;
+            this.payloadLength = header.payloadLength;
+            this.crcs = crcs;
+            this.buffer = ByteBuffer.allocateDirect((int) Math.min(header.chunkBytes, Math.max(payloadLength, 1)));
+            this.buffer.limit(0);
+        }
+
+        /** Returns the next chunk, checked, with its bytes remaining */
+        ByteBuffer nextChunk() throws IOException {
+            if (chunk == crcs.length) {
+                throw new IOException("Snapshot payload ends after " + payloadLength + " bytes");
+            }
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), HEADER_BYTES + payloadLength - position));
+            while (buffer.hasRemaining()) {
+                int read = channel.read(buffer, position);
+                if (read < 0) {
+                    throw new IOException("Snapshot payload is truncated");
+                }
+                position += read;
+            }
+            buffer.flip();
+            crc.reset();
+            crc.update(buffer);
+            buffer.rewind();
+            if ((int) crc.getValue() != crcs[chunk]) {
+                throw new IOException("Snapshot chunk " + chunk + " is corrupt");
+            }
+            chunk++;
+            return buffer;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (!buffer.hasRemaining()) {
+                if (chunk == crcs.length) {
+                    return -1;
+                }
+                nextChunk();
+            }
+            return buffer.get() & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                if (chunk == crcs.length) {
+                    return -1;
+                }
+                nextChunk();
+            }
+            int count = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, count);
+            return count;
+        }
+    }
+}
@@ -0,0 +1,467 @@
+package com.poc.device.store;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32C;
+
+/**
+ * An append-only write-ahead log of the device ids added to a {@link SuspectDeviceStore}, so that a store can be
+ * recovered from its last snapshot and the tail of the log added since, see
+ * {@link SuspectDeviceStore#recover(Path, SuspectDeviceLog, SuspectDeviceStore.Builder)}.
+ *
+ * The file is a 20 byte header, the magic "SDSL", the format version, the position of the first record and a CRC32C
+ * of them, followed by one record per device id: its length, its kind, UTF-8 bytes or a numeric id, and a CRC32C. A
+ * position is the number of record bytes ever appended before a record, so positions stay valid when
+ * {@link #truncate(long)} drops the records a snapshot contains.
+ *
+ * Commits are grouped: records are appended to a buffer, and the thread that syncs writes and forces everything
+ * appended so far with a single fsync while others keep appending to a second buffer and wait for the next one. With
+ * a sync interval of 0 every put waits for the fsync of the group it is part of, otherwise puts return once appended
+ * and a background thread syncs at the interval, so a crash loses at most the puts of one interval.
+ *
+ * Opening a log drops a torn or corrupt record at its end, left by a crash during a write, and everything after it.
+ */
+public final class SuspectDeviceLog implements Closeable {
+    static final int MAGIC = 0x4C534453;
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 20;
+
+    private static final byte KIND_UTF_8 = 1;
+    private static final byte KIND_NUMERIC = 2;
+    /** The bytes of a record besides the device id: the length, the kind and the CRC */
+    private static final int RECORD_OVERHEAD = Integer.BYTES + 1 + Integer.BYTES;
+    private static final int MAX_DEVICE_ID_BYTES = 1 << 16;
+    /** The appended bytes after which a put syncs itself rather than waiting for the interval */
+    private static final int MAX_PENDING_BYTES = 1 << 20;
+
+    private final Path path;
+    private final ScheduledExecutorService syncer;
+    /** Held by a truncate for the whole copy, the log itself only while the file is replaced */
+    private final Object truncateLock = new Object();
+    private FileChannel channel;
+    /** The position of the first record of the file */
+    private long base;
+    private long appended;
+    private long synced;
+    private ByteBuffer pending = ByteBuffer.allocate(64 * 1024);
+    private ByteBuffer writing = ByteBuffer.allocate(64 * 1024);
+    private boolean syncing;
+    private IOException failure;
+    private boolean closed;
+
+    private SuspectDeviceLog(Path path, FileChannel channel, long base, long end, long syncIntervalMillis) {
+        this.path = path;
+        this.channel = channel;
+        this.base = base;
+        this.appended = end;
+        this.synced = end;
+        if (syncIntervalMillis == 0) {
+            this.syncer = null;
+        } else {
+            this.syncer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "suspect-device-log-sync");
+                thread.setDaemon(true);
+                return thread;
+            });
+            syncer.scheduleWithFixedDelay(this::syncQuietly, syncIntervalMillis, syncIntervalMillis,
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Opens a log for appending, creating it if it does not exist.
+     *
+     * @param path the log file
+     * @param syncIntervalMillis 0 for puts to return only once their device id is on disk, otherwise the interval at
+     *                           which a background thread writes the appended device ids to disk
+     * @return the log
+     * @throws IOException if the file cannot be opened or is not a log
+     */
+    public static SuspectDeviceLog open(Path path, long syncIntervalMillis) throws IOException {
+        if (syncIntervalMillis < 0) {
+            throw new IllegalArgumentException("Sync interval cannot be negative: " + syncIntervalMillis);
+        }
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            long base;
+            if (channel.size() == 0) {
+                base = 0;
+                writeHeader(channel, base);
+                channel.force(true);
+                SnapshotFile.forceDirectory(path.toAbsolutePath().getParent());
+            } else {
+                base = readHeader(channel, path);
+            }
+            long end = scan(channel, HEADER_BYTES, channel.size(), null).end;
+            channel.truncate(end);
+            channel.position(end);
+            return new SuspectDeviceLog(path, channel, base, base + end - HEADER_BYTES, syncIntervalMillis);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /** Appends a device id given as its UTF-8 bytes, returns the position after its record */
+    long append(byte[] deviceUid, int offset, int length) {
+        return append(record(KIND_UTF_8, deviceUid, offset, length));
+    }
+
+    /** Appends a numeric device id, returns the position after its record */
+    long append(long deviceId) {
+        return append(record(KIND_NUMERIC, ByteBuffer.allocate(Long.BYTES).putLong(deviceId).array(), 0,
+                Long.BYTES));
+    }
+
+    private synchronized long append(byte[] record) {
+        checkOpen();
+        if (pending.remaining() < record.length) {
+            ByteBuffer larger = ByteBuffer.allocate(
+                    Math.max(2 * pending.capacity(), pending.position() + record.length));
+            pending.flip();
+            pending = larger.put(pending);
+        }
+        pending.put(record);
+        appended += record.length;
+        return appended;
+    }
+
+    /**
+     * Makes a put durable according to the sync interval: waits for the device ids up to the position to be on disk
+     * with an interval of 0, otherwise only once too many device ids wait for the interval.
+     */
+    void commit(long position) {
+        boolean full;
+        synchronized (this) {
+            full = pending.position() > MAX_PENDING_BYTES;
+        }
+        if (syncer == null || full) {
+            try {
+                sync(position);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * Writes every device id appended so far to disk.
+     *
+     * @return the position up to which the log is on disk
+     * @throws IOException if writing fails, the log then refuses further puts
+     */
+    public long sync() throws IOException {
+        long position;
+        synchronized (this) {
+            position = appended;
+        }
+        return sync(position);
+    }
+
+    /** Returns once the device ids up to the position are on disk, syncing them with the others appended by then */
+    private long sync(long position) throws IOException {
+        ByteBuffer batch;
+        long end;
+        synchronized (this) {
+            while (true) {
+                checkOpen();
+                if (synced >= position) {
+                    return synced;
+                }
+                if (!syncing) {
+                    break;
+                }
+                awaitSync();
+            }
+            syncing = true;
+            batch = pending;
+            pending = writing;
+            writing = batch;
+            end = appended;
+        }
+        IOException error = null;
+        try {
+            batch.flip();
+            while (batch.hasRemaining()) {
+                channel.write(batch);
+            }
+            channel.force(false);
+        } catch (IOException e) {
+            error = e;
+        } finally {
+            batch.clear();
+            synchronized (this) {
+                syncing = false;
+                if (error == null) {
+                    synced = end;
+                } else {
+                    failure = error;
+                }
+                notifyAll();
+            }
+        }
+        if (error != null) {
+            throw error;
+        }
+        return end;
+    }
+
+    private void syncQuietly() {
+        try {
+            sync();
+        } catch (IOException | RuntimeException e) {
+            // Recorded as the failure of the log, the next put throws it
+        }
+    }
+
+    private void awaitSync() throws InterruptedIOException {
+        try {
+            wait();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the suspect device log to sync");
+        }
+    }
+
+    private void checkOpen() {
+        if (failure != null) {
+            throw new UncheckedIOException("Suspect device log " + path + " failed to sync", failure);
+        }
+        if (closed) {
+            throw new IllegalStateException("Suspect device log " + path + " is closed");
+        }
+    }
+
+    /**
+     * Puts the device ids of the log from a position on into a filter.
+     *
+     * @param position the position to start from, e.g. the one a snapshot recorded
+     * @param filter the filter to put them into
+     * @return the number of device ids put
+     * @throws IOException if the log cannot be read, or the position is before the first record of the log
+     */
+    public long replay(long position, MembershipFilter filter) throws IOException {
+        long from;
+        long to;
+        synchronized (this) {
+            checkOpen();
+            if (position < base || position > synced) {
+                throw new IOException("Suspect device log " + path + " holds positions " + base + " to " + synced
+                        + ", not " + position);
+            }
+            from = HEADER_BYTES + position - base;
+            to = HEADER_BYTES + synced - base;
+        }
+        try (FileChannel reader = FileChannel.open(path, StandardOpenOption.READ)) {
+            return scan(reader, from, to, filter).records;
+        }
+    }
+
+    /**
+     * Drops the records before a position, once a snapshot contains their device ids. The records after it are
+     * copied to a new file that then replaces the log. Puts and syncs go on while the records on disk are copied; only
+     * the records synced meanwhile are copied with the log locked.
+     *
+     * @param position a position returned by {@link #sync()}
+     * @throws IOException if the log cannot be rewritten
+     */
+    public void truncate(long position) throws IOException {
+        synchronized (truncateLock) {
+            FileChannel source;
+            long from;
+            long copied;
+            synchronized (this) {
+                checkOpen();
+                if (position < base || position > synced) {
+                    throw new IllegalArgumentException("Suspect device log " + path + " holds positions " + base
+                            + " to " + synced + " on disk, not " + position);
+                }
+                source = channel;
+                from = HEADER_BYTES + position - base;
+                copied = HEADER_BYTES + synced - base;
+            }
+            Path directory = path.toAbsolutePath().getParent();
+            Path temporary = Files.createTempFile(directory, path.getFileName().toString(), ".tmp");
+            try {
+                try (FileChannel target = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+                    writeHeader(target, position);
+                    target.position(HEADER_BYTES);
+                    transfer(source, from, copied, target);
+                    synchronized (this) {
+                        while (syncing) {
+                            awaitSync();
+                        }
+                        checkOpen();
+                        transfer(source, copied, HEADER_BYTES + synced - base, target);
+                        target.force(true);
+                        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING,
+                                StandardCopyOption.ATOMIC_MOVE);
+                        SnapshotFile.forceDirectory(directory);
+                        // The device ids appended but not synced yet stay in the buffer, for the new file
+                        channel.close();
+                        channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                        channel.position(channel.size());
+                        base = position;
+                    }
+                }
+            } finally {
+                Files.deleteIfExists(temporary);
+            }
+        }
+    }
+
+    /** Copies a range of the old file to the position of the new one */
+    private void transfer(FileChannel source, long from, long to, FileChannel target) throws IOException {
+        for (long position = from; position < to; ) {
+            long transferred = source.transferTo(position, to - position, target);
+            if (transferred == 0) {
+                throw new IOException("Suspect device log " + path + " is shorter than its synced records");
+            }
+            position += transferred;
+        }
+    }
+
+    /** Returns the position of the first record of the log */
+    public synchronized long startPosition() {
+        return base;
+    }
+
+    /** Returns the position after the last record appended to the log, on disk or not yet */
+    public synchronized long endPosition() {
+        return appended;
+    }
+
+    /** Writes the appended device ids to disk and closes the log */
+    @Override
+    public void close() throws IOException {
+        if (syncer != null) {
+            syncer.shutdown();
+        }
+        boolean failed;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            failed = failure != null;
+        }
+        try {
+            if (!failed) {
+                sync();
+            }
+        } finally {
+            synchronized (this) {
+                // A sync of the background thread may still be writing
+                while (syncing) {
+                    awaitSync();
+                }
+                closed = true;
+                channel.close();
+            }
+        }
+    }
+
+    private static byte[] record(byte kind, byte[] deviceUid, int offset, int length) {
+        if (length > MAX_DEVICE_ID_BYTES) {
+            throw new IllegalArgumentException("Device Id of " + length + " bytes is too long to log");
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(kind);
+        crc.update(deviceUid, offset, length);
+        return ByteBuffer.allocate(RECORD_OVERHEAD + length)
+                .putInt(length)
+                .put(kind)
+                .put(deviceUid, offset, length)
+                .putInt((int) crc.getValue())
+                .array();
+    }
+
+    /**
+     * Reads the records from an offset of the file to a limit, putting their device ids into the filter if there is
+     * one, and stops at the first record that is torn or corrupt.
+     */
+    private static Scan scan(FileChannel channel, long from, long limit, MembershipFilter filter) throws IOException {
+        channel.position(from);
+        DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel), 1 << 16));
+        Scan scan = new Scan();
+        scan.end = from;
+        byte[] deviceUid = new byte[256];
+        CRC32C crc = new CRC32C();
+        while (scan.end + RECORD_OVERHEAD <= limit) {
+            int length = in.readInt();
+            byte kind = in.readByte();
+            if (length < 0 || length > MAX_DEVICE_ID_BYTES || scan.end + RECORD_OVERHEAD + length > limit
+                    || !(kind == KIND_UTF_8 || (kind == KIND_NUMERIC && length == Long.BYTES))) {
+                break;
+            }
+            if (deviceUid.length < length) {
+                deviceUid = new byte[length];
+            }
+            in.readFully(deviceUid, 0, length);
+            crc.reset();
+            crc.update(kind);
+            crc.update(deviceUid, 0, length);
+            if (in.readInt() != (int) crc.getValue()) {
+                break;
+            }
+            if (filter != null) {
+                if (kind == KIND_UTF_8) {
+                    filter.put(deviceUid, 0, length);
+                } else {
+                    filter.put(ByteBuffer.wrap(deviceUid).getLong());
+                }
+            }
+            scan.end += RECORD_OVERHEAD + length;
+            scan.records++;
+        }
+        return scan;
+    }
+
+    private static void writeHeader(FileChannel channel, long base) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).putInt(MAGIC).putInt(VERSION).putLong(base);
+        CRC32C crc = new CRC32C();
+        crc.update(header.array(), 0, HEADER_BYTES - Integer.BYTES);
+        header.putInt((int) crc.getValue()).flip();
+        for (long position = 0; header.hasRemaining(); ) {
+            position += channel.write(header, position);
+        }
+    }
+
+    private static long readHeader(FileChannel channel, Path path) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        for (long position = 0; header.hasRemaining(); ) {
+            int read = channel.read(header, position);
+            if (read < 0) {
+                throw new IOException("Suspect device log " + path + " is truncated");
+            }
+            position += read;
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(header.array(), 0, HEADER_BYTES - Integer.BYTES);
+        if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION
+                || header.getInt(HEADER_BYTES - Integer.BYTES) != (int) crc.getValue() || header.getLong(8) < 0) {
+            throw new IOException("Not a suspect device log, or a corrupt one: " + path);
+        }
+        return header.getLong(8);
+    }
+
+    /** The end of the valid records a scan read and their number */
+    private static final class Scan {
+        long end;
+        long records;
+    }
+}
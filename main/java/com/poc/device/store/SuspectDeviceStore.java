@@ -1,12 +1,25 @@
 package com.poc.device.store;
 
 import com.google.common.annotations.VisibleForTesting;
-import com.google.common.hash.BloomFilter;
 
 import java.io.IOException;
 import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Optional;
+import java.util.RandomAccess;
+import java.util.Spliterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+import java.util.stream.Stream;
 
 /**
  * A suspect device store.
@@ -15,6 +28,7 @@ import java.util.List;
  *
  * add a suspect device to the store
  * add a list of suspect devices to the store
+ * remove a device from the store, if its filter supports removal
  * check if a device might be a malicious device
  *
  * Example usage:
@@ -25,37 +39,203 @@ import java.util.List;
  * // To add a device to suspect list
  * suspectStore.addSuspectDevice("DEVICE_101");
  *
+ * // Device ids already in a network buffer are checked as their UTF-8 bytes, without creating a String
+ * boolean isBufferedSuspect = suspectStore.isSuspectDevice(requestBuffer.slice().limit(deviceUidLength));
+ *
+ * // Numeric device ids are hashed as they are, without a string; 123L and "123" are different devices
+ * suspectStore.addSuspectDevice(356938035643809L);
+ * boolean isNumericSuspect = suspectStore.isSuspectDevice(356938035643809L);
+ *
+ * // To remove a cleared device, on a store backed by FilterType.CUCKOO or FilterType.COUNTING_BLOOM
+ * suspectStore.removeSuspectDevice("DEVICE_101");
+ *
+ * // To build the store on a cache-line blocked Bloom filter
+ * suspectStore = com.poc.device.store.SuspectDeviceStore.getSuspectDeviceStore(100_000_000, FilterType.BLOCKED_BLOOM);
+ *
+ * // To build an immutable store from the nightly export of suspect devices
+ * suspectStore = com.poc.device.store.SuspectDeviceStore.getSuspectDeviceStore(deviceUidList, FilterType.BINARY_FUSE);
+ *
+ * // To allocate the store in the background at service startup instead of on the first request
+ * com.poc.device.store.SuspectDeviceStore.initialize(com.poc.device.store.SuspectDeviceStore.builder()
+ *         .expectedInsertions(100_000_000)
+ *         .filterFactory(FilterType.BLOCKED_BLOOM)
+ *         .offHeap(true)
+ *         .preTouch(true));
+ * if (com.poc.device.store.SuspectDeviceStore.isReady()) { ... }
+ *
+ * // To hash device ids with wyhash instead of Murmur3_128, on any filter type but FilterType.GUAVA_BLOOM
+ * suspectStore = com.poc.device.store.SuspectDeviceStore.builder()
+ *         .filterFactory(FilterType.BLOCKED_BLOOM)
+ *         .hashStrategy(DeviceHashStrategy.WYHASH)
+ *         .build();
+ *
+ * // To reload all suspect devices at startup on every core, for filters that support concurrent puts
+ * BulkLoadStats stats = suspectStore.addAllSuspectDevices(deviceUidList, ForkJoinPool.commonPool());
+ *
+ * // To load the nightly export without holding it in memory, newline-delimited and optionally gzipped
+ * suspectStore.addAllSuspectDevices(Paths.get("/var/lib/device-service/suspect-devices.txt.gz"));
+ * // or, for a plain text feed, map it and hash the device ids on every core straight from the page cache
+ * suspectStore.addAllSuspectDevices(Paths.get("/var/lib/device-service/suspect-devices.txt"), ForkJoinPool.commonPool());
+ *
+ * // To rebuild the store nightly while requests keep checking the current one, then swap it in atomically
+ * ManagedSuspectDeviceStore managedStore = ManagedSuspectDeviceStore.of(suspectStore);
+ * managedStore.rebuild(com.poc.device.store.SuspectDeviceStore.builder()
+ *         .expectedInsertions(100_000_000)
+ *         .filterFactory(FilterType.BLOCKED_BLOOM),
+ *         store -> store.addAllSuspectDevices(feed, ForkJoinPool.commonPool()));
+ * boolean isManagedSuspect = managedStore.isSuspectDevice("DEVICE_101");
+ *
+ * // To keep a list per fraud category and check a device against several of them with one hash
+ * SuspectDeviceStoreRegistry registry = new SuspectDeviceStoreRegistry();
+ * registry.register("emulators", com.poc.device.store.SuspectDeviceStore.builder().expectedInsertions(1_000_000));
+ * registry.register("rooted", com.poc.device.store.SuspectDeviceStore.builder().expectedInsertions(20_000_000));
+ * SuspectDeviceStoreRegistry.Lookup lookup = registry.lookup("emulators", "rooted");
+ * long matches = lookup.matches("DEVICE_101"); // bit 0 for emulators, bit 1 for rooted
+ *
+ * // To make positive answers definitive, confirming them with the 64 bit hashes of the suspect devices
+ * suspectStore = com.poc.device.store.SuspectDeviceStore.builder()
+ *         .expectedInsertions(100_000_000)
+ *         .filterFactory(FilterType.BLOCKED_BLOOM)
+ *         .exactConfirmation(true)
+ *         .build();
+ *
+ * // To tell how many times a device was reported, besides whether it is suspect
+ * suspectStore = com.poc.device.store.SuspectDeviceStore.builder()
+ *         .filterFactory(FilterType.BLOCKED_BLOOM)
+ *         .countReports(1e-5, 0.01)
+ *         .build();
+ * int reports = suspectStore.reportSuspectDevice("DEVICE_101");
+ * int reportsSoFar = suspectStore.estimatedReportCount("DEVICE_101");
+ *
+ * // To block devices for 90 days after they were last reported, in daily generations expired by a scheduler
+ * suspectStore = com.poc.device.store.SuspectDeviceStore.builder()
+ *         .expectedInsertions(1_000_000) // suspect devices reported per day
+ *         .filterFactory(AgingMembershipFilter.factory(FilterType.BLOCKED_BLOOM, 90))
+ *         .build();
+ * scheduler.scheduleAtFixedRate(suspectStore::expireOldestSuspectDevices, 1, 1, TimeUnit.DAYS);
+ *
+ * // To restart a store built by a FilterType from a snapshot without re-adding every suspect device
+ * suspectStore.writeSnapshot(Paths.get("/var/lib/device-service/suspect-devices.snapshot"));
+ * suspectStore = com.poc.device.store.SuspectDeviceStore.readSnapshot(
+ *         Paths.get("/var/lib/device-service/suspect-devices.snapshot"));
+ * // or, for a FilterType.BLOCKED_BLOOM store, map it to serve lookups right away
+ * suspectStore = com.poc.device.store.SuspectDeviceStore.mapSnapshot(
+ *         Paths.get("/var/lib/device-service/suspect-devices.snapshot"), false);
+ *
+ * // To also keep the devices added since the last snapshot across a crash, log them and replay the log at startup
+ * SuspectDeviceLog log = SuspectDeviceLog.open(Paths.get("/var/lib/device-service/suspect-devices.log"), 0);
+ * suspectStore = com.poc.device.store.SuspectDeviceStore.recover(
+ *         Paths.get("/var/lib/device-service/suspect-devices.snapshot"), log,
+ *         com.poc.device.store.SuspectDeviceStore.builder().filterFactory(FilterType.BLOCKED_BLOOM));
+ * suspectStore.addSuspectDevice("DEVICE_101"); // returns once the device is in the log on disk
+ * suspectStore.writeSnapshot(Paths.get("/var/lib/device-service/suspect-devices.snapshot")); // truncates the log
  *
  */
 public final class SuspectDeviceStore implements Serializable {
     /** These could be externalized via some flag to configure the store */
     private static final int DEFAULT_SUSPECT_DEVICE_SIZE = 10_00_0000;
     private static final double DEFAULT_MAX_ERROR_PERCENTAGE = 0.01;
+    /** The smallest range of devices a parallel bulk load hands to one task */
+    private static final int MIN_BULK_LOAD_CHUNK = 4096;
 
-    private static SuspectDeviceStore suspectDeviceStore;
-    private final BloomFilter<String> suspectDeviceBloomFilter;
+    private final MembershipFilter suspectDeviceFilter;
+    /** The snapshot file the filter is mapped writable from, or null */
+    private final transient Path mappedSnapshot;
+    /** The number of reports per device, or null if the store does not count them */
+    private final CountMinSketch reportCounts;
 
     /** Private constructor to create the store instance */
-    private SuspectDeviceStore(BloomFilter<String> suspectDeviceBloomFilter) {
-        this.suspectDeviceBloomFilter = suspectDeviceBloomFilter;
+    private SuspectDeviceStore(MembershipFilter suspectDeviceFilter) {
+        this(suspectDeviceFilter, null, null);
+    }
+
+    private SuspectDeviceStore(MembershipFilter suspectDeviceFilter, Path mappedSnapshot,
+                               CountMinSketch reportCounts) {
+        this.suspectDeviceFilter = suspectDeviceFilter;
+        this.mappedSnapshot = mappedSnapshot;
+        this.reportCounts = reportCounts;
     }
 
-    /** A holder for the singleton com.poc.device.store.SuspectDeviceStore instance */
+    /**
+     * A holder for the singleton com.poc.device.store.SuspectDeviceStore instance. It is either being built in the
+     * background by {@link #initialize(Builder)}, or built with the defaults on the first call to
+     * {@link #getSuspectDeviceStore()}.
+     */
     private static class DeviceStoreHolder {
-        private static SuspectDeviceStore INSTANCE
-                = initSuspectDeviceStore(DEFAULT_SUSPECT_DEVICE_SIZE, DEFAULT_MAX_ERROR_PERCENTAGE);
+        private static volatile CompletableFuture<SuspectDeviceStore> INSTANCE;
+
+        private static synchronized CompletableFuture<SuspectDeviceStore> get() {
+            if (INSTANCE == null) {
+                INSTANCE = CompletableFuture.completedFuture(
+                        initSuspectDeviceStore(DEFAULT_SUSPECT_DEVICE_SIZE, DEFAULT_MAX_ERROR_PERCENTAGE));
+            }
+            return INSTANCE;
+        }
+
+        private static synchronized SuspectDeviceStore set(SuspectDeviceStore store) {
+            INSTANCE = CompletableFuture.completedFuture(store);
+            return store;
+        }
     }
 
     /** Initializes the com.poc.device.store.SuspectDeviceStore with the size and error percentage */
     private static final SuspectDeviceStore initSuspectDeviceStore(int size, double maximumErrorPercentage) {
-        BloomFilter<String> bloomFilter = BloomFilter.create(DeviceFunnel.INSTANCE, size, maximumErrorPercentage);
-        suspectDeviceStore = new SuspectDeviceStore(bloomFilter);
-        return suspectDeviceStore;
+        return initSuspectDeviceStore(size, maximumErrorPercentage, FilterType.GUAVA_BLOOM);
     }
 
-    /** Returns the instance of the com.poc.device.store.SuspectDeviceStore */
+    /** Initializes the com.poc.device.store.SuspectDeviceStore with the size, error percentage and filter factory */
+    private static final SuspectDeviceStore initSuspectDeviceStore(int size, double maximumErrorPercentage,
+                                                                   MembershipFilterFactory filterFactory) {
+        return new SuspectDeviceStore(filterFactory.create(size, maximumErrorPercentage));
+    }
+
+    /**
+     * Returns the instance of the com.poc.device.store.SuspectDeviceStore. If {@link #initialize(Builder)} is still
+     * building it, this waits for it; if it was never initialized, the store is built here with the defaults.
+     */
     public static SuspectDeviceStore getSuspectDeviceStore() {
-        return DeviceStoreHolder.INSTANCE;
+        CompletableFuture<SuspectDeviceStore> instance = DeviceStoreHolder.INSTANCE;
+        return (instance != null ? instance : DeviceStoreHolder.get()).join();
+    }
+
+    /**
+     * Returns the instance of the com.poc.device.store.SuspectDeviceStore if it is built, never waits for it or
+     * builds it.
+     */
+    public static Optional<SuspectDeviceStore> getSuspectDeviceStoreIfReady() {
+        // A single read, so that an initialize() in between cannot swap in a future that is not done yet
+        CompletableFuture<SuspectDeviceStore> instance = DeviceStoreHolder.INSTANCE;
+        return isReady(instance) ? Optional.of(instance.join()) : Optional.empty();
+    }
+
+    /** Returns true once the instance of the com.poc.device.store.SuspectDeviceStore is built and can be used */
+    public static boolean isReady() {
+        return isReady(DeviceStoreHolder.INSTANCE);
+    }
+
+    private static boolean isReady(CompletableFuture<SuspectDeviceStore> instance) {
+        return instance != null && instance.isDone() && !instance.isCompletedExceptionally();
+    }
+
+    /**
+     * Starts building the instance of the com.poc.device.store.SuspectDeviceStore in the background, so that neither
+     * class loading nor the first request pays for allocating the filter. Requests that need the store before it is
+     * ready either wait in {@link #getSuspectDeviceStore()} or check {@link #getSuspectDeviceStoreIfReady()}.
+     *
+     * @param builder the configuration of the store
+     * @return a future completed with the store once it is ready, the readiness signal for health checks
+     */
+    public static CompletableFuture<SuspectDeviceStore> initialize(Builder builder) {
+        CompletableFuture<SuspectDeviceStore> instance = builder.buildAsync();
+        synchronized (DeviceStoreHolder.class) {
+            DeviceStoreHolder.INSTANCE = instance;
+        }
+        return instance;
+    }
+
+    /** Returns a builder to configure a com.poc.device.store.SuspectDeviceStore */
+    public static Builder builder() {
+        return new Builder();
     }
 
     /** Adds a suspect device to the store */
@@ -63,7 +243,7 @@ public final class SuspectDeviceStore implements Serializable {
         if(deviceUid == null || deviceUid.isEmpty()) {
             throw new IllegalArgumentException("Device Id cannot be null");
         }
-        suspectDeviceBloomFilter.put(deviceUid);
+        suspectDeviceFilter.put(deviceUid);
     }
 
     /** Adds a list of suspect devices the store */
@@ -73,17 +253,403 @@ public final class SuspectDeviceStore implements Serializable {
         }
     }
 
+    /** Adds the suspect devices of an iterator, consuming it one device at a time */
+    public void addAllSuspectDevices(Iterator<String> deviceUids) {
+        while (deviceUids.hasNext()) {
+            addSuspectDevice(deviceUids.next());
+        }
+    }
+
+    /** Adds the suspect devices of a spliterator, consuming it one device at a time */
+    public void addAllSuspectDevices(Spliterator<String> deviceUids) {
+        deviceUids.forEachRemaining(this::addSuspectDevice);
+    }
+
+    /**
+     * Adds the suspect devices of a stream, e.g. the lines of a file or the rows of a query, without collecting
+     * them. A parallel stream adds devices concurrently if the filter
+     * {@link MembershipFilter#supportsConcurrentPuts() supports concurrent puts}, and one at a time otherwise.
+     */
+    public void addAllSuspectDevices(Stream<String> deviceUids) {
+        if (deviceUids.isParallel() && !suspectDeviceFilter.supportsConcurrentPuts()) {
+            deviceUids.forEachOrdered(this::addSuspectDevice);
+        } else {
+            deviceUids.forEach(this::addSuspectDevice);
+        }
+    }
+
+    /**
+     * Adds the suspect devices of a file with one UTF-8 device id per line, such as the nightly export. Files
+     * starting with the gzip magic bytes are decompressed whatever their name. The file is read through a 64 KB
+     * buffer and every line is hashed as its bytes, so memory use does not grow with the size of the file. Empty
+     * lines are skipped, a {@code \r} before a {@code \n} is not part of the device id.
+     *
+     * @param path the file of device ids
+     * @return the number of devices and the throughput of the load
+     * @throws IOException if the file cannot be read
+     */
+    public BulkLoadStats addAllSuspectDevices(Path path) throws IOException {
+        long start = System.nanoTime();
+        long devices = DeviceUidFile.putAll(path, suspectDeviceFilter);
+        return new BulkLoadStats(devices, 1, System.nanoTime() - start);
+    }
+
+    /**
+     * Adds the suspect devices of a file with one UTF-8 device id per line like {@link #addAllSuspectDevices(Path)},
+     * but maps the file instead of reading it and splits it into line-aligned chunks that the threads of a pool put
+     * concurrently. Device ids are hashed straight from the mapped pages and no byte is copied. Filter types that
+     * hash device ids themselves, all but {@link FilterType#GUAVA_BLOOM}, allocate nothing per device id, so
+     * reloading a multi-GB feed is bound by the disk, not by allocation; Guava's Bloom filter funnels the mapped bytes
+     * without creating a string either, but allocates a hasher per device id. Filters that do not
+     * {@link MembershipFilter#supportsConcurrentPuts() support concurrent puts} are loaded on the calling thread; a
+     * gzipped file cannot be mapped and is read like {@link #addAllSuspectDevices(Path)}.
+     *
+     * @param path the file of device ids
+     * @param pool the pool to load on, e.g. {@link ForkJoinPool#commonPool()}
+     * @return the number of devices and threads and the throughput of the load
+     * @throws IOException if the file cannot be mapped, or has a line longer than 1 GB
+     */
+    public BulkLoadStats addAllSuspectDevices(Path path, ForkJoinPool pool) throws IOException {
+        if (pool == null) {
+            throw new IllegalArgumentException("Pool cannot be null");
+        }
+        long start = System.nanoTime();
+        long devices = DeviceUidFile.putAllMapped(path, suspectDeviceFilter, pool);
+        int threads = suspectDeviceFilter.supportsConcurrentPuts() ? pool.getParallelism() : 1;
+        return new BulkLoadStats(devices, threads, System.nanoTime() - start);
+    }
+
+    /**
+     * Adds a suspect device given as a char sequence, e.g. a {@link StringBuilder} being reused, like
+     * {@link #addSuspectDevice(String)} of its string.
+     */
+    public void addSuspectDevice(CharSequence deviceUid) {
+        if(deviceUid == null || deviceUid.length() == 0) {
+            throw new IllegalArgumentException("Device Id cannot be null");
+        }
+        suspectDeviceFilter.put(deviceUid);
+    }
+
+    /**
+     * Adds a suspect device given as its UTF-8 bytes, like {@link #addSuspectDevice(String)} of the device id.
+     *
+     * @param deviceUid the array holding the UTF-8 bytes of the device id
+     * @param offset the index of the first byte of the device id
+     * @param length the number of bytes of the device id
+     */
+    public void addSuspectDevice(byte[] deviceUid, int offset, int length) {
+        if(deviceUid == null || length == 0) {
+            throw new IllegalArgumentException("Device Id cannot be null");
+        }
+        suspectDeviceFilter.put(deviceUid, offset, length);
+    }
+
+    /**
+     * Adds a suspect device given as its UTF-8 bytes, the remaining bytes of the buffer, like
+     * {@link #addSuspectDevice(String)} of the device id. The position of the buffer does not move.
+     */
+    public void addSuspectDevice(ByteBuffer deviceUid) {
+        if(deviceUid == null || !deviceUid.hasRemaining()) {
+            throw new IllegalArgumentException("Device Id cannot be null");
+        }
+        suspectDeviceFilter.put(deviceUid);
+    }
+
+    /**
+     * Adds a suspect device with a numeric id, e.g. an IMEI or a 64 bit hardware id, without converting it to a
+     * string. A numeric id is a device of its own: {@code addSuspectDevice(123L)} does not add {@code "123"}.
+     */
+    public void addSuspectDevice(long deviceId) {
+        suspectDeviceFilter.put(deviceId);
+    }
+
+    /** Adds suspect devices with numeric ids to the store */
+    public void addAllSuspectDevices(long[] deviceIds) {
+        for (long deviceId : deviceIds) {
+            suspectDeviceFilter.put(deviceId);
+        }
+    }
+
+    /**
+     * Adds a list of suspect devices on the threads of a pool, e.g. to reload every suspect device at startup. The
+     * list is split into ranges that the threads add concurrently, the filter sets its bits lock free. Filters that
+     * do not {@link MembershipFilter#supportsConcurrentPuts() support concurrent puts} are loaded on the calling
+     * thread instead.
+     *
+     * @param deviceUidList the suspect devices, a list without random access is copied first
+     * @param pool the pool to load on, e.g. {@link ForkJoinPool#commonPool()}
+     * @return the number of devices and threads and the throughput of the load
+     */
+    public BulkLoadStats addAllSuspectDevices(List<String> deviceUidList, ForkJoinPool pool) {
+        if (pool == null) {
+            throw new IllegalArgumentException("Pool cannot be null");
+        }
+        long start = System.nanoTime();
+        if (!suspectDeviceFilter.supportsConcurrentPuts() || pool.getParallelism() == 1) {
+            addAllSuspectDevices(deviceUidList);
+            return new BulkLoadStats(deviceUidList.size(), 1, System.nanoTime() - start);
+        }
+        List<String> devices = deviceUidList instanceof RandomAccess ? deviceUidList : new ArrayList<>(deviceUidList);
+        pool.invoke(new BulkLoad(0, devices.size(), bulkLoadChunk(devices.size(), pool),
+                i -> addSuspectDevice(devices.get(i))));
+        return new BulkLoadStats(devices.size(), pool.getParallelism(), System.nanoTime() - start);
+    }
+
+    /**
+     * Adds suspect devices with numeric ids on the threads of a pool, like
+     * {@link #addAllSuspectDevices(List, ForkJoinPool)}.
+     */
+    public BulkLoadStats addAllSuspectDevices(long[] deviceIds, ForkJoinPool pool) {
+        if (pool == null) {
+            throw new IllegalArgumentException("Pool cannot be null");
+        }
+        long start = System.nanoTime();
+        if (!suspectDeviceFilter.supportsConcurrentPuts() || pool.getParallelism() == 1) {
+            addAllSuspectDevices(deviceIds);
+            return new BulkLoadStats(deviceIds.length, 1, System.nanoTime() - start);
+        }
+        pool.invoke(new BulkLoad(0, deviceIds.length, bulkLoadChunk(deviceIds.length, pool),
+                i -> suspectDeviceFilter.put(deviceIds[i])));
+        return new BulkLoadStats(deviceIds.length, pool.getParallelism(), System.nanoTime() - start);
+    }
+
+    /** Splits a bulk load into ~8 ranges per thread, so that threads that finish early steal from the others */
+    private static int bulkLoadChunk(int devices, ForkJoinPool pool) {
+        return Math.max(MIN_BULK_LOAD_CHUNK, devices / (pool.getParallelism() * 8));
+    }
+
+    /** Adds the devices of a range of indexes, splitting the range in halves until it is at most one chunk */
+    private static final class BulkLoad extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+        private final int chunk;
+        private final transient IntConsumer put;
+
+        private BulkLoad(int from, int to, int chunk, IntConsumer put) {
+            this.from = from;
+            this.to = to;
+            this.chunk = chunk;
+            this.put = put;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= chunk) {
+                for (int i = from; i < to; i++) {
+                    put.accept(i);
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new BulkLoad(from, middle, chunk, put), new BulkLoad(middle, to, chunk, put));
+        }
+    }
+
+    /**
+     * Removes a device that was cleared from the store.
+     *
+     * @param deviceUid the id of a device that was added to the store
+     * @return true if the device was found and removed
+     * @throws UnsupportedOperationException if the filter of this store does not support removal
+     */
+    public boolean removeSuspectDevice(String deviceUid) {
+        if(deviceUid == null || deviceUid.isEmpty()) {
+            throw new IllegalArgumentException("Device Id cannot be null");
+        }
+        if (!(suspectDeviceFilter instanceof RemovableMembershipFilter)) {
+            throw new UnsupportedOperationException("Filter " + suspectDeviceFilter.getClass().getSimpleName()
+                    + " does not support removing devices");
+        }
+        return ((RemovableMembershipFilter) suspectDeviceFilter).remove(deviceUid);
+    }
+
+    /**
+     * Removes a device with a numeric id that was cleared from the store.
+     *
+     * @param deviceId the numeric id of a device that was added to the store
+     * @return true if the device was found and removed
+     * @throws UnsupportedOperationException if the filter of this store does not support removal
+     */
+    public boolean removeSuspectDevice(long deviceId) {
+        if (!(suspectDeviceFilter instanceof RemovableMembershipFilter)) {
+            throw new UnsupportedOperationException("Filter " + suspectDeviceFilter.getClass().getSimpleName()
+                    + " does not support removing devices");
+        }
+        return ((RemovableMembershipFilter) suspectDeviceFilter).remove(deviceId);
+    }
+
+    /**
+     * Forgets the devices last added in the oldest period of a store built on an {@link AgingMembershipFilter}, and
+     * starts a new period. Lookups are not blocked.
+     *
+     * @throws UnsupportedOperationException if the filter of this store does not age devices
+     */
+    public void expireOldestSuspectDevices() {
+        if (!(suspectDeviceFilter instanceof AgingMembershipFilter)) {
+            throw new UnsupportedOperationException("Filter " + suspectDeviceFilter.getClass().getSimpleName()
+                    + " does not support expiring devices");
+        }
+        ((AgingMembershipFilter) suspectDeviceFilter).advance();
+    }
+
+    /**
+     * Adds a suspect device like {@link #addSuspectDevice(String)} and counts the report, for stores built with
+     * {@link Builder#countReports(double, double)}. The device id is hashed once for both the filter and the count,
+     * unless the filter is a {@link FilterType#GUAVA_BLOOM}, wraps another one, or hashes with another strategy than
+     * the count.
+     *
+     * @return the estimated number of times the device was reported, including this one
+     * @throws UnsupportedOperationException if the store does not count reports
+     */
+    public int reportSuspectDevice(String deviceUid) {
+        if(deviceUid == null || deviceUid.isEmpty()) {
+            throw new IllegalArgumentException("Device Id cannot be null");
+        }
+        CountMinSketch sketch = reportCounts();
+        if (sharesHash(sketch)) {
+            long hash = suspectDeviceFilter.hashStrategy().hash64(deviceUid);
+            ((HashedMembershipFilter) suspectDeviceFilter).putHash(hash);
+            return sketch.addHash(hash);
+        }
+        suspectDeviceFilter.put(deviceUid);
+        return sketch.add(deviceUid);
+    }
+
+    /** Adds a suspect device with a numeric id and counts the report, see {@link #reportSuspectDevice(String)} */
+    public int reportSuspectDevice(long deviceId) {
+        CountMinSketch sketch = reportCounts();
+        if (sharesHash(sketch)) {
+            long hash = suspectDeviceFilter.hashStrategy().hash64(deviceId);
+            ((HashedMembershipFilter) suspectDeviceFilter).putHash(hash);
+            return sketch.addHash(hash);
+        }
+        suspectDeviceFilter.put(deviceId);
+        return sketch.add(deviceId);
+    }
+
+    /**
+     * Returns roughly how many times a device was reported with {@link #reportSuspectDevice(String)}, 0 if it is not
+     * a suspect device. The estimate is never below the true count. Counts are kept for the lifetime of the store,
+     * across {@link #expireOldestSuspectDevices()}, and are not part of its snapshots.
+     *
+     * @throws UnsupportedOperationException if the store does not count reports
+     */
+    public int estimatedReportCount(String deviceUid) {
+        if(deviceUid == null || deviceUid.isEmpty()) {
+            throw new IllegalArgumentException("Device Id cannot be null");
+        }
+        CountMinSketch sketch = reportCounts();
+        if (sharesHash(sketch)) {
+            long hash = suspectDeviceFilter.hashStrategy().hash64(deviceUid);
+            return ((HashedMembershipFilter) suspectDeviceFilter).mightContainHash(hash)
+                    ? sketch.estimateHash(hash) : 0;
+        }
+        return suspectDeviceFilter.mightContain(deviceUid) ? sketch.estimate(deviceUid) : 0;
+    }
+
+    /** Returns roughly how many times a device with a numeric id was reported, see {@link #estimatedReportCount} */
+    public int estimatedReportCount(long deviceId) {
+        CountMinSketch sketch = reportCounts();
+        if (sharesHash(sketch)) {
+            long hash = suspectDeviceFilter.hashStrategy().hash64(deviceId);
+            return ((HashedMembershipFilter) suspectDeviceFilter).mightContainHash(hash)
+                    ? sketch.estimateHash(hash) : 0;
+        }
+        return suspectDeviceFilter.mightContain(deviceId) ? sketch.estimate(deviceId) : 0;
+    }
+
+    /** Returns true if the filter probes the hash of a device id that the sketch counts, so one hash serves both */
+    private boolean sharesHash(CountMinSketch sketch) {
+        return suspectDeviceFilter instanceof HashedMembershipFilter
+                && suspectDeviceFilter.hashStrategy() == sketch.hashStrategy();
+    }
+
+    private CountMinSketch reportCounts() {
+        if (reportCounts == null) {
+            throw new UnsupportedOperationException("Store does not count reports, build it with countReports");
+        }
+        return reportCounts;
+    }
+
     /** Checks if a device might be a suspect device.  */
     public boolean isSuspectDevice(String deviceUid) {
-        return suspectDeviceBloomFilter.mightContain(deviceUid);
+        return suspectDeviceFilter.mightContain(deviceUid);
+    }
+
+    /**
+     * Checks if a device given as a char sequence might be a suspect device, the answer of
+     * {@link #isSuspectDevice(String)} for its string. ASCII device ids are hashed without creating a string.
+     */
+    public boolean isSuspectDevice(CharSequence deviceUid) {
+        return suspectDeviceFilter.mightContain(deviceUid);
+    }
+
+    /**
+     * Checks if a device given as its UTF-8 bytes might be a suspect device, the answer of
+     * {@link #isSuspectDevice(String)} for the device id. The bytes are hashed in place.
+     *
+     * @param deviceUid the array holding the UTF-8 bytes of the device id, well-formed
+     * @param offset the index of the first byte of the device id
+     * @param length the number of bytes of the device id
+     */
+    public boolean isSuspectDevice(byte[] deviceUid, int offset, int length) {
+        return suspectDeviceFilter.mightContain(deviceUid, offset, length);
+    }
+
+    /**
+     * Checks if a device given as its UTF-8 bytes, the remaining bytes of the buffer, might be a suspect device, the
+     * answer of {@link #isSuspectDevice(String)} for the device id. The bytes are hashed in place, heap and direct
+     * buffers alike, and the position of the buffer does not move.
+     */
+    public boolean isSuspectDevice(ByteBuffer deviceUid) {
+        return suspectDeviceFilter.mightContain(deviceUid);
+    }
+
+    /**
+     * Checks a batch of devices, e.g. the devices of a micro-batch of events. Filters that support it hash all device
+     * ids first and then probe them interleaved, so the cache misses of the lookups overlap instead of following
+     * each other; {@link FilterType#BLOCKED_BLOOM} does.
+     *
+     * @param deviceUids the device ids
+     * @param results receives {@link #isSuspectDevice(String)} of {@code deviceUids[i]} at index i, at least as long
+     *        as {@code deviceUids}
+     */
+    public void isSuspectDevices(String[] deviceUids, boolean[] results) {
+        if (results.length < deviceUids.length) {
+            throw new IllegalArgumentException("Results array of length " + results.length + " cannot hold "
+                    + deviceUids.length + " results");
+        }
+        suspectDeviceFilter.mightContain(deviceUids, results);
+    }
+
+    /** Checks if a device with a numeric id might be a suspect device, without converting the id to a string */
+    public boolean isSuspectDevice(long deviceId) {
+        return suspectDeviceFilter.mightContain(deviceId);
+    }
+
+    /**
+     * Checks a batch of devices with numeric ids, like {@link #isSuspectDevices(String[], boolean[])}.
+     *
+     * @param deviceIds the numeric device ids
+     * @param results receives {@link #isSuspectDevice(long)} of {@code deviceIds[i]} at index i, at least as long as
+     *        {@code deviceIds}
+     */
+    public void isSuspectDevices(long[] deviceIds, boolean[] results) {
+        if (results.length < deviceIds.length) {
+            throw new IllegalArgumentException("Results array of length " + results.length + " cannot hold "
+                    + deviceIds.length + " results");
+        }
+        suspectDeviceFilter.mightContain(deviceIds, results);
     }
 
     /**
      * Returns the probability of erroneously returning true for an device that has not actually been put in the
-     * suspectDeviceBloomFilter.
+     * suspectDeviceFilter.
      */
     public double suspectDeviceStoreFPP(){
-        return suspectDeviceBloomFilter.expectedFpp();
+        return suspectDeviceFilter.expectedFpp();
     }
 
     /**
@@ -98,14 +664,135 @@ public final class SuspectDeviceStore implements Serializable {
     }
 
     /**
-     * Writes this {@code BloomFilter} to an output stream, with a custom format (not Java
+     * Writes the filter of this store to an output stream, with a custom format (not Java
      * serialization). This has been measured to save at least 400 bytes compared to regular serialization.
      *
      * @param stream
      * @throws IOException
      */
     public void writeTo(ObjectOutputStream stream) throws IOException {
-        this.suspectDeviceBloomFilter.writeTo(stream);
+        this.suspectDeviceFilter.writeTo(stream);
+    }
+
+    /**
+     * Writes a versioned, checksummed snapshot of this store that {@link #readSnapshot(Path)} loads. The snapshot
+     * replaces the file atomically, so processes that mapped the previous snapshot keep reading it.
+     *
+     * A store returned by {@link #recover} records the position of its log in the snapshot, then drops the part of
+     * the log the snapshot contains.
+     *
+     * @param path the snapshot file
+     * @throws IOException if the file cannot be written
+     * @throws UnsupportedOperationException if the filter of this store was not created by a {@link FilterType}
+     */
+    public void writeSnapshot(Path path) throws IOException {
+        if (suspectDeviceFilter instanceof LoggedMembershipFilter) {
+            LoggedMembershipFilter logged = (LoggedMembershipFilter) suspectDeviceFilter;
+            // Device ids are in the filter before they are logged, so the snapshot contains all up to the position
+            long logPosition = logged.log().sync();
+            SnapshotFile.write(logged.filter(), path, logPosition);
+            logged.log().truncate(logPosition);
+            return;
+        }
+        SnapshotFile.write(suspectDeviceFilter, path);
+    }
+
+    /**
+     * Returns a store recovered from its last snapshot and the devices logged since, that logs the devices added to
+     * it. The snapshot is read like {@link #readSnapshot(Path)}, or, if there is none yet, an empty store is built;
+     * then the device ids the log holds from the position the snapshot recorded on are added to it.
+     * {@link #writeSnapshot(Path)} of the store writes the next snapshot and drops the log up to it.
+     *
+     * Adding a device returns once the log commits it, see {@link SuspectDeviceLog#open(Path, long)}; bulk loads of
+     * many devices are faster with a sync interval. Devices cannot be removed from the store.
+     *
+     * The filter type, size and hash strategy of the builder apply only to the first store, a snapshot keeps its own.
+     * {@link Builder#preTouch(boolean)} and {@link Builder#countReports(double, double)} apply to every recovered
+     * store; report counts start from zero, they are not part of snapshots. Snapshots hold neither off heap filters
+     * nor exact confirmation, nor do logs hold the device ids of {@link Builder#deviceUids(List)}, so builders with
+     * any of them are rejected. Snapshots hold only the filters of a {@link FilterType}, so builders with any other
+     * filter factory, e.g. {@link AgingMembershipFilter#factory(FilterType, int)}, are rejected too.
+     *
+     * @param snapshot the snapshot file, it need not exist
+     * @param log the log of the devices added since the snapshot
+     * @param builder the configuration of the store
+     * @throws IOException if the snapshot or the log cannot be read, or the log does not reach back to the snapshot
+     */
+    public static SuspectDeviceStore recover(Path snapshot, SuspectDeviceLog log, Builder builder)
+            throws IOException {
+        if (log == null || builder == null) {
+            throw new IllegalArgumentException("Log and builder cannot be null");
+        }
+        if (builder.offHeap || builder.exactConfirmation || builder.deviceUidList != null) {
+            throw new IllegalArgumentException("A recovered store cannot be off heap, confirm exactly or be built "
+                    + "from device ids");
+        }
+        if (!(builder.filterFactory instanceof FilterType)) {
+            throw new IllegalArgumentException("A recovered store must be built by a FilterType, snapshots hold no "
+                    + "other filters");
+        }
+        MembershipFilter filter;
+        long logPosition;
+        if (Files.exists(snapshot)) {
+            filter = SnapshotFile.read(snapshot);
+            logPosition = SnapshotFile.logPosition(snapshot);
+        } else {
+            filter = builder.createFilter();
+            logPosition = log.startPosition();
+        }
+        if (builder.preTouch) {
+            filter.preTouch();
+        }
+        log.replay(logPosition, filter);
+        return new SuspectDeviceStore(new LoggedMembershipFilter(filter, log), null,
+                builder.createReportCounts(filter.hashStrategy()));
+    }
+
+    /**
+     * Returns a store loaded from a snapshot file written by {@link #writeSnapshot(Path)}. The file is read
+     * sequentially and every 1 MB chunk is checked against its CRC, no Java serialization is involved.
+     *
+     * @param path the snapshot file
+     * @throws IOException if the file cannot be read, is not a snapshot or is corrupt
+     */
+    public static SuspectDeviceStore readSnapshot(Path path) throws IOException {
+        return new SuspectDeviceStore(SnapshotFile.read(path));
+    }
+
+    /**
+     * Returns a store whose filter is a snapshot file of a {@link FilterType#BLOCKED_BLOOM} store, memory mapped
+     * instead of read. The store answers lookups as soon as this returns, pages of the file are read on first access;
+     * all processes mapping the same file share them in the page cache. Only the header of the file is checked.
+     *
+     * @param path the snapshot file
+     * @param writable false to map the snapshot read-only, {@link #addSuspectDevice(String)} then throws
+     *        {@link UnsupportedOperationException}; true to add devices to the file, see {@link #forceSnapshot()}
+     * @throws IOException if the file cannot be mapped or is not a snapshot of a blocked Bloom filter
+     */
+    public static SuspectDeviceStore mapSnapshot(Path path, boolean writable) throws IOException {
+        return new SuspectDeviceStore(SnapshotFile.map(path, writable), writable ? path : null, null);
+    }
+
+    /**
+     * Writes the devices added to a store mapped writable by {@link #mapSnapshot(Path, boolean)} to its snapshot
+     * file and updates its checksums. Does nothing for other stores.
+     *
+     * @throws IOException if the file cannot be written
+     */
+    public void forceSnapshot() throws IOException {
+        if (mappedSnapshot != null) {
+            SnapshotFile.force((BlockedBloomFilter) suspectDeviceFilter, mappedSnapshot);
+        }
+    }
+
+    /** Returns the filter backing this store */
+    MembershipFilter filter() {
+        return suspectDeviceFilter;
+    }
+
+    /** Returns the number of bits of memory used by the filter backing this store */
+    public long suspectDeviceStoreBitSize() {
+        return suspectDeviceFilter.bitSize();
     }
 
     /**
@@ -114,7 +801,218 @@ public final class SuspectDeviceStore implements Serializable {
      */
     @VisibleForTesting
     public static SuspectDeviceStore getSuspectDeviceStore(int expectedNumberOfInsertions) {
-        DeviceStoreHolder.INSTANCE = initSuspectDeviceStore(expectedNumberOfInsertions, DEFAULT_MAX_ERROR_PERCENTAGE);
-        return DeviceStoreHolder.INSTANCE;
+        return DeviceStoreHolder.set(initSuspectDeviceStore(expectedNumberOfInsertions, DEFAULT_MAX_ERROR_PERCENTAGE));
+    }
+
+    /**
+     * Returns the instance of the com.poc.device.store.SuspectDeviceStore with a specified number of expected
+     * suspect device ids, backed by a filter of the given factory, e.g. one of the {@link FilterType}s
+     */
+    public static SuspectDeviceStore getSuspectDeviceStore(int expectedNumberOfInsertions,
+                                                           MembershipFilterFactory filterFactory) {
+        return DeviceStoreHolder.set(
+                initSuspectDeviceStore(expectedNumberOfInsertions, DEFAULT_MAX_ERROR_PERCENTAGE, filterFactory));
+    }
+
+    /**
+     * Returns the instance of the com.poc.device.store.SuspectDeviceStore built from a list of suspect device ids,
+     * backed by a filter of the given factory. With {@link FilterType#BINARY_FUSE} the store is immutable and
+     * {@link #addSuspectDevice(String)} throws {@link UnsupportedOperationException}.
+     */
+    public static SuspectDeviceStore getSuspectDeviceStore(List<String> deviceUidList,
+                                                           MembershipFilterFactory filterFactory) {
+        return DeviceStoreHolder.set(
+                new SuspectDeviceStore(filterFactory.create(deviceUidList, DEFAULT_MAX_ERROR_PERCENTAGE)));
+    }
+
+    /**
+     * Builds a com.poc.device.store.SuspectDeviceStore. Stores built with {@link #build()} are independent of the
+     * instance returned by {@link SuspectDeviceStore#getSuspectDeviceStore()}; pass the builder to
+     * {@link SuspectDeviceStore#initialize(Builder)} to build that instance.
+     */
+    public static final class Builder {
+        private long expectedInsertions = DEFAULT_SUSPECT_DEVICE_SIZE;
+        private double maximumErrorPercentage = DEFAULT_MAX_ERROR_PERCENTAGE;
+        private MembershipFilterFactory filterFactory = FilterType.GUAVA_BLOOM;
+        private DeviceHashStrategy hashStrategy = DeviceHashStrategy.MURMUR3_128;
+        private List<String> deviceUidList;
+        private boolean preTouch;
+        private boolean offHeap;
+        private boolean exactConfirmation;
+        private double reportCountEpsilon;
+        private double reportCountDelta;
+        private Executor executor;
+
+        private Builder() {
+        }
+
+        /** Sets the number of suspect devices the store is sized for, defaults to 100M */
+        public Builder expectedInsertions(long expectedInsertions) {
+            if (expectedInsertions < 0) {
+                throw new IllegalArgumentException("Expected insertions cannot be negative: " + expectedInsertions);
+            }
+            this.expectedInsertions = expectedInsertions;
+            return this;
+        }
+
+        /** Sets the false positive probability of the store, defaults to 1% */
+        public Builder maximumErrorPercentage(double maximumErrorPercentage) {
+            if (!(maximumErrorPercentage > 0.0 && maximumErrorPercentage < 1.0)) {
+                throw new IllegalArgumentException("Error percentage must be in (0, 1): " + maximumErrorPercentage);
+            }
+            this.maximumErrorPercentage = maximumErrorPercentage;
+            return this;
+        }
+
+        /** Sets the factory of the filter backing the store, defaults to {@link FilterType#GUAVA_BLOOM} */
+        public Builder filterFactory(MembershipFilterFactory filterFactory) {
+            if (filterFactory == null) {
+                throw new IllegalArgumentException("Filter factory cannot be null");
+            }
+            this.filterFactory = filterFactory;
+            return this;
+        }
+
+        /**
+         * Sets the hash function of the filter, defaults to {@link DeviceHashStrategy#MURMUR3_128}.
+         * {@link FilterType#GUAVA_BLOOM} only supports the default, {@link #build()} throws
+         * {@link UnsupportedOperationException} for other strategies. Snapshots record the strategy, so a store read
+         * back from one hashes like the store that wrote it.
+         */
+        public Builder hashStrategy(DeviceHashStrategy hashStrategy) {
+            if (hashStrategy == null) {
+                throw new IllegalArgumentException("Hash strategy cannot be null");
+            }
+            this.hashStrategy = hashStrategy;
+            return this;
+        }
+
+        /**
+         * Builds the store from a complete list of suspect devices instead of an empty one sized by
+         * {@link #expectedInsertions(long)}; required for {@link FilterType#BINARY_FUSE}.
+         */
+        public Builder deviceUids(List<String> deviceUidList) {
+            this.deviceUidList = deviceUidList;
+            return this;
+        }
+
+        /**
+         * Touches every page of the filter once it is allocated, so that the first lookups do not fault pages in.
+         * Filters allocated on the Java heap are already touched when the JVM zeroes them; this matters for filters
+         * whose memory is mapped lazily.
+         */
+        public Builder preTouch(boolean preTouch) {
+            this.preTouch = preTouch;
+            return this;
+        }
+
+        /**
+         * Allocates the filter outside the Java heap, so that garbage collections neither scan nor copy it. Only
+         * {@link FilterType#BLOCKED_BLOOM} supports this, {@link #build()} throws
+         * {@link UnsupportedOperationException} for other filter factories.
+         */
+        public Builder offHeap(boolean offHeap) {
+            this.offHeap = offHeap;
+            return this;
+        }
+
+        /**
+         * Confirms the positive answers of the filter with a set of the 64 bit hashes of the suspect devices, so that
+         * {@link SuspectDeviceStore#isSuspectDevice(String)} returning true is definitive rather than "might be": two
+         * device ids would have to share a 64 bit hash to be confused, ~5e-12 for 100M devices. The set is consulted
+         * only when the filter answers true, negative lookups cost what they cost without it. It takes ~11-21 bytes
+         * per device on top of the filter, outside the heap with {@link #offHeap(boolean)}.
+         *
+         * A store with exact confirmation cannot remove or expire devices, and cannot be written to a snapshot.
+         */
+        public Builder exactConfirmation(boolean exactConfirmation) {
+            this.exactConfirmation = exactConfirmation;
+            return this;
+        }
+
+        /**
+         * Counts how many times each device is reported with {@link SuspectDeviceStore#reportSuspectDevice(String)},
+         * in a {@link CountMinSketch} next to the filter that hashes device ids like the filter. An estimate exceeds
+         * the true count by at most {@code epsilon} times the total number of reports, with probability
+         * {@code 1 - delta}; e.g. 1e-5 and 0.01 take 5.4 MB.
+         *
+         * Estimates are lock free, but the conservative update reads and raises the counters of a device id as one
+         * step, so reports are serialized on the sketch: every report of the store goes through one lock.
+         */
+        public Builder countReports(double epsilon, double delta) {
+            if (!(epsilon > 0.0 && epsilon < 1.0) || !(delta > 0.0 && delta < 1.0)) {
+                throw new IllegalArgumentException("Epsilon and delta must be in (0, 1): " + epsilon + ", " + delta);
+            }
+            this.reportCountEpsilon = epsilon;
+            this.reportCountDelta = delta;
+            return this;
+        }
+
+        /**
+         * Sets the executor {@link #buildAsync()} allocates the store on, defaults to a new daemon thread so that a
+         * shared pool is not blocked for the duration of the allocation.
+         */
+        public Builder executor(Executor executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        /** Builds the store on the calling thread */
+        public SuspectDeviceStore build() {
+            MembershipFilter filter = createFilter();
+            if (exactConfirmation) {
+                if (filter instanceof AgingMembershipFilter) {
+                    throw new IllegalArgumentException("Exact confirmation cannot expire devices of an aging filter");
+                }
+                FingerprintSet fingerprints = FingerprintSet.create(
+                        deviceUidList != null ? deviceUidList.size() : expectedInsertions, offHeap);
+                if (deviceUidList != null && !offHeap) {
+                    // The filter was built from the list, the list is added to both below otherwise
+                    for (String deviceUid : deviceUidList) {
+                        fingerprints.add(filter.hashStrategy().hash64(deviceUid));
+                    }
+                }
+                filter = new ConfirmedMembershipFilter(filter, fingerprints);
+            }
+            if (preTouch) {
+                filter.preTouch();
+            }
+            SuspectDeviceStore store = new SuspectDeviceStore(filter, null, createReportCounts(filter.hashStrategy()));
+            if (offHeap && deviceUidList != null) {
+                store.addAllSuspectDevices(deviceUidList);
+            }
+            return store;
+        }
+
+        /** Creates the filter of the store, without the exact confirmation */
+        private MembershipFilter createFilter() {
+            if (offHeap) {
+                long size = deviceUidList != null ? deviceUidList.size() : expectedInsertions;
+                return filterFactory.createOffHeap(size, maximumErrorPercentage, hashStrategy);
+            } else if (deviceUidList != null) {
+                return filterFactory.create(deviceUidList, maximumErrorPercentage, hashStrategy);
+            }
+            return filterFactory.create(expectedInsertions, maximumErrorPercentage, hashStrategy);
+        }
+
+        /** Creates the sketch counting reports for a filter of the hash strategy, null if reports are not counted */
+        private CountMinSketch createReportCounts(DeviceHashStrategy filterHashStrategy) {
+            return reportCountEpsilon > 0
+                    ? CountMinSketch.create(reportCountEpsilon, reportCountDelta, filterHashStrategy) : null;
+        }
+
+        /** Builds the store in the background, the returned future completes once it is ready */
+        public CompletableFuture<SuspectDeviceStore> buildAsync() {
+            return CompletableFuture.supplyAsync(this::build, buildExecutor());
+        }
+
+        /** Returns the configured executor, or one that runs each task on a new daemon thread */
+        Executor buildExecutor() {
+            return executor != null ? executor : runnable -> {
+                Thread thread = new Thread(runnable, "suspect-device-store-init");
+                thread.setDaemon(true);
+                thread.start();
+            };
+        }
     }
 }
@@ -0,0 +1,190 @@
+package com.poc.device.store;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Named suspect device stores, e.g. a list per tenant, per fraud category or per region, each with its own size, FPP
+ * and filter type.
+ *
+ * Every store is held by a {@link ManagedSuspectDeviceStore}, so a store can be rebuilt and swapped without
+ * re-registering it. A {@link Lookup} checks a device against several stores in one call and hashes the device id
+ * once per {@link DeviceHashStrategy} rather than once per store.
+ */
+public final class SuspectDeviceStoreRegistry {
+    private final ConcurrentHashMap<String, ManagedSuspectDeviceStore> stores = new ConcurrentHashMap<>();
+
+    /**
+     * Registers a store under a name.
+     *
+     * @return the managed store now registered under the name
+     * @throws IllegalArgumentException if the name is empty or already registered
+     */
+    public ManagedSuspectDeviceStore register(String name, SuspectDeviceStore store) {
+        if (name == null || name.isEmpty()) {
+            throw new IllegalArgumentException("Store name cannot be null");
+        }
+        ManagedSuspectDeviceStore managedStore = ManagedSuspectDeviceStore.of(store);
+        if (stores.putIfAbsent(name, managedStore) != null) {
+            throw new IllegalArgumentException("Store " + name + " is already registered");
+        }
+        return managedStore;
+    }
+
+    /** Builds a store on the calling thread and registers it, like {@link #register(String, SuspectDeviceStore)} */
+    public ManagedSuspectDeviceStore register(String name, SuspectDeviceStore.Builder builder) {
+        return register(name, builder.build());
+    }
+
+    /** Returns the store registered under a name */
+    public Optional<ManagedSuspectDeviceStore> get(String name) {
+        return Optional.ofNullable(stores.get(name));
+    }
+
+    /**
+     * Removes the store registered under a name. Lookups created before keep checking it.
+     *
+     * @return the removed store, empty if no store was registered under the name
+     */
+    public Optional<ManagedSuspectDeviceStore> remove(String name) {
+        return Optional.ofNullable(stores.remove(name));
+    }
+
+    /** Returns the names of the registered stores */
+    public Set<String> names() {
+        return Collections.unmodifiableSet(stores.keySet());
+    }
+
+    /**
+     * Returns a lookup checking devices against the stores registered under the given names, in that order. Create it
+     * once and reuse it, it resolves the names only here.
+     *
+     * @throws IllegalArgumentException if a name is not registered, or more than 64 names are given
+     */
+    public Lookup lookup(String... names) {
+        if (names.length > Long.SIZE) {
+            throw new IllegalArgumentException("A lookup checks at most " + Long.SIZE + " stores, not " + names.length);
+        }
+        ManagedSuspectDeviceStore[] lookupStores = new ManagedSuspectDeviceStore[names.length];
+        for (int i = 0; i < names.length; i++) {
+            lookupStores[i] = stores.get(names[i]);
+            if (lookupStores[i] == null) {
+                throw new IllegalArgumentException("Store " + names[i] + " is not registered");
+            }
+        }
+        return new Lookup(names.clone(), lookupStores);
+    }
+
+    /**
+     * Checks devices against several stores at once. The device id is hashed once per hash strategy of the stores,
+     * so stores sharing a strategy, the default, cost one hash in total and one probe each. Stores swapped by their
+     * {@link ManagedSuspectDeviceStore} are seen by the next call.
+     */
+    public static final class Lookup {
+        private final String[] names;
+        private final ManagedSuspectDeviceStore[] stores;
+
+        private Lookup(String[] names, ManagedSuspectDeviceStore[] stores) {
+            this.names = names;
+            this.stores = stores;
+        }
+
+        /** Returns the names of the stores checked, bit i of {@link #matches(String)} is the store of name i */
+        public List<String> names() {
+            return Collections.unmodifiableList(Arrays.asList(names));
+        }
+
+        /**
+         * Checks a device against every store.
+         *
+         * @return a mask with bit i set if the device might be a suspect device in store i
+         */
+        public long matches(String deviceUid) {
+            return matches(deviceUid, 0, false);
+        }
+
+        /** Checks a device with a numeric id against every store, like {@link #matches(String)} */
+        public long matches(long deviceId) {
+            return matches(null, deviceId, true);
+        }
+
+        /**
+         * Probes every store, hashing the device id once per hash strategy. The hashes are kept in a local per
+         * strategy rather than an array, so that a lookup allocates nothing.
+         */
+        private long matches(String deviceUid, long deviceId, boolean numeric) {
+            long murmur3 = 0;
+            long xxh3 = 0;
+            long wyhash = 0;
+            boolean murmur3Hashed = false;
+            boolean xxh3Hashed = false;
+            boolean wyhashHashed = false;
+            long matches = 0;
+            for (int i = 0; i < stores.length; i++) {
+                MembershipFilter filter = stores[i].current().filter();
+                boolean match;
+                if (filter instanceof HashedMembershipFilter) {
+                    DeviceHashStrategy hashStrategy = filter.hashStrategy();
+                    long hash;
+                    switch (hashStrategy) {
+                        case MURMUR3_128:
+                            if (!murmur3Hashed) {
+                                murmur3 = hash(hashStrategy, deviceUid, deviceId, numeric);
+                                murmur3Hashed = true;
+                            }
+                            hash = murmur3;
+                            break;
+                        case XXH3_64:
+                            if (!xxh3Hashed) {
+                                xxh3 = hash(hashStrategy, deviceUid, deviceId, numeric);
+                                xxh3Hashed = true;
+                            }
+                            hash = xxh3;
+                            break;
+                        case WYHASH:
+                            if (!wyhashHashed) {
+                                wyhash = hash(hashStrategy, deviceUid, deviceId, numeric);
+                                wyhashHashed = true;
+                            }
+                            hash = wyhash;
+                            break;
+                        default:
+                            // A new strategy needs a local of its own here
+                            throw new IllegalStateException("Unknown hash strategy " + hashStrategy);
+                    }
+                    match = ((HashedMembershipFilter) filter).mightContainHash(hash);
+                } else {
+                    match = numeric ? filter.mightContain(deviceId) : filter.mightContain(deviceUid);
+                }
+                if (match) {
+                    matches |= 1L << i;
+                }
+            }
+            return matches;
+        }
+
+        private static long hash(DeviceHashStrategy hashStrategy, String deviceUid, long deviceId, boolean numeric) {
+            return numeric ? hashStrategy.hash64(deviceId) : hashStrategy.hash64(deviceUid);
+        }
+
+        /** Returns true if the device might be a suspect device in any of the stores */
+        public boolean isSuspectInAny(String deviceUid) {
+            return matches(deviceUid) != 0;
+        }
+
+        /** Returns the names of the stores the device might be a suspect device in */
+        public List<String> matchingNames(String deviceUid) {
+            long matches = matches(deviceUid);
+            List<String> matchingNames = new ArrayList<>(Long.bitCount(matches));
+            for (; matches != 0; matches &= matches - 1) {
+                matchingNames.add(names[Long.numberOfTrailingZeros(matches)]);
+            }
+            return matchingNames;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.poc.device.store;
+
+/**
+ * wyhash version 3 with seed 0, in pure Java.
+ *
+ * Inputs of up to 32 bytes, which covers device ids, are hashed with two or three 128 bit multiplications and no
+ * loop.
+ */
+final class WyHash {
+    private static final long P0 = 0xa0761d6478bd642fL;
+    private static final long P1 = 0xe7037ed1a0b428dbL;
+    private static final long P2 = 0x8ebc6af09c88c6e3L;
+    private static final long P3 = 0x589965cc75374cc3L;
+    private static final long P4 = 0x1d8e4e27c47d124fL;
+
+    private WyHash() {
+    }
+
+    /** Returns wyhash v3 of {@code length} bytes of the input from {@code offset} on */
+    static <T> long hash64(ByteAccess<T> access, T input, int offset, int length) {
+        long seed = 0;
+        if (length <= 0) {
+            return 0;
+        }
+        if (length < 4) {
+            return mum(mum(read3(access, input, offset, length) ^ seed ^ P0, seed ^ P1) ^ seed, length ^ P4);
+        }
+        if (length <= 8) {
+            return mum(mum(access.getUnsignedInt(input, offset) ^ seed ^ P0,
+                    access.getUnsignedInt(input, offset + length - 4) ^ seed ^ P1) ^ seed, length ^ P4);
+        }
+        if (length <= 16) {
+            return mum(mum(read8(access, input, offset) ^ seed ^ P0,
+                    read8(access, input, offset + length - 8) ^ seed ^ P1) ^ seed, length ^ P4);
+        }
+        if (length <= 24) {
+            return mum(mum(read8(access, input, offset) ^ seed ^ P0, read8(access, input, offset + 8) ^ seed ^ P1)
+                    ^ mum(read8(access, input, offset + length - 8) ^ seed ^ P2, seed ^ P3), length ^ P4);
+        }
+        if (length <= 32) {
+            return mum(mum(read8(access, input, offset) ^ seed ^ P0, read8(access, input, offset + 8) ^ seed ^ P1)
+                    ^ mum(read8(access, input, offset + 16) ^ seed ^ P2,
+                            read8(access, input, offset + length - 8) ^ seed ^ P3), length ^ P4);
+        }
+        long see1 = seed;
+        int remaining = length;
+        int p = offset;
+        for (; remaining > 256; remaining -= 256, p += 256) {
+            for (int round = 0; round < 256; round += 64) {
+                seed = mum(access.getLong(input, p + round) ^ seed ^ P0,
+                        access.getLong(input, p + round + 8) ^ seed ^ P1)
+                        ^ mum(access.getLong(input, p + round + 16) ^ seed ^ P2,
+                        access.getLong(input, p + round + 24) ^ seed ^ P3);
+                see1 = mum(access.getLong(input, p + round + 32) ^ see1 ^ P1,
+                        access.getLong(input, p + round + 40) ^ see1 ^ P2)
+                        ^ mum(access.getLong(input, p + round + 48) ^ see1 ^ P3,
+                        access.getLong(input, p + round + 56) ^ see1 ^ P0);
+            }
+        }
+        for (; remaining > 32; remaining -= 32, p += 32) {
+            seed = mum(access.getLong(input, p) ^ seed ^ P0, access.getLong(input, p + 8) ^ seed ^ P1);
+            see1 = mum(access.getLong(input, p + 16) ^ see1 ^ P2, access.getLong(input, p + 24) ^ see1 ^ P3);
+        }
+        if (remaining < 4) {
+            seed = mum(read3(access, input, p, remaining) ^ seed ^ P0, seed ^ P1);
+        } else if (remaining <= 8) {
+            seed = mum(access.getUnsignedInt(input, p) ^ seed ^ P0,
+                    access.getUnsignedInt(input, p + remaining - 4) ^ seed ^ P1);
+        } else if (remaining <= 16) {
+            seed = mum(read8(access, input, p) ^ seed ^ P0, read8(access, input, p + remaining - 8) ^ seed ^ P1);
+        } else if (remaining <= 24) {
+            seed = mum(read8(access, input, p) ^ seed ^ P0, read8(access, input, p + 8) ^ seed ^ P1);
+            see1 = mum(read8(access, input, p + remaining - 8) ^ see1 ^ P2, see1 ^ P3);
+        } else {
+            seed = mum(read8(access, input, p) ^ seed ^ P0, read8(access, input, p + 8) ^ seed ^ P1);
+            see1 = mum(read8(access, input, p + 16) ^ see1 ^ P2,
+                    read8(access, input, p + remaining - 8) ^ see1 ^ P3);
+        }
+        return mum(seed ^ see1, length ^ P4);
+    }
+
+    /** Returns wyhash v3 of the 8 little endian bytes of the value */
+    static long hash64(long value) {
+        return mum(mum((value & 0xFFFF_FFFFL) ^ P0, (value >>> 32) ^ P1), Long.BYTES ^ P4);
+    }
+
+    /** Multiplies two unsigned longs into 128 bits and xors the halves */
+    private static long mum(long a, long b) {
+        long high = Math.multiplyHigh(a, b) + ((a >> 63) & b) + ((b >> 63) & a);
+        return a * b ^ high;
+    }
+
+    /** Reads 8 bytes as wyhash v3 does outside its loops, two little endian ints with the first in the upper half */
+    private static <T> long read8(ByteAccess<T> access, T input, int offset) {
+        return Long.rotateLeft(access.getLong(input, offset), 32);
+    }
+
+    private static <T> long read3(ByteAccess<T> access, T input, int offset, int length) {
+        return (long) access.getUnsignedByte(input, offset) << 16
+                | (long) access.getUnsignedByte(input, offset + (length >>> 1)) << 8
+                | access.getUnsignedByte(input, offset + length - 1);
+    }
+}
@@ -0,0 +1,204 @@
+package com.poc.device.store;
+
+/**
+ * XXH3_64bits with seed 0 and the default secret (xxHash 0.8), in pure Java.
+ *
+ * Device ids are short, so the 9 to 16 and 17 to 128 byte paths are the ones that matter; the long input path is
+ * there so every input hashes as the reference implementation does.
+ */
+final class Xxh3 {
+    private static final long PRIME32_1 = 0x9E3779B1L;
+    private static final long PRIME32_2 = 0x85EBCA77L;
+    private static final long PRIME32_3 = 0xC2B2AE3DL;
+    private static final long PRIME64_1 = 0x9E3779B185EBCA87L;
+    private static final long PRIME64_2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long PRIME64_3 = 0x165667B19E3779F9L;
+    private static final long PRIME64_4 = 0x85EBCA77C2B2AE63L;
+    private static final long PRIME64_5 = 0x27D4EB2F165667C5L;
+    private static final long PRIME_MX1 = 0x165667919E3779F9L;
+    private static final long PRIME_MX2 = 0x9FB21C651E98DF25L;
+
+    private static final int STRIPE_BYTES = 64;
+    private static final int SECRET_CONSUME_RATE = 8;
+    private static final int MIDSIZE_MAX = 240;
+
+    private static final byte[] SECRET = {
+            (byte) 0xb8, (byte) 0xfe, (byte) 0x6c, (byte) 0x39, (byte) 0x23, (byte) 0xa4, (byte) 0x4b, (byte) 0xbe,
+            (byte) 0x7c, (byte) 0x01, (byte) 0x81, (byte) 0x2c, (byte) 0xf7, (byte) 0x21, (byte) 0xad, (byte) 0x1c,
+            (byte) 0xde, (byte) 0xd4, (byte) 0x6d, (byte) 0xe9, (byte) 0x83, (byte) 0x90, (byte) 0x97, (byte) 0xdb,
+            (byte) 0x72, (byte) 0x40, (byte) 0xa4, (byte) 0xa4, (byte) 0xb7, (byte) 0xb3, (byte) 0x67, (byte) 0x1f,
+            (byte) 0xcb, (byte) 0x79, (byte) 0xe6, (byte) 0x4e, (byte) 0xcc, (byte) 0xc0, (byte) 0xe5, (byte) 0x78,
+            (byte) 0x82, (byte) 0x5a, (byte) 0xd0, (byte) 0x7d, (byte) 0xcc, (byte) 0xff, (byte) 0x72, (byte) 0x21,
+            (byte) 0xb8, (byte) 0x08, (byte) 0x46, (byte) 0x74, (byte) 0xf7, (byte) 0x43, (byte) 0x24, (byte) 0x8e,
+            (byte) 0xe0, (byte) 0x35, (byte) 0x90, (byte) 0xe6, (byte) 0x81, (byte) 0x3a, (byte) 0x26, (byte) 0x4c,
+            (byte) 0x3c, (byte) 0x28, (byte) 0x52, (byte) 0xbb, (byte) 0x91, (byte) 0xc3, (byte) 0x00, (byte) 0xcb,
+            (byte) 0x88, (byte) 0xd0, (byte) 0x65, (byte) 0x8b, (byte) 0x1b, (byte) 0x53, (byte) 0x2e, (byte) 0xa3,
+            (byte) 0x71, (byte) 0x64, (byte) 0x48, (byte) 0x97, (byte) 0xa2, (byte) 0x0d, (byte) 0xf9, (byte) 0x4e,
+            (byte) 0x38, (byte) 0x19, (byte) 0xef, (byte) 0x46, (byte) 0xa9, (byte) 0xde, (byte) 0xac, (byte) 0xd8,
+            (byte) 0xa8, (byte) 0xfa, (byte) 0x76, (byte) 0x3f, (byte) 0xe3, (byte) 0x9c, (byte) 0x34, (byte) 0x3f,
+            (byte) 0xf9, (byte) 0xdc, (byte) 0xbb, (byte) 0xc7, (byte) 0xc7, (byte) 0x0b, (byte) 0x4f, (byte) 0x1d,
+            (byte) 0x8a, (byte) 0x51, (byte) 0xe0, (byte) 0x4b, (byte) 0xcd, (byte) 0xb4, (byte) 0x59, (byte) 0x31,
+            (byte) 0xc8, (byte) 0x9f, (byte) 0x7e, (byte) 0xc9, (byte) 0xd9, (byte) 0x78, (byte) 0x73, (byte) 0x64,
+            (byte) 0xea, (byte) 0xc5, (byte) 0xac, (byte) 0x83, (byte) 0x34, (byte) 0xd3, (byte) 0xeb, (byte) 0xc3,
+            (byte) 0xc5, (byte) 0x81, (byte) 0xa0, (byte) 0xff, (byte) 0xfa, (byte) 0x13, (byte) 0x63, (byte) 0xeb,
+            (byte) 0x17, (byte) 0x0d, (byte) 0xdd, (byte) 0x51, (byte) 0xb7, (byte) 0xf0, (byte) 0xda, (byte) 0x49,
+            (byte) 0xd3, (byte) 0x16, (byte) 0x55, (byte) 0x26, (byte) 0x29, (byte) 0xd4, (byte) 0x68, (byte) 0x9e,
+            (byte) 0x2b, (byte) 0x16, (byte) 0xbe, (byte) 0x58, (byte) 0x7d, (byte) 0x47, (byte) 0xa1, (byte) 0xfc,
+            (byte) 0x8f, (byte) 0xf8, (byte) 0xb8, (byte) 0xd1, (byte) 0x7a, (byte) 0xd0, (byte) 0x31, (byte) 0xce,
+            (byte) 0x45, (byte) 0xcb, (byte) 0x3a, (byte) 0x8f, (byte) 0x95, (byte) 0x16, (byte) 0x04, (byte) 0x28,
+            (byte) 0xaf, (byte) 0xd7, (byte) 0xfb, (byte) 0xca, (byte) 0xbb, (byte) 0x4b, (byte) 0x40, (byte) 0x7e,
+    };
+
+    /** The secret as little endian longs at every byte offset a hash reads them from */
+    private static final long[] SECRET_LONGS = new long[SECRET.length - 7];
+
+    static {
+        for (int i = 0; i < SECRET_LONGS.length; i++) {
+            SECRET_LONGS[i] = ByteAccess.BYTES.getLong(SECRET, i);
+        }
+    }
+
+    private Xxh3() {
+    }
+
+    /** Returns XXH3_64bits of {@code length} bytes of the input from {@code offset} on */
+    static <T> long hash64(ByteAccess<T> access, T input, int offset, int length) {
+        if (length <= 16) {
+            return hashUpTo16(access, input, offset, length);
+        }
+        if (length <= 128) {
+            long acc = length * PRIME64_1;
+            if (length > 32) {
+                if (length > 64) {
+                    if (length > 96) {
+                        acc += mix16(access, input, offset + 48, 96);
+                        acc += mix16(access, input, offset + length - 64, 112);
+                    }
+                    acc += mix16(access, input, offset + 32, 64);
+                    acc += mix16(access, input, offset + length - 48, 80);
+                }
+                acc += mix16(access, input, offset + 16, 32);
+                acc += mix16(access, input, offset + length - 32, 48);
+            }
+            acc += mix16(access, input, offset, 0);
+            acc += mix16(access, input, offset + length - 16, 16);
+            return avalanche(acc);
+        }
+        if (length <= MIDSIZE_MAX) {
+            long acc = length * PRIME64_1;
+            int rounds = length / 16;
+            for (int i = 0; i < 8; i++) {
+                acc += mix16(access, input, offset + 16 * i, 16 * i);
+            }
+            acc = avalanche(acc);
+            for (int i = 8; i < rounds; i++) {
+                acc += mix16(access, input, offset + 16 * i, 16 * (i - 8) + 3);
+            }
+            acc += mix16(access, input, offset + length - 16, 136 - 17);
+            return avalanche(acc);
+        }
+        return hashLong(access, input, offset, length);
+    }
+
+    /** Returns XXH3_64bits of the 8 little endian bytes of the value, the 4 to 8 byte path without reading them */
+    static long hash64(long value) {
+        return rrmxmx(Long.rotateLeft(value, 32) ^ (SECRET_LONGS[8] ^ SECRET_LONGS[16]), Long.BYTES);
+    }
+
+    private static <T> long hashUpTo16(ByteAccess<T> access, T input, int offset, int length) {
+        if (length > 8) {
+            long low = access.getLong(input, offset) ^ (SECRET_LONGS[24] ^ SECRET_LONGS[32]);
+            long high = access.getLong(input, offset + length - 8) ^ (SECRET_LONGS[40] ^ SECRET_LONGS[48]);
+            long acc = length + Long.reverseBytes(low) + high + multiplyFold(low, high);
+            return avalanche(acc);
+        }
+        if (length >= 4) {
+            long input1 = access.getUnsignedInt(input, offset);
+            long input2 = access.getUnsignedInt(input, offset + length - 4);
+            long keyed = (input2 + (input1 << 32)) ^ (SECRET_LONGS[8] ^ SECRET_LONGS[16]);
+            return rrmxmx(keyed, length);
+        }
+        if (length > 0) {
+            int c1 = access.getUnsignedByte(input, offset);
+            int c2 = access.getUnsignedByte(input, offset + (length >> 1));
+            int c3 = access.getUnsignedByte(input, offset + length - 1);
+            long combined = ((long) c1 << 16 | (long) c2 << 24 | c3 | (long) length << 8) & 0xFFFF_FFFFL;
+            long bitflip = (SECRET_LONGS[0] ^ (SECRET_LONGS[0] >>> 32)) & 0xFFFF_FFFFL;
+            return xxh64Avalanche(combined ^ bitflip);
+        }
+        return xxh64Avalanche(SECRET_LONGS[56] ^ SECRET_LONGS[64]);
+    }
+
+    private static <T> long hashLong(ByteAccess<T> access, T input, int offset, int length) {
+        long[] acc = {PRIME32_3, PRIME64_1, PRIME64_2, PRIME64_3, PRIME64_4, PRIME32_2, PRIME64_5, PRIME32_1};
+        int stripesPerBlock = (SECRET.length - STRIPE_BYTES) / SECRET_CONSUME_RATE;
+        int blockBytes = STRIPE_BYTES * stripesPerBlock;
+        int blocks = (length - 1) / blockBytes;
+        for (int block = 0; block < blocks; block++) {
+            accumulate(access, input, offset + block * blockBytes, stripesPerBlock, acc);
+            for (int i = 0; i < 8; i++) {
+                long value = acc[i];
+                value ^= value >>> 47;
+                value ^= SECRET_LONGS[SECRET.length - STRIPE_BYTES + 8 * i];
+                acc[i] = value * PRIME32_1;
+            }
+        }
+        int stripes = ((length - 1) - blockBytes * blocks) / STRIPE_BYTES;
+        accumulate(access, input, offset + blocks * blockBytes, stripes, acc);
+        accumulate512(access, input, offset + length - STRIPE_BYTES, SECRET.length - STRIPE_BYTES - 7, acc);
+
+        long result = length * PRIME64_1;
+        for (int i = 0; i < 4; i++) {
+            result += multiplyFold(acc[2 * i] ^ SECRET_LONGS[11 + 16 * i], acc[2 * i + 1] ^ SECRET_LONGS[19 + 16 * i]);
+        }
+        return avalanche(result);
+    }
+
+    private static <T> void accumulate(ByteAccess<T> access, T input, int offset, int stripes, long[] acc) {
+        for (int stripe = 0; stripe < stripes; stripe++) {
+            accumulate512(access, input, offset + stripe * STRIPE_BYTES, stripe * SECRET_CONSUME_RATE, acc);
+        }
+    }
+
+    private static <T> void accumulate512(ByteAccess<T> access, T input, int offset, int secretOffset, long[] acc) {
+        for (int i = 0; i < 8; i++) {
+            long value = access.getLong(input, offset + 8 * i);
+            long key = value ^ SECRET_LONGS[secretOffset + 8 * i];
+            acc[i ^ 1] += value;
+            acc[i] += (key & 0xFFFF_FFFFL) * (key >>> 32);
+        }
+    }
+
+    private static <T> long mix16(ByteAccess<T> access, T input, int offset, int secretOffset) {
+        return multiplyFold(access.getLong(input, offset) ^ SECRET_LONGS[secretOffset],
+                access.getLong(input, offset + 8) ^ SECRET_LONGS[secretOffset + 8]);
+    }
+
+    /** Multiplies two unsigned longs into 128 bits and xors the halves */
+    private static long multiplyFold(long a, long b) {
+        long high = Math.multiplyHigh(a, b) + ((a >> 63) & b) + ((b >> 63) & a);
+        return a * b ^ high;
+    }
+
+    private static long avalanche(long hash) {
+        hash ^= hash >>> 37;
+        hash *= PRIME_MX1;
+        return hash ^ hash >>> 32;
+    }
+
+    private static long rrmxmx(long hash, int length) {
+        hash ^= Long.rotateLeft(hash, 49) ^ Long.rotateLeft(hash, 24);
+        hash *= PRIME_MX2;
+        hash ^= (hash >>> 35) + length;
+        hash *= PRIME_MX2;
+        return hash ^ hash >>> 28;
+    }
+
+    private static long xxh64Avalanche(long hash) {
+        hash ^= hash >>> 33;
+        hash *= PRIME64_2;
+        hash ^= hash >>> 29;
+        hash *= PRIME64_3;
+        return hash ^ hash >>> 32;
+    }
+}
@@ -0,0 +1,130 @@
+package com.poc.device.store.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.poc.device.store.AgingMembershipFilter;
+import com.poc.device.store.DeviceHashStrategy;
+import com.poc.device.store.FilterType;
+import com.poc.device.store.MembershipFilter;
+import com.poc.device.store.MembershipFilterFactory;
+import com.poc.device.store.SuspectDeviceStore;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+/** Unit test for {@link com.poc.device.store.AgingMembershipFilter} */
+public class AgingMembershipFilterTest {
+    private static final String DEVICE_ID_PREFIX = "DEVICE_";
+    private static final int DEVICES_PER_DAY = 10000;
+    private static final int DAYS = 7;
+
+    @Rule
+    public ExpectedException exceptionRule = ExpectedException.none();
+
+    private static SuspectDeviceStore store(FilterType generationType) {
+        return SuspectDeviceStore.builder()
+                .expectedInsertions(DEVICES_PER_DAY)
+                .filterFactory(AgingMembershipFilter.factory(generationType, DAYS))
+                .hashStrategy(DeviceHashStrategy.XXH3_64)
+                .build();
+    }
+
+    /** Adds the devices of a day, numbered from {@code day * DEVICES_PER_DAY} */
+    private static void addDay(SuspectDeviceStore suspectDeviceStore, int day) {
+        for (int i = 0; i < DEVICES_PER_DAY; i++) {
+            suspectDeviceStore.addSuspectDevice(DEVICE_ID_PREFIX + (day * DEVICES_PER_DAY + i));
+        }
+    }
+
+    private static int suspectsOfDay(SuspectDeviceStore suspectDeviceStore, int day) {
+        int suspects = 0;
+        for (int i = 0; i < DEVICES_PER_DAY; i++) {
+            if (suspectDeviceStore.isSuspectDevice(DEVICE_ID_PREFIX + (day * DEVICES_PER_DAY + i))) {
+                suspects++;
+            }
+        }
+        return suspects;
+    }
+
+    @Test
+    public void whenADayAges_thenShouldForgetItsDevicesAfterTheWindow() {
+        for (FilterType generationType : new FilterType[] {FilterType.BLOCKED_BLOOM, FilterType.COUNTING_BLOOM,
+                FilterType.FINGERPRINT_SET}) {
+            SuspectDeviceStore suspectDeviceStore = store(generationType);
+            long bitSize = suspectDeviceStore.suspectDeviceStoreBitSize();
+            for (int day = 0; day < 2 * DAYS; day++) {
+                addDay(suspectDeviceStore, day);
+                for (int past = Math.max(0, day - DAYS + 1); past <= day; past++) {
+                    assertEquals(generationType + " day " + past + " on day " + day, DEVICES_PER_DAY,
+                            suspectsOfDay(suspectDeviceStore, past));
+                }
+                if (day >= DAYS) {
+                    assertTrue(generationType + " day " + (day - DAYS) + " on day " + day,
+                            suspectsOfDay(suspectDeviceStore, day - DAYS) < DEVICES_PER_DAY / 50);
+                }
+                suspectDeviceStore.expireOldestSuspectDevices();
+            }
+            assertEquals(bitSize, suspectDeviceStore.suspectDeviceStoreBitSize());
+            assertTrue(suspectDeviceStore.suspectDeviceStoreFPP() < 0.011);
+        }
+    }
+
+    @Test
+    public void whenADeviceIsAddedAgain_thenShouldStaySuspectForAnotherWindow() {
+        SuspectDeviceStore suspectDeviceStore = store(FilterType.BLOCKED_BLOOM);
+        suspectDeviceStore.addSuspectDevice(DEVICE_ID_PREFIX + 1);
+        for (int day = 1; day < DAYS; day++) {
+            suspectDeviceStore.expireOldestSuspectDevices();
+        }
+        suspectDeviceStore.addSuspectDevice(DEVICE_ID_PREFIX + 1);
+        suspectDeviceStore.expireOldestSuspectDevices();
+        assertTrue(suspectDeviceStore.isSuspectDevice(DEVICE_ID_PREFIX + 1));
+        for (int day = 1; day < DAYS; day++) {
+            suspectDeviceStore.expireOldestSuspectDevices();
+        }
+        assertFalse(suspectDeviceStore.isSuspectDevice(DEVICE_ID_PREFIX + 1));
+    }
+
+    @Test
+    public void whenWriteAndReadAnAgingFilter_thenShouldKeepTheOrderOfTheGenerations() throws IOException {
+        MembershipFilterFactory factory = AgingMembershipFilter.factory(FilterType.BLOCKED_BLOOM, 3);
+        MembershipFilter filter = factory.create(1000, 0.01);
+        AgingMembershipFilter aging = (AgingMembershipFilter) filter;
+        filter.put(DEVICE_ID_PREFIX + 1);
+        aging.advance();
+        filter.put(DEVICE_ID_PREFIX + 2);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        filter.writeTo(out);
+        AgingMembershipFilter copy = (AgingMembershipFilter) factory.readFrom(
+                new ByteArrayInputStream(out.toByteArray()));
+
+        assertEquals(3, copy.generationCount());
+        assertEquals(filter.bitSize(), copy.bitSize());
+        assertTrue(copy.mightContain(DEVICE_ID_PREFIX + 1) && copy.mightContain(DEVICE_ID_PREFIX + 2));
+        copy.advance();
+        assertTrue(copy.mightContain(DEVICE_ID_PREFIX + 1));
+        copy.advance();
+        assertFalse(copy.mightContain(DEVICE_ID_PREFIX + 1));
+        assertTrue(copy.mightContain(DEVICE_ID_PREFIX + 2));
+    }
+
+    @Test
+    public void whenExpireDevicesOfAStoreThatDoesNotAge_thenShouldThrowException() {
+        exceptionRule.expect(UnsupportedOperationException.class);
+        exceptionRule.expectMessage("does not support expiring devices");
+        SuspectDeviceStore.builder().expectedInsertions(1000).build().expireOldestSuspectDevices();
+    }
+
+    @Test
+    public void whenAgeAFilterTypeThatDoesNotHashDevices_thenShouldThrowException() {
+        exceptionRule.expect(IllegalArgumentException.class);
+        exceptionRule.expectMessage("cannot be a generation of an aging filter");
+        AgingMembershipFilter.factory(FilterType.GUAVA_BLOOM, DAYS).create(1000, 0.01);
+    }
+}
@@ -0,0 +1,75 @@
+package com.poc.device.store.test;
+
+import static org.junit.Assert.assertEquals;
+
+import com.poc.device.store.DeviceHashStrategy;
+import com.poc.device.store.FilterType;
+import com.poc.device.store.SuspectDeviceStore;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/** Unit test for the batch lookups of {@link com.poc.device.store.SuspectDeviceStore} */
+public class BatchLookupTest {
+    private static final String DEVICE_ID_PREFIX = "DEVICE_";
+
+    @Rule
+    public ExpectedException exceptionRule = ExpectedException.none();
+
+    private static SuspectDeviceStore store(FilterType filterType, DeviceHashStrategy hashStrategy, int devices) {
+        List<String> deviceIds = new ArrayList<>();
+        for (int i = 0; i < devices; i++) {
+            deviceIds.add(DEVICE_ID_PREFIX + i);
+        }
+        SuspectDeviceStore.Builder builder = SuspectDeviceStore.builder()
+                .expectedInsertions(devices).filterFactory(filterType).hashStrategy(hashStrategy);
+        if (filterType == FilterType.BINARY_FUSE) {
+            return builder.deviceUids(deviceIds).build();
+        }
+        SuspectDeviceStore suspectDeviceStore = builder.build();
+        suspectDeviceStore.addAllSuspectDevices(deviceIds);
+        return suspectDeviceStore;
+    }
+
+    @Test
+    public void whenCheckABatchOfDevices_thenShouldAnswerLikeSingleLookups() {
+        for (FilterType filterType : FilterType.values()) {
+            DeviceHashStrategy hashStrategy = filterType == FilterType.GUAVA_BLOOM
+                    ? DeviceHashStrategy.MURMUR3_128 : DeviceHashStrategy.XXH3_64;
+            SuspectDeviceStore suspectDeviceStore = store(filterType, hashStrategy, 5000);
+            // Not a multiple of the batch size, so the last chunk is partial
+            String[] deviceIds = new String[10007];
+            for (int i = 0; i < deviceIds.length; i++) {
+                deviceIds[i] = DEVICE_ID_PREFIX + (i - 2500);
+            }
+            boolean[] results = new boolean[deviceIds.length];
+            suspectDeviceStore.isSuspectDevices(deviceIds, results);
+            for (int i = 0; i < deviceIds.length; i++) {
+                assertEquals(filterType + " " + deviceIds[i], suspectDeviceStore.isSuspectDevice(deviceIds[i]),
+                        results[i]);
+            }
+        }
+    }
+
+    @Test
+    public void whenCheckASmallBatchOfDevices_thenShouldFindTheSuspectOnes() {
+        SuspectDeviceStore suspectDeviceStore = store(FilterType.BLOCKED_BLOOM, DeviceHashStrategy.WYHASH, 1000);
+        String[] deviceIds = {DEVICE_ID_PREFIX + 1, DEVICE_ID_PREFIX + 999, DEVICE_ID_PREFIX + 500};
+        boolean[] results = new boolean[4];
+        suspectDeviceStore.isSuspectDevices(deviceIds, results);
+        assertEquals(true, results[0] && results[1] && results[2]);
+        assertEquals(false, results[3]);
+
+        suspectDeviceStore.isSuspectDevices(new String[0], new boolean[0]);
+    }
+
+    @Test
+    public void whenCheckABatchWithAShortResultsArray_thenShouldThrowException() {
+        SuspectDeviceStore suspectDeviceStore = store(FilterType.BLOCKED_BLOOM, DeviceHashStrategy.MURMUR3_128, 100);
+        exceptionRule.expect(IllegalArgumentException.class);
+        suspectDeviceStore.isSuspectDevices(new String[] {"a", "b"}, new boolean[1]);
+    }
+}
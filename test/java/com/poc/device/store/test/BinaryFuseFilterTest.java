@@ -0,0 +1,79 @@
+package com.poc.device.store.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.poc.device.store.BinaryFuseFilter;
+import com.poc.device.store.FilterType;
+import com.poc.device.store.SuspectDeviceStore;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/** Unit test for {@link com.poc.device.store.BinaryFuseFilter} */
+public class BinaryFuseFilterTest {
+    private static final String DEVICE_ID_PREFIX = "DEVICE_";
+
+    @Rule
+    public ExpectedException exceptionRule = ExpectedException.none();
+
+    @Test
+    public void whenBuildFromNDevices_thenShouldNotReturnAnyFalseNegativeAndStayBelowFPP() {
+        List<String> devices = new ArrayList<>();
+        for (int i = 0; i < 100000; i++) {
+            devices.add(DEVICE_ID_PREFIX + i);
+        }
+        BinaryFuseFilter filter = BinaryFuseFilter.create(devices, 0.01);
+
+        for (String deviceId : devices) {
+            assertTrue(filter.mightContain(deviceId));
+        }
+        int falsePositives = 0;
+        for (int i = 100000; i < 200000; i++) {
+            if (filter.mightContain(DEVICE_ID_PREFIX + i)) {
+                falsePositives++;
+            }
+        }
+        assertTrue("Measured FPP was " + falsePositives / 100000.0, falsePositives < 500);
+        assertTrue("Bits per device was " + filter.bitSize() / 100000.0, filter.bitSize() < 10 * 100000);
+    }
+
+    @Test
+    public void whenBuildFromDuplicateOrNoDevices_thenShouldStillBuild() {
+        List<String> devices = new ArrayList<>(Collections.nCopies(10, DEVICE_ID_PREFIX + "101"));
+        devices.add(DEVICE_ID_PREFIX + "102");
+        BinaryFuseFilter filter = BinaryFuseFilter.create(devices, 0.01);
+        assertTrue(filter.mightContain(DEVICE_ID_PREFIX + "101"));
+        assertTrue(filter.mightContain(DEVICE_ID_PREFIX + "102"));
+
+        BinaryFuseFilter empty = BinaryFuseFilter.create(Collections.<String>emptyList(), 0.01);
+        assertEquals(BinaryFuseFilter.FPP, empty.expectedFpp(), 0.0);
+    }
+
+    @Test
+    public void whenBuildImmutableStore_thenShouldAnswerFromSnapshot() {
+        List<String> devices = new ArrayList<>();
+        devices.add(DEVICE_ID_PREFIX + "101");
+        devices.add(DEVICE_ID_PREFIX + "102");
+        SuspectDeviceStore suspectDeviceStore = SuspectDeviceStore.builder()
+                .deviceUids(devices).filterFactory(FilterType.BINARY_FUSE).build();
+
+        assertTrue(suspectDeviceStore.isSuspectDevice(DEVICE_ID_PREFIX + "101"));
+        assertTrue(suspectDeviceStore.isSuspectDevice(DEVICE_ID_PREFIX + "102"));
+        assertFalse(suspectDeviceStore.isSuspectDevice("NON_EXISTENT"));
+
+        exceptionRule.expect(UnsupportedOperationException.class);
+        suspectDeviceStore.addSuspectDevice(DEVICE_ID_PREFIX + "103");
+    }
+
+    @Test
+    public void whenRequestFPPBelowFingerprintSize_thenShouldThrowException() {
+        exceptionRule.expect(IllegalArgumentException.class);
+        BinaryFuseFilter.create(Collections.singletonList(DEVICE_ID_PREFIX + "101"), 0.001);
+    }
+}
@@ -0,0 +1,134 @@
+package com.poc.device.store.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.poc.device.store.BlockedBloomFilter;
+import com.poc.device.store.FilterType;
+import com.poc.device.store.SuspectDeviceStore;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+
+/** Unit test for {@link com.poc.device.store.BlockedBloomFilter} */
+public class BlockedBloomFilterTest {
+    private static final String DEVICE_ID_PREFIX = "DEVICE_";
+
+    @Rule
+    public ExpectedException exceptionRule = ExpectedException.none();
+
+    @Test
+    public void whenAddNDevicesToBlockedFilter_thenShouldNotReturnAnyFalseNegative() {
+        BlockedBloomFilter filter = BlockedBloomFilter.create(100000, 0.01);
+        for (int i = 0; i < 100000; i++) {
+            filter.put(DEVICE_ID_PREFIX + i);
+        }
+        for (int i = 0; i < 100000; i++) {
+            assertTrue(filter.mightContain(DEVICE_ID_PREFIX + i));
+        }
+    }
+
+    @Test
+    public void whenFillBlockedFilterToExpectedInsertions_thenMeasuredFPPStaysNearOnePercent() {
+        BlockedBloomFilter filter = BlockedBloomFilter.create(100000, 0.01);
+        for (int i = 0; i < 100000; i++) {
+            filter.put(DEVICE_ID_PREFIX + i);
+        }
+        int falsePositives = 0;
+        for (int i = 100000; i < 200000; i++) {
+            if (filter.mightContain(DEVICE_ID_PREFIX + i)) {
+                falsePositives++;
+            }
+        }
+        assertTrue("Measured FPP was " + falsePositives / 100000.0, falsePositives < 1200);
+        assertEquals(0.01, filter.expectedFpp(), 0.002);
+    }
+
+    @Test
+    public void whenBuildStoreWithBlockedFilter_thenShouldAddAndReturnTrue() {
+        SuspectDeviceStore suspectDeviceStore = SuspectDeviceStore.builder()
+                .expectedInsertions(1000).filterFactory(FilterType.BLOCKED_BLOOM).build();
+        String deviceId = DEVICE_ID_PREFIX + "101";
+        suspectDeviceStore.addSuspectDevice(deviceId);
+
+        assertEquals(BlockedBloomFilter.create(1000, 0.01).bitSize(), suspectDeviceStore.suspectDeviceStoreBitSize());
+        assertTrue(suspectDeviceStore.isSuspectDevice(deviceId));
+        assertFalse(suspectDeviceStore.isSuspectDevice("NON_EXISTENT"));
+    }
+
+    @Test
+    public void whenWriteAndReadBlockedFilter_thenShouldContainSameDevices() throws IOException {
+        BlockedBloomFilter filter = BlockedBloomFilter.create(1000, 0.01);
+        for (int i = 0; i < 1000; i++) {
+            filter.put(DEVICE_ID_PREFIX + i);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        filter.writeTo(out);
+        BlockedBloomFilter copy = BlockedBloomFilter.readFrom(new ByteArrayInputStream(out.toByteArray()));
+
+        assertEquals(filter.bitSize(), copy.bitSize());
+        for (int i = 0; i < 2000; i++) {
+            assertEquals(filter.mightContain(DEVICE_ID_PREFIX + i), copy.mightContain(DEVICE_ID_PREFIX + i));
+        }
+    }
+
+    @Test
+    public void whenCreateWithInvalidFPP_thenShouldThrowException() {
+        exceptionRule.expect(IllegalArgumentException.class);
+        BlockedBloomFilter.create(1000, 1.0);
+    }
+
+    @Test
+    public void whenAllocateBlockedFilterOffHeap_thenShouldAnswerLikeTheHeapFilter() throws IOException {
+        BlockedBloomFilter heapFilter = BlockedBloomFilter.create(100000, 0.01);
+        BlockedBloomFilter offHeapFilter = BlockedBloomFilter.createOffHeap(100000, 0.01);
+        assertFalse(heapFilter.isOffHeap());
+        assertTrue(offHeapFilter.isOffHeap());
+        for (int i = 0; i < 100000; i++) {
+            assertEquals(heapFilter.put(DEVICE_ID_PREFIX + i), offHeapFilter.put(DEVICE_ID_PREFIX + i));
+        }
+        for (int i = 0; i < 200000; i++) {
+            String deviceId = DEVICE_ID_PREFIX + i;
+            assertEquals(heapFilter.mightContain(deviceId), offHeapFilter.mightContain(deviceId));
+        }
+        assertEquals(heapFilter.expectedFpp(), offHeapFilter.expectedFpp(), 0.0);
+
+        ByteArrayOutputStream heapBytes = new ByteArrayOutputStream();
+        heapFilter.writeTo(heapBytes);
+        ByteArrayOutputStream offHeapBytes = new ByteArrayOutputStream();
+        offHeapFilter.writeTo(offHeapBytes);
+        assertTrue(Arrays.equals(heapBytes.toByteArray(), offHeapBytes.toByteArray()));
+    }
+
+    @Test
+    public void whenSerializeOffHeapStore_thenShouldReadItBackOnTheHeap() throws Exception {
+        SuspectDeviceStore suspectDeviceStore = SuspectDeviceStore.builder()
+                .expectedInsertions(1000).filterFactory(FilterType.BLOCKED_BLOOM).offHeap(true).preTouch(true).build();
+        suspectDeviceStore.addSuspectDevice(DEVICE_ID_PREFIX + "101");
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(suspectDeviceStore);
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            SuspectDeviceStore copy = (SuspectDeviceStore) in.readObject();
+            assertTrue(copy.isSuspectDevice(DEVICE_ID_PREFIX + "101"));
+            assertEquals(suspectDeviceStore.suspectDeviceStoreBitSize(), copy.suspectDeviceStoreBitSize());
+        }
+    }
+
+    @Test
+    public void whenBuildOffHeapStoreWithGuavaFilter_thenShouldThrowException() {
+        exceptionRule.expect(UnsupportedOperationException.class);
+        SuspectDeviceStore.builder()
+                .expectedInsertions(1000).filterFactory(FilterType.GUAVA_BLOOM).offHeap(true).build();
+    }
+}
@@ -0,0 +1,91 @@
+package com.poc.device.store.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.poc.device.store.CountMinSketch;
+import com.poc.device.store.DeviceHashStrategy;
+import com.poc.device.store.FilterType;
+import com.poc.device.store.SuspectDeviceStore;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+/** Unit test for the report counts of {@link com.poc.device.store.SuspectDeviceStore} */
+public class CountMinSketchTest {
+    private static final String DEVICE_ID_PREFIX = "DEVICE_";
+    private static final int DEVICES = 50000;
+
+    @Rule
+    public ExpectedException exceptionRule = ExpectedException.none();
+
+    private static SuspectDeviceStore store(FilterType filterType) {
+        return SuspectDeviceStore.builder()
+                .expectedInsertions(DEVICES)
+                .filterFactory(filterType)
+                .countReports(1e-4, 0.01)
+                .build();
+    }
+
+    @Test
+    public void whenReportDevicesSeveralTimes_thenShouldEstimateTheirCounts() {
+        for (FilterType filterType : new FilterType[] {FilterType.GUAVA_BLOOM, FilterType.BLOCKED_BLOOM,
+                FilterType.FINGERPRINT_SET}) {
+            SuspectDeviceStore suspectDeviceStore = store(filterType);
+            long totalReports = 0;
+            for (int i = 0; i < DEVICES; i++) {
+                for (int report = 0; report <= i % 5; report++) {
+                    suspectDeviceStore.reportSuspectDevice(DEVICE_ID_PREFIX + i);
+                    totalReports++;
+                }
+            }
+            int exact = 0;
+            for (int i = 0; i < DEVICES; i++) {
+                int estimate = suspectDeviceStore.estimatedReportCount(DEVICE_ID_PREFIX + i);
+                assertTrue(filterType + " " + i, estimate >= i % 5 + 1);
+                assertTrue(filterType + " " + i, estimate <= i % 5 + 1 + 1e-4 * totalReports);
+                if (estimate == i % 5 + 1) {
+                    exact++;
+                }
+                assertTrue(suspectDeviceStore.isSuspectDevice(DEVICE_ID_PREFIX + i));
+            }
+            assertTrue(filterType + " exact estimates " + exact, exact > DEVICES * 0.75);
+            assertEquals(0, suspectDeviceStore.estimatedReportCount("NEVER_REPORTED"));
+        }
+    }
+
+    @Test
+    public void whenReportNumericDevices_thenShouldCountThemApartFromStrings() {
+        SuspectDeviceStore suspectDeviceStore = store(FilterType.BLOCKED_BLOOM);
+        assertEquals(1, suspectDeviceStore.reportSuspectDevice(356938035643809L));
+        assertEquals(2, suspectDeviceStore.reportSuspectDevice(356938035643809L));
+        assertEquals(1, suspectDeviceStore.reportSuspectDevice("356938035643809"));
+        assertEquals(2, suspectDeviceStore.estimatedReportCount(356938035643809L));
+        assertTrue(suspectDeviceStore.isSuspectDevice(356938035643809L));
+    }
+
+    @Test
+    public void whenCreateASketch_thenShouldSizeItFromEpsilonAndDelta() {
+        CountMinSketch sketch = CountMinSketch.create(0.001, 0.01, DeviceHashStrategy.WYHASH);
+        assertEquals(2719, sketch.width());
+        assertEquals(5, sketch.depth());
+        assertEquals(2719L * 5 * Integer.SIZE, sketch.bitSize());
+        assertEquals(1, sketch.add(DEVICE_ID_PREFIX + 1));
+        assertEquals(1, sketch.estimate(DEVICE_ID_PREFIX + 1));
+        assertEquals(1, sketch.totalReports());
+    }
+
+    @Test
+    public void whenReportToAStoreThatDoesNotCount_thenShouldThrowException() {
+        exceptionRule.expect(UnsupportedOperationException.class);
+        exceptionRule.expectMessage("does not count reports");
+        SuspectDeviceStore.builder().expectedInsertions(1000).build().reportSuspectDevice(DEVICE_ID_PREFIX + 1);
+    }
+
+    @Test
+    public void whenReportAnEmptyDeviceId_thenShouldThrowException() {
+        exceptionRule.expect(IllegalArgumentException.class);
+        exceptionRule.expectMessage("Device Id cannot be null");
+        store(FilterType.BLOCKED_BLOOM).reportSuspectDevice("");
+    }
+}
@@ -0,0 +1,63 @@
+package com.poc.device.store.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.poc.device.store.CountingBloomFilter;
+import com.poc.device.store.FilterType;
+import com.poc.device.store.SuspectDeviceStore;
+import org.junit.Test;
+
+/** Unit test for {@link com.poc.device.store.CountingBloomFilter} */
+public class CountingBloomFilterTest {
+    private static final String DEVICE_ID_PREFIX = "DEVICE_";
+
+    @Test
+    public void whenFillToExpectedInsertionsAndRemoveHalf_thenShouldKeepTheOtherHalf() {
+        CountingBloomFilter filter = CountingBloomFilter.create(100000, 0.01);
+        for (int i = 0; i < 100000; i++) {
+            filter.put(DEVICE_ID_PREFIX + i);
+        }
+        assertEquals(0.01, filter.expectedFpp(), 0.002);
+
+        for (int i = 0; i < 100000; i += 2) {
+            assertTrue(filter.remove(DEVICE_ID_PREFIX + i));
+        }
+        int stillFlagged = 0;
+        for (int i = 0; i < 100000; i++) {
+            if (i % 2 == 1) {
+                assertTrue(filter.mightContain(DEVICE_ID_PREFIX + i));
+            } else if (filter.mightContain(DEVICE_ID_PREFIX + i)) {
+                stillFlagged++;
+            }
+        }
+        // Half the devices are left, so removed devices should be flagged well below the full FPP
+        assertTrue("Removed devices still flagged: " + stillFlagged, stillFlagged < 500);
+    }
+
+    @Test
+    public void whenPutSameDeviceTwice_thenShouldNeedTwoRemoves() {
+        CountingBloomFilter filter = CountingBloomFilter.create(1000, 0.01);
+        assertTrue(filter.put(DEVICE_ID_PREFIX + "101"));
+        assertFalse(filter.put(DEVICE_ID_PREFIX + "101"));
+
+        assertTrue(filter.remove(DEVICE_ID_PREFIX + "101"));
+        assertTrue(filter.mightContain(DEVICE_ID_PREFIX + "101"));
+        assertTrue(filter.remove(DEVICE_ID_PREFIX + "101"));
+        assertFalse(filter.mightContain(DEVICE_ID_PREFIX + "101"));
+        assertFalse(filter.remove(DEVICE_ID_PREFIX + "101"));
+    }
+
+    @Test
+    public void whenBuildCountingStore_thenShouldUseFourTimesTheBitsOfABloomFilter() {
+        SuspectDeviceStore suspectDeviceStore = SuspectDeviceStore.builder()
+                .expectedInsertions(100000).filterFactory(FilterType.COUNTING_BLOOM).build();
+        long bloomBits = suspectDeviceStore.optimalNumOfBits(100000);
+        assertEquals(4.0, (double) suspectDeviceStore.suspectDeviceStoreBitSize() / bloomBits, 0.01);
+
+        suspectDeviceStore.addSuspectDevice(DEVICE_ID_PREFIX + "101");
+        assertTrue(suspectDeviceStore.removeSuspectDevice(DEVICE_ID_PREFIX + "101"));
+        assertFalse(suspectDeviceStore.isSuspectDevice(DEVICE_ID_PREFIX + "101"));
+    }
+}
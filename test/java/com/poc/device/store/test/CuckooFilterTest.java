@@ -0,0 +1,99 @@
+package com.poc.device.store.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.poc.device.store.CuckooFilter;
+import com.poc.device.store.FilterType;
+import com.poc.device.store.SuspectDeviceStore;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+/** Unit test for {@link com.poc.device.store.CuckooFilter} */
+public class CuckooFilterTest {
+    private static final String DEVICE_ID_PREFIX = "DEVICE_";
+
+    @Rule
+    public ExpectedException exceptionRule = ExpectedException.none();
+
+    @Test
+    public void whenFillToExpectedInsertionsAndRemoveHalf_thenShouldKeepTheOtherHalf() {
+        CuckooFilter filter = CuckooFilter.create(100000, 0.01);
+        for (int i = 0; i < 100000; i++) {
+            filter.put(DEVICE_ID_PREFIX + i);
+        }
+        for (int i = 0; i < 100000; i += 2) {
+            assertTrue(DEVICE_ID_PREFIX + i, filter.remove(DEVICE_ID_PREFIX + i));
+        }
+
+        // A device that shares its fingerprint and buckets with a removed one keeps its own entry
+        int lost = 0;
+        int stillFlagged = 0;
+        for (int i = 0; i < 100000; i++) {
+            boolean flagged = filter.mightContain(DEVICE_ID_PREFIX + i);
+            if (i % 2 == 1 && !flagged) {
+                lost++;
+            } else if (i % 2 == 0 && flagged) {
+                stillFlagged++;
+            }
+        }
+        assertEquals(0, lost);
+        assertTrue("Removed devices still flagged: " + stillFlagged, stillFlagged < 50);
+    }
+
+    @Test
+    public void whenPutSameDeviceTwice_thenShouldTakeTwoRemovesToClearIt() {
+        CuckooFilter filter = CuckooFilter.create(1000, 0.01);
+        assertTrue(filter.put(DEVICE_ID_PREFIX + "101"));
+        assertTrue(filter.put(DEVICE_ID_PREFIX + "101"));
+        assertEquals(2, filter.size());
+
+        assertTrue(filter.remove(DEVICE_ID_PREFIX + "101"));
+        assertTrue(filter.mightContain(DEVICE_ID_PREFIX + "101"));
+        assertTrue(filter.remove(DEVICE_ID_PREFIX + "101"));
+        assertFalse(filter.mightContain(DEVICE_ID_PREFIX + "101"));
+        assertFalse(filter.remove(DEVICE_ID_PREFIX + "101"));
+    }
+
+    @Test
+    public void whenPutSameDeviceMoreThanTwoBucketsHold_thenShouldNotRecordFurtherPuts() {
+        CuckooFilter filter = CuckooFilter.create(1000, 0.01);
+        for (int i = 0; i < 8; i++) {
+            assertTrue(filter.put(DEVICE_ID_PREFIX + "101"));
+        }
+        assertFalse(filter.put(DEVICE_ID_PREFIX + "101"));
+        assertEquals(8, filter.size());
+        assertTrue(filter.put(DEVICE_ID_PREFIX + "102"));
+    }
+
+    @Test
+    public void whenPutFarMoreThanExpectedDevices_thenShouldThrowException() {
+        CuckooFilter filter = CuckooFilter.create(1000, 0.01);
+        exceptionRule.expect(IllegalStateException.class);
+        for (int i = 0; i < 2000; i++) {
+            filter.put(DEVICE_ID_PREFIX + i);
+        }
+    }
+
+    @Test
+    public void whenRemoveFromCuckooStore_thenDeviceShouldNoLongerBeSuspect() {
+        SuspectDeviceStore suspectDeviceStore = SuspectDeviceStore.builder()
+                .expectedInsertions(1000).filterFactory(FilterType.CUCKOO).build();
+        String deviceId = DEVICE_ID_PREFIX + "101";
+        suspectDeviceStore.addSuspectDevice(deviceId);
+        assertTrue(suspectDeviceStore.isSuspectDevice(deviceId));
+
+        assertTrue(suspectDeviceStore.removeSuspectDevice(deviceId));
+        assertFalse(suspectDeviceStore.isSuspectDevice(deviceId));
+    }
+
+    @Test
+    public void whenRemoveFromGuavaStore_thenShouldThrowException() {
+        SuspectDeviceStore suspectDeviceStore = SuspectDeviceStore.builder()
+                .expectedInsertions(1000).filterFactory(FilterType.GUAVA_BLOOM).build();
+        exceptionRule.expect(UnsupportedOperationException.class);
+        suspectDeviceStore.removeSuspectDevice(DEVICE_ID_PREFIX + "101");
+    }
+}
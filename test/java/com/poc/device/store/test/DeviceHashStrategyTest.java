@@ -0,0 +1,163 @@
+package com.poc.device.store.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.hash.Hashing;
+import com.poc.device.store.DeviceFunnel;
+import com.poc.device.store.DeviceHashStrategy;
+import com.poc.device.store.FilterType;
+import com.poc.device.store.SuspectDeviceStore;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/** Unit test for {@link com.poc.device.store.DeviceHashStrategy} */
+public class DeviceHashStrategyTest {
+    private static final String DEVICE_ID_PREFIX = "DEVICE_";
+    private static final String LONG_INPUT = repeat("0123456789abcdef", 16) + "0123456789";
+
+    @Rule
+    public ExpectedException exceptionRule = ExpectedException.none();
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static String repeat(String s, int count) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            sb.append(s);
+        }
+        return sb.toString();
+    }
+
+    @Test
+    public void whenHashWithXxh3_thenShouldMatchTheReferenceImplementation() {
+        assertEquals(3244421341483603138L, DeviceHashStrategy.XXH3_64.hash64(""));
+        assertEquals(-1106836191407913819L, DeviceHashStrategy.XXH3_64.hash64("device-1"));
+        assertEquals(-3520138655119649421L,
+                DeviceHashStrategy.XXH3_64.hash64("3f2504e0-4f89-11d3-9a0c-0305e82c3301"));
+        assertEquals(5901442396107188037L, DeviceHashStrategy.XXH3_64.hash64("d\u00e9vice-\u00fc"));
+        assertEquals(7192540453660520880L, DeviceHashStrategy.XXH3_64.hash64(LONG_INPUT));
+    }
+
+    @Test
+    public void whenHashWithWyHash_thenShouldMatchTheReferenceImplementation() {
+        assertEquals(0L, DeviceHashStrategy.WYHASH.hash64(""));
+        assertEquals(-7361548976181768607L, DeviceHashStrategy.WYHASH.hash64("device-1"));
+        assertEquals(-7369310969839250170L,
+                DeviceHashStrategy.WYHASH.hash64("3f2504e0-4f89-11d3-9a0c-0305e82c3301"));
+        assertEquals(-3364650310173303911L, DeviceHashStrategy.WYHASH.hash64("d\u00e9vice-\u00fc"));
+        assertEquals(-3809804980784172959L, DeviceHashStrategy.WYHASH.hash64(LONG_INPUT));
+    }
+
+    @Test
+    public void whenHashWithMurmur3_thenShouldMatchGuava() {
+        Random random = new Random(7);
+        for (int i = 0; i < 10000; i++) {
+            char[] chars = new char[random.nextInt(48)];
+            for (int j = 0; j < chars.length; j++) {
+                chars[j] = (char) (random.nextInt(8) == 0 ? 0x80 + random.nextInt(0x700) : random.nextInt(0x80));
+            }
+            String deviceId = new String(chars);
+            assertEquals(Hashing.murmur3_128().hashObject(deviceId, DeviceFunnel.INSTANCE).asLong(),
+                    DeviceHashStrategy.MURMUR3_128.hash64(deviceId));
+        }
+    }
+
+    @Test
+    public void whenHashAStringOrItsBytes_thenShouldBeEqual() {
+        Random random = new Random(11);
+        for (DeviceHashStrategy strategy : DeviceHashStrategy.values()) {
+            for (int length = 0; length < 300; length++) {
+                char[] chars = new char[length];
+                for (int j = 0; j < length; j++) {
+                    chars[j] = (char) (random.nextInt(16) == 0 ? 0x80 + random.nextInt(0x700) : random.nextInt(0x80));
+                }
+                String deviceId = new String(chars);
+                byte[] bytes = ("xx" + deviceId).getBytes(StandardCharsets.UTF_8);
+                assertEquals(strategy + " of " + length + " chars", strategy.hash64(deviceId),
+                        strategy.hash64(bytes, 2, bytes.length - 2));
+            }
+        }
+    }
+
+    @Test
+    public void whenSnapshotAStoreWithAHashStrategy_thenShouldReadItBackWithTheSameStrategy() throws IOException {
+        for (FilterType filterType : new FilterType[] {FilterType.BLOCKED_BLOOM, FilterType.CUCKOO,
+                FilterType.COUNTING_BLOOM, FilterType.SCALABLE_BLOOM, FilterType.FINGERPRINT_SET}) {
+            SuspectDeviceStore suspectDeviceStore = SuspectDeviceStore.builder()
+                    .expectedInsertions(10000)
+                    .filterFactory(filterType)
+                    .hashStrategy(DeviceHashStrategy.WYHASH)
+                    .build();
+            for (int i = 0; i < 10000; i++) {
+                suspectDeviceStore.addSuspectDevice(DEVICE_ID_PREFIX + i);
+            }
+            Path snapshot = folder.getRoot().toPath().resolve(filterType + ".snapshot");
+            suspectDeviceStore.writeSnapshot(snapshot);
+
+            SuspectDeviceStore read = SuspectDeviceStore.readSnapshot(snapshot);
+            for (int i = 0; i < 10000; i++) {
+                assertTrue(read.isSuspectDevice(DEVICE_ID_PREFIX + i));
+            }
+            for (int i = 10000; i < 20000; i++) {
+                assertEquals(suspectDeviceStore.isSuspectDevice(DEVICE_ID_PREFIX + i),
+                        read.isSuspectDevice(DEVICE_ID_PREFIX + i));
+            }
+        }
+    }
+
+    @Test
+    public void whenMapASnapshotWithAHashStrategy_thenShouldFindItsDevices() throws IOException {
+        SuspectDeviceStore suspectDeviceStore = SuspectDeviceStore.builder()
+                .expectedInsertions(10000)
+                .filterFactory(FilterType.BLOCKED_BLOOM)
+                .hashStrategy(DeviceHashStrategy.XXH3_64)
+                .build();
+        for (int i = 0; i < 10000; i++) {
+            suspectDeviceStore.addSuspectDevice(DEVICE_ID_PREFIX + i);
+        }
+        Path snapshot = folder.getRoot().toPath().resolve("suspect-devices.snapshot");
+        suspectDeviceStore.writeSnapshot(snapshot);
+
+        SuspectDeviceStore mapped = SuspectDeviceStore.mapSnapshot(snapshot, false);
+        for (int i = 0; i < 10000; i++) {
+            assertTrue(mapped.isSuspectDevice(DEVICE_ID_PREFIX + i));
+        }
+    }
+
+    @Test
+    public void whenBuildABinaryFuseStoreWithAHashStrategy_thenShouldFindItsDevices() {
+        List<String> devices = new ArrayList<>();
+        for (int i = 0; i < 10000; i++) {
+            devices.add(DEVICE_ID_PREFIX + i);
+        }
+        SuspectDeviceStore suspectDeviceStore = SuspectDeviceStore.builder()
+                .filterFactory(FilterType.BINARY_FUSE)
+                .deviceUids(devices)
+                .hashStrategy(DeviceHashStrategy.XXH3_64)
+                .build();
+        for (String device : devices) {
+            assertTrue(suspectDeviceStore.isSuspectDevice(device));
+        }
+    }
+
+    @Test
+    public void whenBuildAGuavaStoreWithAnotherHashStrategy_thenShouldThrowException() {
+        exceptionRule.expect(UnsupportedOperationException.class);
+        SuspectDeviceStore.builder()
+                .expectedInsertions(1000)
+                .filterFactory(FilterType.GUAVA_BLOOM)
+                .hashStrategy(DeviceHashStrategy.XXH3_64)
+                .build();
+    }
+}
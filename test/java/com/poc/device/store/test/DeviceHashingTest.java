@@ -0,0 +1,65 @@
+package com.poc.device.store.test;
+
+import static org.junit.Assert.assertEquals;
+
+import com.google.common.hash.Hashing;
+import com.poc.device.store.DeviceFunnel;
+import com.poc.device.store.DeviceHashStrategy;
+import org.junit.Test;
+
+import java.util.Random;
+
+/** Unit test for the Murmur3_128 hashing of device ids, which must stay equal to Guava's */
+public class DeviceHashingTest {
+    private static final String[] DEVICE_IDS = {
+            "",
+            "a",
+            "DEVICE_101",
+            "3f2504e0-4f89-11d3-9a0c-0305e82c3301",
+            "d\u00e9vice-\u00fc\u00df",
+            "\u8bbe\u5907-\u7f16\u53f7-0001",
+            "device-\ud83d\udcf1",
+            "\ud83d\udcf1\ud83d\udcf1\ud83d\udcf1\ud83d\udcf1",
+            "unpaired-high-\ud83d",
+            "\udcf1-unpaired-low",
+            "\udcf1\ud83d",
+            "0123456789abcdef",
+            "0123456789abcdef\u00e9",
+    };
+
+    private static long guava(String deviceId) {
+        return Hashing.murmur3_128().hashObject(deviceId, DeviceFunnel.INSTANCE).asLong();
+    }
+
+    @Test
+    public void whenHashNonAsciiSurrogateAndEmptyIds_thenShouldMatchGuava() {
+        for (String deviceId : DEVICE_IDS) {
+            assertEquals(deviceId, guava(deviceId), DeviceHashStrategy.MURMUR3_128.hash64(deviceId));
+        }
+    }
+
+    @Test
+    public void whenHashRandomIdsOfEveryLength_thenShouldMatchGuava() {
+        Random random = new Random(3);
+        for (int i = 0; i < 20000; i++) {
+            char[] chars = new char[random.nextInt(40)];
+            for (int j = 0; j < chars.length; j++) {
+                switch (random.nextInt(6)) {
+                    case 0:
+                        chars[j] = (char) (0x80 + random.nextInt(0x780));
+                        break;
+                    case 1:
+                        chars[j] = (char) (0x800 + random.nextInt(0xD000));
+                        break;
+                    case 2:
+                        chars[j] = (char) (Character.MIN_SURROGATE + random.nextInt(0x800));
+                        break;
+                    default:
+                        chars[j] = (char) random.nextInt(0x80);
+                }
+            }
+            String deviceId = new String(chars);
+            assertEquals(guava(deviceId), DeviceHashStrategy.MURMUR3_128.hash64(deviceId));
+        }
+    }
+}
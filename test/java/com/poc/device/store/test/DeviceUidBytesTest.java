@@ -0,0 +1,121 @@
+package com.poc.device.store.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.poc.device.store.DeviceHashStrategy;
+import com.poc.device.store.FilterType;
+import com.poc.device.store.SuspectDeviceStore;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Unit test for the byte[], {@link ByteBuffer} and {@link CharSequence} overloads of
+ * {@link com.poc.device.store.SuspectDeviceStore}
+ */
+public class DeviceUidBytesTest {
+    private static final String DEVICE_ID_PREFIX = "DEVICE_";
+
+    @Rule
+    public ExpectedException exceptionRule = ExpectedException.none();
+
+    private static List<String> deviceIds(int count) {
+        Random random = new Random(17);
+        List<String> deviceIds = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            // Every eighth device id has non-ASCII chars, whose UTF-8 bytes differ from the chars
+            deviceIds.add(i % 8 == 0 ? "d\u00e9vice-\u4e2d-" + i : DEVICE_ID_PREFIX + random.nextInt());
+        }
+        return deviceIds;
+    }
+
+    private static SuspectDeviceStore store(FilterType filterType, List<String> deviceIds) {
+        SuspectDeviceStore.Builder builder = SuspectDeviceStore.builder()
+                .expectedInsertions(deviceIds.size()).filterFactory(filterType);
+        if (filterType == FilterType.BINARY_FUSE) {
+            return builder.deviceUids(deviceIds).build();
+        }
+        SuspectDeviceStore suspectDeviceStore = builder.build();
+        suspectDeviceStore.addAllSuspectDevices(deviceIds.subList(0, deviceIds.size() / 2));
+        return suspectDeviceStore;
+    }
+
+    @Test
+    public void whenCheckTheBytesOfADeviceId_thenShouldAnswerLikeItsString() {
+        List<String> deviceIds = deviceIds(20000);
+        for (FilterType filterType : FilterType.values()) {
+            SuspectDeviceStore suspectDeviceStore = store(filterType, deviceIds);
+            for (String deviceId : deviceIds) {
+                boolean expected = suspectDeviceStore.isSuspectDevice(deviceId);
+                byte[] bytes = ("xx" + deviceId).getBytes(StandardCharsets.UTF_8);
+                ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length).put(bytes);
+                direct.position(2);
+                String message = filterType + " " + deviceId;
+                assertEquals(message, expected, suspectDeviceStore.isSuspectDevice(bytes, 2, bytes.length - 2));
+                assertEquals(message, expected, suspectDeviceStore.isSuspectDevice(
+                        ByteBuffer.wrap(bytes, 2, bytes.length - 2)));
+                assertEquals(message, expected, suspectDeviceStore.isSuspectDevice(direct));
+                assertEquals(message, expected, suspectDeviceStore.isSuspectDevice(new StringBuilder(deviceId)));
+                assertEquals(2, direct.position());
+            }
+        }
+    }
+
+    @Test
+    public void whenAddTheBytesOfADeviceId_thenShouldFindItsString() {
+        List<String> deviceIds = deviceIds(3000);
+        for (FilterType filterType : new FilterType[] {FilterType.CUCKOO, FilterType.GUAVA_BLOOM}) {
+            SuspectDeviceStore suspectDeviceStore = SuspectDeviceStore.builder()
+                    .expectedInsertions(deviceIds.size()).filterFactory(filterType).build();
+            for (int i = 0; i < deviceIds.size(); i++) {
+                String deviceId = deviceIds.get(i);
+                byte[] bytes = deviceId.getBytes(StandardCharsets.UTF_8);
+                if (i % 3 == 0) {
+                    suspectDeviceStore.addSuspectDevice(bytes, 0, bytes.length);
+                } else if (i % 3 == 1) {
+                    suspectDeviceStore.addSuspectDevice(ByteBuffer.allocateDirect(bytes.length).put(bytes).flip());
+                } else {
+                    suspectDeviceStore.addSuspectDevice(new StringBuilder(deviceId));
+                }
+            }
+            for (String deviceId : deviceIds) {
+                assertTrue(filterType + " " + deviceId, suspectDeviceStore.isSuspectDevice(deviceId));
+            }
+        }
+    }
+
+    @Test
+    public void whenHashTheFormsOfADeviceId_thenShouldBeEqual() {
+        Random random = new Random(23);
+        for (DeviceHashStrategy strategy : DeviceHashStrategy.values()) {
+            for (int length = 1; length < 300; length++) {
+                char[] chars = new char[length];
+                for (int j = 0; j < length; j++) {
+                    chars[j] = (char) (random.nextInt(16) == 0 ? 0x80 + random.nextInt(0x700) : random.nextInt(0x80));
+                }
+                String deviceId = new String(chars);
+                byte[] bytes = deviceId.getBytes(StandardCharsets.UTF_8);
+                long expected = strategy.hash64(deviceId);
+                assertEquals(expected, strategy.hash64(new StringBuilder(deviceId)));
+                assertEquals(expected, strategy.hash64(ByteBuffer.wrap(bytes)));
+                assertEquals(expected, strategy.hash64(ByteBuffer.allocateDirect(bytes.length).put(bytes).flip()));
+            }
+        }
+    }
+
+    @Test
+    public void whenAddAnEmptyBuffer_thenShouldThrowException() {
+        SuspectDeviceStore suspectDeviceStore = SuspectDeviceStore.builder()
+                .expectedInsertions(1000).filterFactory(FilterType.BLOCKED_BLOOM).build();
+        exceptionRule.expect(IllegalArgumentException.class);
+        exceptionRule.expectMessage("Device Id cannot be null");
+        suspectDeviceStore.addSuspectDevice(ByteBuffer.allocate(0));
+    }
+}
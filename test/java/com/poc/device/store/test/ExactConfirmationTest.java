@@ -0,0 +1,135 @@
+package com.poc.device.store.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.poc.device.store.FilterType;
+import com.poc.device.store.SuspectDeviceStore;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/** Unit test for the exact confirmation of {@link com.poc.device.store.SuspectDeviceStore} */
+public class ExactConfirmationTest {
+    private static final String DEVICE_ID_PREFIX = "DEVICE_";
+    private static final int DEVICES = 50000;
+
+    @Rule
+    public ExpectedException exceptionRule = ExpectedException.none();
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static List<String> deviceIds(int from, int to) {
+        List<String> deviceIds = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            deviceIds.add(DEVICE_ID_PREFIX + i);
+        }
+        return deviceIds;
+    }
+
+    private static SuspectDeviceStore store(FilterType filterType, boolean exactConfirmation) {
+        // A 10% FPP, so that the filters answer thousands of false positives
+        SuspectDeviceStore.Builder builder = SuspectDeviceStore.builder()
+                .expectedInsertions(DEVICES)
+                .maximumErrorPercentage(filterType == FilterType.CUCKOO ? 0.01 : 0.1)
+                .filterFactory(filterType)
+                .exactConfirmation(exactConfirmation);
+        if (filterType == FilterType.BINARY_FUSE) {
+            return builder.deviceUids(deviceIds(0, DEVICES)).build();
+        }
+        SuspectDeviceStore suspectDeviceStore = builder.build();
+        suspectDeviceStore.addAllSuspectDevices(deviceIds(0, DEVICES));
+        return suspectDeviceStore;
+    }
+
+    private static int falsePositives(SuspectDeviceStore suspectDeviceStore) {
+        int falsePositives = 0;
+        for (int i = DEVICES; i < 5 * DEVICES; i++) {
+            if (suspectDeviceStore.isSuspectDevice(DEVICE_ID_PREFIX + i)) {
+                falsePositives++;
+            }
+        }
+        return falsePositives;
+    }
+
+    @Test
+    public void whenConfirmExactly_thenShouldFindEveryDeviceWithoutFalsePositives() {
+        for (FilterType filterType : FilterType.values()) {
+            SuspectDeviceStore unconfirmed = store(filterType, false);
+            SuspectDeviceStore confirmed = store(filterType, true);
+            for (String deviceId : deviceIds(0, DEVICES)) {
+                assertTrue(filterType + " " + deviceId, confirmed.isSuspectDevice(deviceId));
+            }
+            // A fingerprint set is exact already
+            assertTrue(filterType.toString(),
+                    filterType == FilterType.FINGERPRINT_SET || falsePositives(unconfirmed) > 0);
+            assertEquals(filterType.toString(), 0, falsePositives(confirmed));
+            assertTrue(confirmed.suspectDeviceStoreBitSize() > unconfirmed.suspectDeviceStoreBitSize());
+        }
+    }
+
+    @Test
+    public void whenCheckABatchExactly_thenShouldAnswerLikeSingleLookups() {
+        SuspectDeviceStore confirmed = store(FilterType.BLOCKED_BLOOM, true);
+        String[] deviceIds = deviceIds(0, 2 * DEVICES).toArray(new String[0]);
+        boolean[] results = new boolean[deviceIds.length];
+        confirmed.isSuspectDevices(deviceIds, results);
+        for (int i = 0; i < deviceIds.length; i++) {
+            assertEquals(i < DEVICES, results[i]);
+        }
+    }
+
+    @Test
+    public void whenLoadInParallelOffHeapWithConfirmation_thenShouldFindEveryDevice() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            SuspectDeviceStore confirmed = SuspectDeviceStore.builder()
+                    .expectedInsertions(DEVICES)
+                    .maximumErrorPercentage(0.1)
+                    .filterFactory(FilterType.BLOCKED_BLOOM)
+                    .offHeap(true)
+                    .exactConfirmation(true)
+                    .build();
+            assertEquals(4, confirmed.addAllSuspectDevices(deviceIds(0, DEVICES), pool).threads());
+            for (String deviceId : deviceIds(0, DEVICES)) {
+                assertTrue(confirmed.isSuspectDevice(deviceId));
+            }
+            assertEquals(0, falsePositives(confirmed));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void whenAddMoreDevicesThanTheSetHolds_thenShouldThrowException() {
+        SuspectDeviceStore confirmed = SuspectDeviceStore.builder()
+                .expectedInsertions(100)
+                .filterFactory(FilterType.BLOCKED_BLOOM)
+                .exactConfirmation(true)
+                .build();
+        exceptionRule.expect(IllegalStateException.class);
+        exceptionRule.expectMessage("Fingerprint set is full");
+        confirmed.addAllSuspectDevices(deviceIds(0, 1000));
+    }
+
+    @Test
+    public void whenRemoveFromAConfirmedStore_thenShouldThrowException() {
+        SuspectDeviceStore confirmed = store(FilterType.CUCKOO, true);
+        exceptionRule.expect(UnsupportedOperationException.class);
+        confirmed.removeSuspectDevice(DEVICE_ID_PREFIX + 1);
+    }
+
+    @Test
+    public void whenSnapshotAConfirmedStore_thenShouldThrowException() throws IOException {
+        SuspectDeviceStore confirmed = store(FilterType.BLOCKED_BLOOM, true);
+        exceptionRule.expect(UnsupportedOperationException.class);
+        confirmed.writeSnapshot(folder.getRoot().toPath().resolve("suspect-devices.snapshot"));
+    }
+}
@@ -0,0 +1,56 @@
+package com.poc.device.store.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.poc.device.store.FilterType;
+import com.poc.device.store.MembershipFilter;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/** Checks the contract of {@link com.poc.device.store.MembershipFilter} for every {@link FilterType} */
+public class FilterTypeTest {
+    private static final String DEVICE_ID_PREFIX = "DEVICE_";
+    private static final int DEVICES = 10000;
+
+    @Test
+    public void whenCreateFromDevices_thenEveryFilterTypeShouldContainThem() {
+        for (FilterType filterType : FilterType.values()) {
+            MembershipFilter filter = filterType.create(devices(), 0.01);
+            for (int i = 0; i < DEVICES; i++) {
+                assertTrue(filterType + " lost " + i, filter.mightContain(DEVICE_ID_PREFIX + i));
+            }
+            assertTrue(filterType + " FPP", filter.expectedFpp() < 0.02);
+            assertTrue(filterType + " bit size", filter.bitSize() >= DEVICES);
+        }
+    }
+
+    @Test
+    public void whenWriteAndReadFilter_thenEveryFilterTypeShouldAnswerTheSame() throws IOException {
+        for (FilterType filterType : FilterType.values()) {
+            MembershipFilter filter = filterType.create(devices(), 0.01);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            filter.writeTo(out);
+            MembershipFilter copy = filterType.readFrom(new ByteArrayInputStream(out.toByteArray()));
+
+            assertEquals(filterType + " bit size", filter.bitSize(), copy.bitSize());
+            for (int i = 0; i < 2 * DEVICES; i++) {
+                assertEquals(filterType + " answer for " + i, filter.mightContain(DEVICE_ID_PREFIX + i),
+                        copy.mightContain(DEVICE_ID_PREFIX + i));
+            }
+        }
+    }
+
+    private static List<String> devices() {
+        List<String> devices = new ArrayList<>();
+        for (int i = 0; i < DEVICES; i++) {
+            devices.add(DEVICE_ID_PREFIX + i);
+        }
+        return devices;
+    }
+}
@@ -0,0 +1,63 @@
+package com.poc.device.store.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.poc.device.store.DeviceHashStrategy;
+import com.poc.device.store.FilterType;
+import com.poc.device.store.FingerprintSetFilter;
+import com.poc.device.store.SuspectDeviceStore;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/** Unit test for {@link com.poc.device.store.FingerprintSetFilter} */
+public class FingerprintSetFilterTest {
+    private static final String DEVICE_ID_PREFIX = "DEVICE_";
+    private static final int DEVICES = 200000;
+
+    @Rule
+    public ExpectedException exceptionRule = ExpectedException.none();
+
+    @Test
+    public void whenAddDevicesToAFingerprintSetStore_thenShouldAnswerWithoutFalsePositives() {
+        for (boolean offHeap : new boolean[] {false, true}) {
+            SuspectDeviceStore suspectDeviceStore = SuspectDeviceStore.builder()
+                    .expectedInsertions(DEVICES).filterFactory(FilterType.FINGERPRINT_SET).offHeap(offHeap).build();
+            List<String> deviceIds = new ArrayList<>();
+            for (int i = 0; i < DEVICES; i++) {
+                deviceIds.add(DEVICE_ID_PREFIX + i);
+            }
+            suspectDeviceStore.addAllSuspectDevices(deviceIds);
+            for (int i = 0; i < DEVICES; i++) {
+                assertTrue(suspectDeviceStore.isSuspectDevice(DEVICE_ID_PREFIX + i));
+                assertFalse(suspectDeviceStore.isSuspectDevice(DEVICE_ID_PREFIX + (DEVICES + i)));
+            }
+            assertTrue(suspectDeviceStore.suspectDeviceStoreFPP() < 1e-12);
+        }
+    }
+
+    @Test
+    public void whenPutADeviceTwice_thenShouldStoreItOnce() {
+        FingerprintSetFilter filter = FingerprintSetFilter.create(100, 0.01, DeviceHashStrategy.XXH3_64);
+        assertTrue(filter.put(DEVICE_ID_PREFIX + 1));
+        assertFalse(filter.put(DEVICE_ID_PREFIX + 1));
+        assertTrue(filter.put(356938035643809L));
+        assertEquals(2, filter.size());
+        assertFalse(filter.isOffHeap());
+    }
+
+    @Test
+    public void whenPutFarMoreThanExpectedDevices_thenShouldThrowException() {
+        FingerprintSetFilter filter = FingerprintSetFilter.create(1000, 0.01);
+        exceptionRule.expect(IllegalStateException.class);
+        exceptionRule.expectMessage("Fingerprint set is full");
+        for (int i = 0; i < 10000; i++) {
+            filter.put(DEVICE_ID_PREFIX + i);
+        }
+    }
+}
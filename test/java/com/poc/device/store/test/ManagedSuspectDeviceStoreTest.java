@@ -0,0 +1,142 @@
+package com.poc.device.store.test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.poc.device.store.FilterType;
+import com.poc.device.store.ManagedSuspectDeviceStore;
+import com.poc.device.store.SuspectDeviceStore;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/** Unit test for {@link com.poc.device.store.ManagedSuspectDeviceStore} */
+public class ManagedSuspectDeviceStoreTest {
+    private static final String DEVICE_ID_PREFIX = "DEVICE_";
+
+    @Rule
+    public ExpectedException exceptionRule = ExpectedException.none();
+
+    private static SuspectDeviceStore.Builder builder(int devices) {
+        return SuspectDeviceStore.builder().expectedInsertions(devices).filterFactory(FilterType.BLOCKED_BLOOM);
+    }
+
+    private static SuspectDeviceStore store(int from, int to) {
+        SuspectDeviceStore suspectDeviceStore = builder(to - from).build();
+        for (int i = from; i < to; i++) {
+            suspectDeviceStore.addSuspectDevice(DEVICE_ID_PREFIX + i);
+        }
+        return suspectDeviceStore;
+    }
+
+    @Test
+    public void whenSwapAStore_thenShouldCheckTheNewStore() {
+        SuspectDeviceStore first = store(0, 1000);
+        ManagedSuspectDeviceStore managedStore = ManagedSuspectDeviceStore.of(first);
+        assertTrue(managedStore.isSuspectDevice(DEVICE_ID_PREFIX + 1));
+
+        SuspectDeviceStore second = store(1000, 2000);
+        assertSame(first, managedStore.swap(second));
+        assertSame(second, managedStore.current());
+        assertTrue(managedStore.isSuspectDevice(DEVICE_ID_PREFIX + 1001));
+    }
+
+    @Test
+    public void whenRebuildWhileCheckingDevices_thenShouldNeverMissADevice() throws Exception {
+        ManagedSuspectDeviceStore managedStore = ManagedSuspectDeviceStore.of(store(0, 100000));
+        AtomicBoolean stop = new AtomicBoolean();
+        AtomicLong misses = new AtomicLong();
+        AtomicLong lookups = new AtomicLong();
+        Thread reader = new Thread(() -> {
+            int i = 0;
+            while (!stop.get()) {
+                // Devices 0 to 50000 are in both the current and the next store
+                if (!managedStore.isSuspectDevice(DEVICE_ID_PREFIX + (i++ % 50000))) {
+                    misses.incrementAndGet();
+                }
+                lookups.incrementAndGet();
+            }
+        });
+        reader.start();
+
+        CompletableFuture<SuspectDeviceStore> rebuilt = managedStore.rebuild(builder(150000), store -> {
+            for (int i = 0; i < 150000; i++) {
+                store.addSuspectDevice(DEVICE_ID_PREFIX + i);
+            }
+        });
+        SuspectDeviceStore next = rebuilt.get();
+        stop.set(true);
+        reader.join();
+
+        assertSame(next, managedStore.current());
+        assertFalse(managedStore.isRebuilding());
+        assertTrue(managedStore.isSuspectDevice(DEVICE_ID_PREFIX + 149999));
+        assertTrue(lookups.get() > 0);
+        assertTrue(misses.get() + " lookups missed a device", misses.get() == 0);
+    }
+
+    @Test
+    public void whenARebuildFails_thenShouldKeepTheCurrentStore() throws InterruptedException {
+        SuspectDeviceStore first = store(0, 1000);
+        ManagedSuspectDeviceStore managedStore = ManagedSuspectDeviceStore.of(first);
+        CompletableFuture<SuspectDeviceStore> rebuilt = managedStore.rebuild(builder(1000), store -> {
+            throw new IOException("Feed not found");
+        });
+        try {
+            rebuilt.get();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause().getMessage().contains("Feed not found"));
+        }
+        assertTrue(rebuilt.isCompletedExceptionally());
+        assertSame(first, managedStore.current());
+        assertFalse(managedStore.isRebuilding());
+    }
+
+    @Test
+    public void whenTheExecutorRejectsARebuild_thenShouldAllowTheNextOne() throws Exception {
+        SuspectDeviceStore first = store(0, 1000);
+        ManagedSuspectDeviceStore managedStore = ManagedSuspectDeviceStore.of(first);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        executor.shutdown();
+        try {
+            exceptionRule.expect(RejectedExecutionException.class);
+            managedStore.rebuild(builder(1000).executor(executor), store -> { });
+        } finally {
+            assertFalse(managedStore.isRebuilding());
+            assertSame(first, managedStore.current());
+            SuspectDeviceStore next = managedStore.rebuild(builder(1000), store -> { }).get();
+            assertSame(next, managedStore.current());
+        }
+    }
+
+    @Test
+    public void whenRebuildTwiceAtOnce_thenShouldThrowException() throws InterruptedException {
+        ManagedSuspectDeviceStore managedStore = ManagedSuspectDeviceStore.of(store(0, 1000));
+        CountDownLatch release = new CountDownLatch(1);
+        managedStore.rebuild(builder(1000), store -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertTrue(managedStore.isRebuilding());
+        try {
+            exceptionRule.expect(IllegalStateException.class);
+            managedStore.rebuild(builder(1000), store -> { });
+        } finally {
+            release.countDown();
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.poc.device.store.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.hash.Hashing;
+import com.poc.device.store.DeviceHashStrategy;
+import com.poc.device.store.FilterType;
+import com.poc.device.store.SuspectDeviceStore;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Path;
+import java.util.Random;
+
+/** Unit test for the numeric device id overloads of {@link com.poc.device.store.SuspectDeviceStore} */
+public class NumericDeviceIdTest {
+    private static final long FIRST_DEVICE_ID = 356938035643809L;
+
+    @Rule
+    public ExpectedException exceptionRule = ExpectedException.none();
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static SuspectDeviceStore numericStore(FilterType filterType, int devices) {
+        SuspectDeviceStore suspectDeviceStore = SuspectDeviceStore.builder()
+                .expectedInsertions(devices).filterFactory(filterType).build();
+        long[] deviceIds = new long[devices];
+        for (int i = 0; i < devices; i++) {
+            deviceIds[i] = FIRST_DEVICE_ID + i;
+        }
+        suspectDeviceStore.addAllSuspectDevices(deviceIds);
+        return suspectDeviceStore;
+    }
+
+    @Test
+    public void whenHashANumericDeviceId_thenShouldHashItsLittleEndianBytes() {
+        Random random = new Random(3);
+        for (int i = 0; i < 10000; i++) {
+            long deviceId = random.nextLong();
+            byte[] bytes = ByteBuffer.allocate(Long.BYTES).order(ByteOrder.LITTLE_ENDIAN).putLong(deviceId).array();
+            for (DeviceHashStrategy strategy : DeviceHashStrategy.values()) {
+                assertEquals(strategy.hash64(bytes, 0, bytes.length), strategy.hash64(deviceId));
+            }
+            assertEquals(Hashing.murmur3_128().hashLong(deviceId).asLong(),
+                    DeviceHashStrategy.MURMUR3_128.hash64(deviceId));
+        }
+        assertEquals(-4072596861322023719L, DeviceHashStrategy.XXH3_64.hash64(0L));
+        assertEquals(-593178685609316974L, DeviceHashStrategy.WYHASH.hash64(123456789012345L));
+    }
+
+    @Test
+    public void whenAddNumericDevices_thenShouldFindThem() {
+        for (FilterType filterType : new FilterType[] {FilterType.GUAVA_BLOOM, FilterType.BLOCKED_BLOOM,
+                FilterType.CUCKOO, FilterType.COUNTING_BLOOM, FilterType.SCALABLE_BLOOM,
+                FilterType.FINGERPRINT_SET}) {
+            SuspectDeviceStore suspectDeviceStore = numericStore(filterType, 100000);
+            int falsePositives = 0;
+            for (int i = 0; i < 100000; i++) {
+                assertTrue(filterType.toString(), suspectDeviceStore.isSuspectDevice(FIRST_DEVICE_ID + i));
+                if (suspectDeviceStore.isSuspectDevice(FIRST_DEVICE_ID - 1 - i)) {
+                    falsePositives++;
+                }
+            }
+            assertTrue(filterType + " answered " + falsePositives + " false positives", falsePositives < 2000);
+        }
+    }
+
+    @Test
+    public void whenCheckNumericDevicesInBulk_thenShouldAnswerLikeSingleLookups() {
+        SuspectDeviceStore suspectDeviceStore = numericStore(FilterType.BLOCKED_BLOOM, 10000);
+        long[] deviceIds = new long[20000];
+        for (int i = 0; i < deviceIds.length; i++) {
+            deviceIds[i] = FIRST_DEVICE_ID - 10000 + i;
+        }
+        boolean[] results = new boolean[deviceIds.length];
+        suspectDeviceStore.isSuspectDevices(deviceIds, results);
+        for (int i = 0; i < deviceIds.length; i++) {
+            assertEquals(suspectDeviceStore.isSuspectDevice(deviceIds[i]), results[i]);
+        }
+    }
+
+    @Test
+    public void whenAddANumericDevice_thenShouldNotAddItsDecimalString() {
+        SuspectDeviceStore suspectDeviceStore = SuspectDeviceStore.builder()
+                .expectedInsertions(1000).filterFactory(FilterType.CUCKOO).build();
+        suspectDeviceStore.addSuspectDevice(FIRST_DEVICE_ID);
+        assertTrue(suspectDeviceStore.isSuspectDevice(FIRST_DEVICE_ID));
+        assertFalse(suspectDeviceStore.isSuspectDevice(Long.toString(FIRST_DEVICE_ID)));
+    }
+
+    @Test
+    public void whenRemoveANumericDevice_thenShouldNotFindIt() {
+        SuspectDeviceStore suspectDeviceStore = numericStore(FilterType.CUCKOO, 1000);
+        assertTrue(suspectDeviceStore.removeSuspectDevice(FIRST_DEVICE_ID));
+        assertFalse(suspectDeviceStore.isSuspectDevice(FIRST_DEVICE_ID));
+        assertTrue(suspectDeviceStore.isSuspectDevice(FIRST_DEVICE_ID + 1));
+    }
+
+    @Test
+    public void whenSnapshotANumericStore_thenShouldFindItsDevices() throws IOException {
+        SuspectDeviceStore suspectDeviceStore = numericStore(FilterType.GUAVA_BLOOM, 10000);
+        Path snapshot = folder.getRoot().toPath().resolve("suspect-devices.snapshot");
+        suspectDeviceStore.writeSnapshot(snapshot);
+
+        SuspectDeviceStore read = SuspectDeviceStore.readSnapshot(snapshot);
+        for (int i = 0; i < 10000; i++) {
+            assertTrue(read.isSuspectDevice(FIRST_DEVICE_ID + i));
+        }
+    }
+
+    @Test
+    public void whenCheckInBulkWithAShortResultsArray_thenShouldThrowException() {
+        SuspectDeviceStore suspectDeviceStore = numericStore(FilterType.BLOCKED_BLOOM, 100);
+        exceptionRule.expect(IllegalArgumentException.class);
+        suspectDeviceStore.isSuspectDevices(new long[] {1, 2, 3}, new boolean[2]);
+    }
+}
@@ -0,0 +1,101 @@
+package com.poc.device.store.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.poc.device.store.BulkLoadStats;
+import com.poc.device.store.FilterType;
+import com.poc.device.store.SuspectDeviceStore;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/** Unit test for the parallel bulk loads of {@link com.poc.device.store.SuspectDeviceStore} */
+public class ParallelBulkLoadTest {
+    private static final String DEVICE_ID_PREFIX = "DEVICE_";
+    private static final int DEVICES = 200000;
+
+    @Rule
+    public ExpectedException exceptionRule = ExpectedException.none();
+
+    private final ForkJoinPool pool = new ForkJoinPool(4);
+
+    @After
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    private static List<String> deviceIds(int count) {
+        List<String> deviceIds = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            deviceIds.add(DEVICE_ID_PREFIX + i);
+        }
+        return deviceIds;
+    }
+
+    private static SuspectDeviceStore store(FilterType filterType, int devices) {
+        return SuspectDeviceStore.builder().expectedInsertions(devices).filterFactory(filterType).build();
+    }
+
+    @Test
+    public void whenLoadDevicesInParallel_thenShouldFindThemAll() {
+        List<String> deviceIds = deviceIds(DEVICES);
+        for (FilterType filterType : new FilterType[] {FilterType.GUAVA_BLOOM, FilterType.BLOCKED_BLOOM,
+                FilterType.CUCKOO, FilterType.COUNTING_BLOOM, FilterType.SCALABLE_BLOOM,
+                FilterType.FINGERPRINT_SET}) {
+            SuspectDeviceStore suspectDeviceStore = store(filterType, DEVICES);
+            BulkLoadStats stats = suspectDeviceStore.addAllSuspectDevices(deviceIds, pool);
+            assertEquals(DEVICES, stats.devices());
+            assertTrue(stats.devicesPerSecond() > 0);
+            for (String deviceId : deviceIds) {
+                assertTrue(filterType + " " + deviceId, suspectDeviceStore.isSuspectDevice(deviceId));
+            }
+        }
+    }
+
+    @Test
+    public void whenLoadInParallel_thenShouldUseThePoolOnlyForConcurrentFilters() {
+        List<String> deviceIds = deviceIds(10000);
+        assertEquals(4, store(FilterType.BLOCKED_BLOOM, 10000).addAllSuspectDevices(deviceIds, pool).threads());
+        assertEquals(4, store(FilterType.COUNTING_BLOOM, 10000).addAllSuspectDevices(deviceIds, pool).threads());
+        assertEquals(1, store(FilterType.CUCKOO, 10000).addAllSuspectDevices(deviceIds, pool).threads());
+    }
+
+    @Test
+    public void whenLoadALinkedListInParallel_thenShouldFindThemAll() {
+        List<String> deviceIds = new LinkedList<>(deviceIds(50000));
+        SuspectDeviceStore suspectDeviceStore = store(FilterType.BLOCKED_BLOOM, 50000);
+        suspectDeviceStore.addAllSuspectDevices(deviceIds, pool);
+        for (String deviceId : deviceIds) {
+            assertTrue(suspectDeviceStore.isSuspectDevice(deviceId));
+        }
+    }
+
+    @Test
+    public void whenLoadNumericDevicesInParallel_thenShouldFindThemAll() {
+        long[] deviceIds = new long[DEVICES];
+        for (int i = 0; i < DEVICES; i++) {
+            deviceIds[i] = 356938035643809L + i;
+        }
+        SuspectDeviceStore suspectDeviceStore = store(FilterType.BLOCKED_BLOOM, DEVICES);
+        BulkLoadStats stats = suspectDeviceStore.addAllSuspectDevices(deviceIds, pool);
+        assertEquals(DEVICES, stats.devices());
+        for (long deviceId : deviceIds) {
+            assertTrue(suspectDeviceStore.isSuspectDevice(deviceId));
+        }
+    }
+
+    @Test
+    public void whenLoadAnEmptyDeviceIdInParallel_thenShouldThrowException() {
+        List<String> deviceIds = deviceIds(100000);
+        deviceIds.set(77777, "");
+        exceptionRule.expect(IllegalArgumentException.class);
+        store(FilterType.BLOCKED_BLOOM, 100000).addAllSuspectDevices(deviceIds, pool);
+    }
+}
@@ -0,0 +1,94 @@
+package com.poc.device.store.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.poc.device.store.FilterType;
+import com.poc.device.store.ScalableBloomFilter;
+import com.poc.device.store.SuspectDeviceStore;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/** Unit test for {@link com.poc.device.store.ScalableBloomFilter} */
+public class ScalableBloomFilterTest {
+    private static final String DEVICE_ID_PREFIX = "DEVICE_";
+
+    @Rule
+    public ExpectedException exceptionRule = ExpectedException.none();
+
+    @Test
+    public void whenAddMoreThanExpectedDevicesToScalableStore_thenFPPStaysBelowOnePercent() {
+        List<String> devices = new ArrayList<>();
+        for (int i = 0; i <= 1000000; i++) {
+            devices.add(DEVICE_ID_PREFIX + i);
+        }
+
+        SuspectDeviceStore suspectDeviceStore = SuspectDeviceStore.builder()
+                .expectedInsertions(100000).filterFactory(FilterType.SCALABLE_BLOOM).build();
+        suspectDeviceStore.addAllSuspectDevices(devices);
+
+        for (String deviceId : devices) {
+            assertTrue(suspectDeviceStore.isSuspectDevice(deviceId));
+        }
+        assertTrue(suspectDeviceStore.suspectDeviceStoreFPP() <= 0.01);
+
+        int falsePositives = 0;
+        for (int i = 1000001; i <= 1100000; i++) {
+            if (suspectDeviceStore.isSuspectDevice(DEVICE_ID_PREFIX + i)) {
+                falsePositives++;
+            }
+        }
+        assertTrue("Measured FPP was " + falsePositives / 100000.0, falsePositives <= 1000);
+    }
+
+    @Test
+    public void whenFillFirstStage_thenShouldAppendAStageTwiceAsLarge() {
+        ScalableBloomFilter filter = ScalableBloomFilter.create(FilterType.BLOCKED_BLOOM, 1000, 0.01);
+        // A device id the first stage reports as a false positive is not counted
+        int next = 0;
+        for (int added = 0; added < 1000; next++) {
+            if (filter.put(DEVICE_ID_PREFIX + next)) {
+                added++;
+            }
+        }
+        assertEquals(1, filter.stageCount());
+        long firstStageBits = filter.bitSize();
+
+        while (!filter.put(DEVICE_ID_PREFIX + next)) {
+            next++;
+        }
+        assertFalse(filter.put(DEVICE_ID_PREFIX + next));
+        assertEquals(2, filter.stageCount());
+        assertTrue(filter.bitSize() > 3 * firstStageBits);
+    }
+
+    @Test
+    public void whenBatchCheckDevicesAcrossStages_thenShouldAnswerLikeSingleLookups() {
+        ScalableBloomFilter filter = ScalableBloomFilter.create(FilterType.CUCKOO, 1000, 0.01);
+        for (int i = 0; i < 5000; i++) {
+            filter.put(DEVICE_ID_PREFIX + i);
+        }
+        assertTrue(filter.stageCount() > 2);
+        String[] deviceIds = new String[10000];
+        for (int i = 0; i < deviceIds.length; i++) {
+            deviceIds[i] = DEVICE_ID_PREFIX + i;
+        }
+        boolean[] results = new boolean[deviceIds.length];
+        filter.mightContain(deviceIds, results);
+        for (int i = 0; i < deviceIds.length; i++) {
+            assertEquals(deviceIds[i], filter.mightContain(deviceIds[i]), results[i]);
+        }
+    }
+
+    @Test
+    public void whenStagesDoNotProbeAHash_thenShouldThrowException() {
+        exceptionRule.expect(IllegalArgumentException.class);
+        exceptionRule.expectMessage("cannot be a stage of a scalable Bloom filter");
+        ScalableBloomFilter.create(FilterType.GUAVA_BLOOM, 1000, 0.01);
+    }
+}
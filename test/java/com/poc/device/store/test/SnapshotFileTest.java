@@ -0,0 +1,166 @@
+package com.poc.device.store.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.poc.device.store.FilterType;
+import com.poc.device.store.SuspectDeviceStore;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/** Unit test for the memory mapped snapshots of {@link com.poc.device.store.SuspectDeviceStore} */
+public class SnapshotFileTest {
+    private static final String DEVICE_ID_PREFIX = "DEVICE_";
+
+    @Rule
+    public ExpectedException exceptionRule = ExpectedException.none();
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static SuspectDeviceStore blockedStore(int devices) {
+        SuspectDeviceStore suspectDeviceStore = SuspectDeviceStore.builder()
+                .expectedInsertions(devices).filterFactory(FilterType.BLOCKED_BLOOM).build();
+        for (int i = 0; i < devices; i++) {
+            suspectDeviceStore.addSuspectDevice(DEVICE_ID_PREFIX + i);
+        }
+        return suspectDeviceStore;
+    }
+
+    /** Returns a device id that was not added and that the store does not report as suspect */
+    private static String unknownDevice(SuspectDeviceStore suspectDeviceStore, int devices) {
+        for (int i = devices; ; i++) {
+            if (!suspectDeviceStore.isSuspectDevice(DEVICE_ID_PREFIX + i)) {
+                return DEVICE_ID_PREFIX + i;
+            }
+        }
+    }
+
+    @Test
+    public void whenMapASnapshot_thenShouldAnswerLikeTheWrittenStore() throws IOException {
+        SuspectDeviceStore suspectDeviceStore = blockedStore(100000);
+        Path snapshot = folder.getRoot().toPath().resolve("suspect-devices.snapshot");
+        suspectDeviceStore.writeSnapshot(snapshot);
+
+        SuspectDeviceStore mapped = SuspectDeviceStore.mapSnapshot(snapshot, false);
+        assertEquals(suspectDeviceStore.suspectDeviceStoreBitSize(), mapped.suspectDeviceStoreBitSize());
+        assertEquals(suspectDeviceStore.suspectDeviceStoreFPP(), mapped.suspectDeviceStoreFPP(), 0.0);
+        for (int i = 0; i < 200000; i++) {
+            String deviceId = DEVICE_ID_PREFIX + i;
+            assertEquals(suspectDeviceStore.isSuspectDevice(deviceId), mapped.isSuspectDevice(deviceId));
+        }
+    }
+
+    @Test
+    public void whenAddToAReadOnlySnapshot_thenShouldThrowException() throws IOException {
+        SuspectDeviceStore suspectDeviceStore = blockedStore(1000);
+        Path snapshot = folder.getRoot().toPath().resolve("suspect-devices.snapshot");
+        suspectDeviceStore.writeSnapshot(snapshot);
+
+        SuspectDeviceStore mapped = SuspectDeviceStore.mapSnapshot(snapshot, false);
+        exceptionRule.expect(UnsupportedOperationException.class);
+        mapped.addSuspectDevice(unknownDevice(mapped, 1000));
+    }
+
+    @Test
+    public void whenAddToAWritableSnapshot_thenShouldWriteTheDeviceToTheFile() throws IOException {
+        SuspectDeviceStore suspectDeviceStore = blockedStore(1000);
+        Path snapshot = folder.getRoot().toPath().resolve("suspect-devices.snapshot");
+        suspectDeviceStore.writeSnapshot(snapshot);
+
+        SuspectDeviceStore writable = SuspectDeviceStore.mapSnapshot(snapshot, true);
+        String deviceId = unknownDevice(writable, 1000);
+        writable.addSuspectDevice(deviceId);
+        writable.forceSnapshot();
+
+        assertTrue(SuspectDeviceStore.mapSnapshot(snapshot, false).isSuspectDevice(deviceId));
+        assertTrue(SuspectDeviceStore.readSnapshot(snapshot).isSuspectDevice(deviceId));
+        assertFalse(suspectDeviceStore.isSuspectDevice(deviceId));
+    }
+
+    @Test
+    public void whenReplaceAMappedSnapshot_thenShouldKeepServingThePreviousOne() throws IOException {
+        Path snapshot = folder.getRoot().toPath().resolve("suspect-devices.snapshot");
+        blockedStore(1000).writeSnapshot(snapshot);
+        SuspectDeviceStore mapped = SuspectDeviceStore.mapSnapshot(snapshot, false);
+
+        SuspectDeviceStore.builder().expectedInsertions(1000).filterFactory(FilterType.BLOCKED_BLOOM).build()
+                .writeSnapshot(snapshot);
+        assertTrue(mapped.isSuspectDevice(DEVICE_ID_PREFIX + 1));
+        assertFalse(SuspectDeviceStore.mapSnapshot(snapshot, false).isSuspectDevice(DEVICE_ID_PREFIX + 1));
+    }
+
+    @Test
+    public void whenMapAFileThatIsNotASnapshot_thenShouldThrowException() throws IOException {
+        Path snapshot = folder.newFile("suspect-devices.snapshot").toPath();
+        Files.write(snapshot, new byte[128]);
+        exceptionRule.expect(IOException.class);
+        SuspectDeviceStore.mapSnapshot(snapshot, false);
+    }
+
+    @Test
+    public void whenReadASnapshotOfEveryFilterType_thenShouldAnswerLikeTheWrittenStore() throws IOException {
+        List<String> devices = new ArrayList<>();
+        for (int i = 0; i < 50000; i++) {
+            devices.add(DEVICE_ID_PREFIX + i);
+        }
+        for (FilterType filterType : FilterType.values()) {
+            SuspectDeviceStore suspectDeviceStore = SuspectDeviceStore.builder()
+                    .deviceUids(devices).filterFactory(filterType).build();
+            Path snapshot = folder.getRoot().toPath().resolve(filterType + ".snapshot");
+            suspectDeviceStore.writeSnapshot(snapshot);
+
+            SuspectDeviceStore read = SuspectDeviceStore.readSnapshot(snapshot);
+            assertEquals(filterType.toString(), suspectDeviceStore.suspectDeviceStoreBitSize(),
+                    read.suspectDeviceStoreBitSize());
+            for (int i = 0; i < 100000; i++) {
+                String deviceId = DEVICE_ID_PREFIX + i;
+                assertEquals(filterType + " " + deviceId, suspectDeviceStore.isSuspectDevice(deviceId),
+                        read.isSuspectDevice(deviceId));
+            }
+        }
+    }
+
+    @Test
+    public void whenReadASnapshotWithACorruptChunk_thenShouldThrowException() throws IOException {
+        Path snapshot = folder.getRoot().toPath().resolve("suspect-devices.snapshot");
+        blockedStore(1000000).writeSnapshot(snapshot);
+        try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[] {1, 2, 3}), 1_200_000);
+        }
+        exceptionRule.expect(IOException.class);
+        exceptionRule.expectMessage("chunk 1 is corrupt");
+        SuspectDeviceStore.readSnapshot(snapshot);
+    }
+
+    @Test
+    public void whenReadATruncatedSnapshot_thenShouldThrowException() throws IOException {
+        Path snapshot = folder.getRoot().toPath().resolve("suspect-devices.snapshot");
+        blockedStore(1000).writeSnapshot(snapshot);
+        try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 1);
+        }
+        exceptionRule.expect(IOException.class);
+        SuspectDeviceStore.readSnapshot(snapshot);
+    }
+
+    @Test
+    public void whenMapASnapshotOfAGuavaStore_thenShouldThrowException() throws IOException {
+        Path snapshot = folder.getRoot().toPath().resolve("suspect-devices.snapshot");
+        SuspectDeviceStore.builder().expectedInsertions(1000).build().writeSnapshot(snapshot);
+        exceptionRule.expect(IOException.class);
+        SuspectDeviceStore.mapSnapshot(snapshot, false);
+    }
+}
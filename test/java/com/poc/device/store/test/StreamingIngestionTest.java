@@ -0,0 +1,204 @@
+package com.poc.device.store.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.poc.device.store.BulkLoadStats;
+import com.poc.device.store.FilterType;
+import com.poc.device.store.SuspectDeviceStore;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+import java.util.zip.GZIPOutputStream;
+
+/** Unit test for the streaming loads of {@link com.poc.device.store.SuspectDeviceStore} */
+public class StreamingIngestionTest {
+    private static final String DEVICE_ID_PREFIX = "DEVICE_";
+    private static final int DEVICES = 100000;
+    // ~5 MB of device ids, so that a mapped file is split into several chunks
+    private static final int MAPPED_DEVICES = 400000;
+
+    @Rule
+    public ExpectedException exceptionRule = ExpectedException.none();
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final ForkJoinPool pool = new ForkJoinPool(4);
+
+    @After
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    private static SuspectDeviceStore store(FilterType filterType) {
+        return store(filterType, DEVICES);
+    }
+
+    private static SuspectDeviceStore store(FilterType filterType, int expectedInsertions) {
+        return SuspectDeviceStore.builder().expectedInsertions(expectedInsertions).filterFactory(filterType).build();
+    }
+
+    private static List<String> deviceIds(int devices) {
+        List<String> deviceIds = new ArrayList<>();
+        for (int i = 0; i < devices; i++) {
+            // Some device ids are non-ASCII, to check they are read as UTF-8
+            deviceIds.add(i % 10 == 0 ? "d\u00e9vice-\u4e2d-" + i : DEVICE_ID_PREFIX + i);
+        }
+        return deviceIds;
+    }
+
+    private static void assertFindsAll(SuspectDeviceStore suspectDeviceStore, List<String> deviceIds) {
+        for (String deviceId : deviceIds) {
+            assertTrue(deviceId, suspectDeviceStore.isSuspectDevice(deviceId));
+        }
+    }
+
+    private Path write(List<String> deviceIds, String name, boolean gzip, String lineSeparator) throws IOException {
+        Path path = folder.getRoot().toPath().resolve(name);
+        try (OutputStream out = gzip ? new GZIPOutputStream(Files.newOutputStream(path))
+                : Files.newOutputStream(path);
+             Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8)) {
+            for (String deviceId : deviceIds) {
+                writer.write(deviceId);
+                writer.write(lineSeparator);
+            }
+        }
+        return path;
+    }
+
+    @Test
+    public void whenLoadAnIteratorASpliteratorOrAStream_thenShouldFindAllDevices() {
+        List<String> deviceIds = deviceIds(DEVICES);
+        SuspectDeviceStore fromIterator = store(FilterType.CUCKOO);
+        fromIterator.addAllSuspectDevices(deviceIds.iterator());
+        assertFindsAll(fromIterator, deviceIds);
+
+        SuspectDeviceStore fromSpliterator = store(FilterType.BLOCKED_BLOOM);
+        fromSpliterator.addAllSuspectDevices(deviceIds.spliterator());
+        assertFindsAll(fromSpliterator, deviceIds);
+
+        for (FilterType filterType : new FilterType[] {FilterType.BLOCKED_BLOOM, FilterType.CUCKOO}) {
+            SuspectDeviceStore fromStream = store(filterType);
+            fromStream.addAllSuspectDevices(IntStream.range(0, DEVICES).parallel().mapToObj(deviceIds::get));
+            assertFindsAll(fromStream, deviceIds);
+        }
+    }
+
+    @Test
+    public void whenLoadAFile_thenShouldFindAllDevices() throws IOException {
+        List<String> deviceIds = deviceIds(DEVICES);
+        Path path = write(deviceIds, "suspect-devices.txt", false, "\n");
+
+        SuspectDeviceStore suspectDeviceStore = store(FilterType.BLOCKED_BLOOM);
+        BulkLoadStats stats = suspectDeviceStore.addAllSuspectDevices(path);
+        assertEquals(DEVICES, stats.devices());
+        assertFindsAll(suspectDeviceStore, deviceIds);
+    }
+
+    @Test
+    public void whenLoadAGzippedFileWithCrLf_thenShouldFindAllDevices() throws IOException {
+        List<String> deviceIds = deviceIds(DEVICES);
+        // The name does not tell the file is gzipped, the magic bytes do
+        Path path = write(deviceIds, "suspect-devices.export", true, "\r\n");
+
+        SuspectDeviceStore suspectDeviceStore = store(FilterType.COUNTING_BLOOM);
+        assertEquals(DEVICES, suspectDeviceStore.addAllSuspectDevices(path).devices());
+        assertFindsAll(suspectDeviceStore, deviceIds);
+        assertFalse(suspectDeviceStore.isSuspectDevice(DEVICE_ID_PREFIX + "1\r"));
+    }
+
+    @Test
+    public void whenLoadAFileWithLongAndEmptyLines_thenShouldSkipTheEmptyOnes() throws IOException {
+        StringBuilder longDeviceId = new StringBuilder();
+        for (int i = 0; i < 200000; i++) {
+            longDeviceId.append((char) ('a' + i % 26));
+        }
+        List<String> lines = new ArrayList<>();
+        lines.add("");
+        lines.add(DEVICE_ID_PREFIX + 1);
+        lines.add(longDeviceId.toString());
+        lines.add("");
+        lines.add(DEVICE_ID_PREFIX + 2);
+        Path path = write(lines, "suspect-devices.txt", false, "\n");
+        // Without a line separator after the last device id
+        Files.write(path, (DEVICE_ID_PREFIX + 3).getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.APPEND);
+
+        SuspectDeviceStore suspectDeviceStore = store(FilterType.CUCKOO);
+        assertEquals(4, suspectDeviceStore.addAllSuspectDevices(path).devices());
+        assertTrue(suspectDeviceStore.isSuspectDevice(longDeviceId.toString()));
+        assertTrue(suspectDeviceStore.isSuspectDevice(DEVICE_ID_PREFIX + 1));
+        assertTrue(suspectDeviceStore.isSuspectDevice(DEVICE_ID_PREFIX + 2));
+        assertTrue(suspectDeviceStore.isSuspectDevice(DEVICE_ID_PREFIX + 3));
+    }
+
+    @Test
+    public void whenLoadAMappedFileInParallel_thenShouldFindAllDevices() throws IOException {
+        List<String> deviceIds = deviceIds(MAPPED_DEVICES);
+        // An empty line after every device id
+        Path path = write(deviceIds, "suspect-devices.txt", false, "\n\n");
+        for (FilterType filterType : new FilterType[] {FilterType.GUAVA_BLOOM, FilterType.BLOCKED_BLOOM,
+                FilterType.COUNTING_BLOOM, FilterType.CUCKOO}) {
+            SuspectDeviceStore suspectDeviceStore = store(filterType, MAPPED_DEVICES);
+            BulkLoadStats stats = suspectDeviceStore.addAllSuspectDevices(path, pool);
+            assertEquals(filterType.toString(), MAPPED_DEVICES, stats.devices());
+            assertEquals(filterType == FilterType.CUCKOO ? 1 : 4, stats.threads());
+            assertFindsAll(suspectDeviceStore, deviceIds);
+        }
+    }
+
+    @Test
+    public void whenLoadAMappedFileWithCrLf_thenShouldMatchTheStreamedLoad() throws IOException {
+        List<String> deviceIds = deviceIds(MAPPED_DEVICES);
+        Path path = write(deviceIds, "suspect-devices.txt", false, "\r\n");
+        for (FilterType filterType : new FilterType[] {FilterType.GUAVA_BLOOM, FilterType.BLOCKED_BLOOM}) {
+            SuspectDeviceStore mapped = store(filterType, MAPPED_DEVICES);
+            mapped.addAllSuspectDevices(path, pool);
+            SuspectDeviceStore streamed = store(filterType, MAPPED_DEVICES);
+            streamed.addAllSuspectDevices(path);
+            for (int i = 0; i < MAPPED_DEVICES; i++) {
+                assertEquals(streamed.isSuspectDevice(DEVICE_ID_PREFIX + (MAPPED_DEVICES + i)),
+                        mapped.isSuspectDevice(DEVICE_ID_PREFIX + (MAPPED_DEVICES + i)));
+            }
+            assertFalse(mapped.isSuspectDevice(DEVICE_ID_PREFIX + "1\r"));
+        }
+    }
+
+    @Test
+    public void whenLoadAGzippedFileInParallel_thenShouldReadIt() throws IOException {
+        List<String> deviceIds = deviceIds(DEVICES);
+        Path path = write(deviceIds, "suspect-devices.txt.gz", true, "\n");
+        SuspectDeviceStore suspectDeviceStore = store(FilterType.BLOCKED_BLOOM);
+        assertEquals(DEVICES, suspectDeviceStore.addAllSuspectDevices(path, pool).devices());
+        assertFindsAll(suspectDeviceStore, deviceIds);
+    }
+
+    @Test
+    public void whenLoadAnEmptyFileInParallel_thenShouldAddNothing() throws IOException {
+        Path path = folder.newFile("empty.txt").toPath();
+        assertEquals(0, store(FilterType.BLOCKED_BLOOM).addAllSuspectDevices(path, pool).devices());
+    }
+
+    @Test
+    public void whenLoadAMissingFile_thenShouldThrowException() throws IOException {
+        exceptionRule.expect(IOException.class);
+        store(FilterType.BLOCKED_BLOOM).addAllSuspectDevices(folder.getRoot().toPath().resolve("missing.txt"));
+    }
+}
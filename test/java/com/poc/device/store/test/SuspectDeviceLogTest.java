@@ -0,0 +1,226 @@
+package com.poc.device.store.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.poc.device.store.AgingMembershipFilter;
+import com.poc.device.store.FilterType;
+import com.poc.device.store.SuspectDeviceLog;
+import com.poc.device.store.SuspectDeviceStore;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/** Unit test for the write-ahead log of {@link com.poc.device.store.SuspectDeviceStore} */
+public class SuspectDeviceLogTest {
+    private static final String DEVICE_ID_PREFIX = "DEVICE_";
+    private static final int DEVICES = 10000;
+
+    @Rule
+    public ExpectedException exceptionRule = ExpectedException.none();
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static SuspectDeviceStore.Builder builder() {
+        return SuspectDeviceStore.builder().expectedInsertions(DEVICES).filterFactory(FilterType.BLOCKED_BLOOM);
+    }
+
+    private Path snapshot() {
+        return folder.getRoot().toPath().resolve("suspect-devices.snapshot");
+    }
+
+    private Path logFile() {
+        return folder.getRoot().toPath().resolve("suspect-devices.log");
+    }
+
+    @Test
+    public void whenRecoverAfterASnapshot_thenShouldReplayTheDevicesAddedSince() throws IOException {
+        try (SuspectDeviceLog log = SuspectDeviceLog.open(logFile(), 0)) {
+            SuspectDeviceStore suspectDeviceStore = SuspectDeviceStore.recover(snapshot(), log, builder());
+            for (int i = 0; i < DEVICES / 2; i++) {
+                suspectDeviceStore.addSuspectDevice(DEVICE_ID_PREFIX + i);
+            }
+            suspectDeviceStore.writeSnapshot(snapshot());
+            assertEquals(log.endPosition(), log.startPosition());
+            for (int i = DEVICES / 2; i < DEVICES; i++) {
+                suspectDeviceStore.addSuspectDevice(DEVICE_ID_PREFIX + i);
+            }
+            suspectDeviceStore.addSuspectDevice(356938035643809L);
+        }
+
+        try (SuspectDeviceLog log = SuspectDeviceLog.open(logFile(), 0)) {
+            SuspectDeviceStore recovered = SuspectDeviceStore.recover(snapshot(), log, builder());
+            for (int i = 0; i < DEVICES; i++) {
+                assertTrue(DEVICE_ID_PREFIX + i, recovered.isSuspectDevice(DEVICE_ID_PREFIX + i));
+            }
+            assertTrue(recovered.isSuspectDevice(356938035643809L));
+            assertEquals(DEVICES / 2 + 1,
+                    log.replay(log.startPosition(), FilterType.BLOCKED_BLOOM.create(DEVICES, 0.01)));
+        }
+    }
+
+    @Test
+    public void whenTruncateBeforeTheEnd_thenShouldKeepTheDevicesAfterThePosition() throws IOException {
+        long position;
+        try (SuspectDeviceLog log = SuspectDeviceLog.open(logFile(), 0)) {
+            SuspectDeviceStore suspectDeviceStore = SuspectDeviceStore.recover(snapshot(), log, builder());
+            for (int i = 0; i < DEVICES / 2; i++) {
+                suspectDeviceStore.addSuspectDevice(DEVICE_ID_PREFIX + i);
+            }
+            position = log.sync();
+            for (int i = DEVICES / 2; i < DEVICES; i++) {
+                suspectDeviceStore.addSuspectDevice(DEVICE_ID_PREFIX + i);
+            }
+            log.truncate(position);
+            suspectDeviceStore.addSuspectDevice(356938035643809L);
+        }
+
+        try (SuspectDeviceLog log = SuspectDeviceLog.open(logFile(), 0)) {
+            assertEquals(position, log.startPosition());
+            SuspectDeviceStore replayed = SuspectDeviceStore.recover(snapshot(), log, builder());
+            for (int i = DEVICES / 2; i < DEVICES; i++) {
+                assertTrue(DEVICE_ID_PREFIX + i, replayed.isSuspectDevice(DEVICE_ID_PREFIX + i));
+            }
+            assertTrue(replayed.isSuspectDevice(356938035643809L));
+        }
+    }
+
+    @Test
+    public void whenRecoverACountingStoreFromASnapshot_thenShouldStillCountReports() throws IOException {
+        try (SuspectDeviceLog log = SuspectDeviceLog.open(logFile(), 0)) {
+            SuspectDeviceStore suspectDeviceStore = SuspectDeviceStore.recover(snapshot(), log,
+                    builder().countReports(1e-3, 0.01));
+            assertEquals(1, suspectDeviceStore.reportSuspectDevice(DEVICE_ID_PREFIX + 1));
+            suspectDeviceStore.writeSnapshot(snapshot());
+        }
+
+        try (SuspectDeviceLog log = SuspectDeviceLog.open(logFile(), 0)) {
+            SuspectDeviceStore recovered = SuspectDeviceStore.recover(snapshot(), log,
+                    builder().countReports(1e-3, 0.01));
+            assertTrue(recovered.isSuspectDevice(DEVICE_ID_PREFIX + 1));
+            assertEquals(1, recovered.reportSuspectDevice(DEVICE_ID_PREFIX + 1));
+            assertEquals(1, recovered.reportSuspectDevice(DEVICE_ID_PREFIX + 2));
+            assertEquals(1, recovered.estimatedReportCount(DEVICE_ID_PREFIX + 2));
+        }
+    }
+
+    @Test
+    public void whenRecoverWithExactConfirmation_thenShouldThrowException() throws IOException {
+        exceptionRule.expect(IllegalArgumentException.class);
+        exceptionRule.expectMessage("cannot be off heap, confirm exactly");
+        try (SuspectDeviceLog log = SuspectDeviceLog.open(logFile(), 0)) {
+            SuspectDeviceStore.recover(snapshot(), log, builder().exactConfirmation(true));
+        }
+    }
+
+    @Test
+    public void whenRecoverWithAnAgingFilter_thenShouldThrowException() throws IOException {
+        try (SuspectDeviceLog log = SuspectDeviceLog.open(logFile(), 0)) {
+            exceptionRule.expect(IllegalArgumentException.class);
+            exceptionRule.expectMessage("must be built by a FilterType");
+            SuspectDeviceStore.recover(snapshot(), log,
+                    builder().filterFactory(AgingMembershipFilter.factory(FilterType.BLOCKED_BLOOM, 7)));
+        } finally {
+            assertFalse(Files.exists(snapshot()));
+        }
+    }
+
+    @Test
+    public void whenTheLastRecordIsTorn_thenShouldRecoverTheOthers() throws IOException {
+        try (SuspectDeviceLog log = SuspectDeviceLog.open(logFile(), 0)) {
+            SuspectDeviceStore suspectDeviceStore = SuspectDeviceStore.recover(snapshot(), log, builder());
+            for (int i = 0; i < 100; i++) {
+                suspectDeviceStore.addSuspectDevice(DEVICE_ID_PREFIX + i);
+            }
+        }
+        long size = Files.size(logFile());
+        try (FileChannel channel = FileChannel.open(logFile(), StandardOpenOption.WRITE)) {
+            channel.truncate(size - 3);
+        }
+
+        try (SuspectDeviceLog log = SuspectDeviceLog.open(logFile(), 0)) {
+            assertTrue(Files.size(logFile()) < size - 3);
+            SuspectDeviceStore recovered = SuspectDeviceStore.recover(snapshot(), log, builder());
+            for (int i = 0; i < 99; i++) {
+                assertTrue(DEVICE_ID_PREFIX + i, recovered.isSuspectDevice(DEVICE_ID_PREFIX + i));
+            }
+            recovered.addSuspectDevice(DEVICE_ID_PREFIX + 99);
+        }
+        try (SuspectDeviceLog log = SuspectDeviceLog.open(logFile(), 0)) {
+            assertTrue(SuspectDeviceStore.recover(snapshot(), log, builder()).isSuspectDevice(DEVICE_ID_PREFIX + 99));
+        }
+    }
+
+    @Test
+    public void whenManyThreadsAdd_thenShouldCommitThemAll() throws Exception {
+        for (long syncIntervalMillis : new long[] {0, 5}) {
+            Files.deleteIfExists(logFile());
+            ExecutorService executor = Executors.newFixedThreadPool(8);
+            try (SuspectDeviceLog log = SuspectDeviceLog.open(logFile(), syncIntervalMillis)) {
+                SuspectDeviceStore suspectDeviceStore = SuspectDeviceStore.recover(snapshot(), log, builder());
+                List<Future<?>> futures = new ArrayList<>();
+                for (int thread = 0; thread < 8; thread++) {
+                    int first = thread;
+                    futures.add(executor.submit(() -> {
+                        for (int i = first; i < DEVICES; i += 8) {
+                            suspectDeviceStore.addSuspectDevice(DEVICE_ID_PREFIX + i);
+                        }
+                    }));
+                }
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+            } finally {
+                executor.shutdown();
+            }
+
+            try (SuspectDeviceLog log = SuspectDeviceLog.open(logFile(), 0)) {
+                SuspectDeviceStore recovered = SuspectDeviceStore.recover(snapshot(), log, builder());
+                for (int i = 0; i < DEVICES; i++) {
+                    assertTrue(syncIntervalMillis + " " + i, recovered.isSuspectDevice(DEVICE_ID_PREFIX + i));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void whenRemoveFromALoggedStore_thenShouldThrowException() throws IOException {
+        exceptionRule.expect(UnsupportedOperationException.class);
+        exceptionRule.expectMessage("does not support removing devices");
+        try (SuspectDeviceLog log = SuspectDeviceLog.open(logFile(), 0)) {
+            SuspectDeviceStore suspectDeviceStore = SuspectDeviceStore.recover(snapshot(), log, builder());
+            suspectDeviceStore.addSuspectDevice(DEVICE_ID_PREFIX + 1);
+            assertFalse(suspectDeviceStore.isSuspectDevice(DEVICE_ID_PREFIX + 2));
+            suspectDeviceStore.removeSuspectDevice(DEVICE_ID_PREFIX + 1);
+        }
+    }
+
+    @Test
+    public void whenTheLogWasTruncatedPastTheSnapshot_thenShouldThrowException() throws IOException {
+        try (SuspectDeviceLog log = SuspectDeviceLog.open(logFile(), 0)) {
+            SuspectDeviceStore suspectDeviceStore = SuspectDeviceStore.recover(snapshot(), log, builder());
+            suspectDeviceStore.writeSnapshot(snapshot());
+            suspectDeviceStore.addSuspectDevice(DEVICE_ID_PREFIX + 1);
+            log.truncate(log.sync());
+        }
+        exceptionRule.expect(IOException.class);
+        exceptionRule.expectMessage("holds positions");
+        try (SuspectDeviceLog log = SuspectDeviceLog.open(logFile(), 0)) {
+            SuspectDeviceStore.recover(snapshot(), log, builder());
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.poc.device.store.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.poc.device.store.FilterType;
+import com.poc.device.store.SuspectDeviceStore;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/** Unit test for {@link com.poc.device.store.SuspectDeviceStore.Builder} */
+public class SuspectDeviceStoreBuilderTest {
+    private static final String DEVICE_ID_PREFIX = "DEVICE_";
+
+    @Rule
+    public ExpectedException exceptionRule = ExpectedException.none();
+
+    @Test
+    public void whenBuildAStore_thenShouldNotReplaceTheSharedStore() {
+        SuspectDeviceStore sharedStore = SuspectDeviceStore.getSuspectDeviceStore(1000);
+        SuspectDeviceStore suspectDeviceStore = SuspectDeviceStore.builder()
+                .expectedInsertions(1000)
+                .maximumErrorPercentage(0.001)
+                .filterFactory(FilterType.BLOCKED_BLOOM)
+                .preTouch(true)
+                .build();
+        suspectDeviceStore.addSuspectDevice(DEVICE_ID_PREFIX + "101");
+        assertTrue(suspectDeviceStore.isSuspectDevice(DEVICE_ID_PREFIX + "101"));
+        assertFalse(sharedStore.isSuspectDevice(DEVICE_ID_PREFIX + "101"));
+        assertSame(sharedStore, SuspectDeviceStore.getSuspectDeviceStore());
+    }
+
+    @Test
+    public void whenInitializeInTheBackground_thenShouldSignalReadinessOnceBuilt() throws Exception {
+        CountDownLatch allocate = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            executor.execute(() -> {
+                try {
+                    allocate.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            CompletableFuture<SuspectDeviceStore> ready = SuspectDeviceStore.initialize(SuspectDeviceStore.builder()
+                    .expectedInsertions(1000)
+                    .filterFactory(FilterType.BLOCKED_BLOOM)
+                    .executor(executor));
+            assertFalse(SuspectDeviceStore.isReady());
+            assertFalse(SuspectDeviceStore.getSuspectDeviceStoreIfReady().isPresent());
+
+            allocate.countDown();
+            SuspectDeviceStore suspectDeviceStore = ready.get();
+            assertTrue(SuspectDeviceStore.isReady());
+            assertSame(suspectDeviceStore, SuspectDeviceStore.getSuspectDeviceStoreIfReady().get());
+            assertSame(suspectDeviceStore, SuspectDeviceStore.getSuspectDeviceStore());
+            assertEquals(0.01, suspectDeviceStore.suspectDeviceStoreFPP(), 0.01);
+        } finally {
+            executor.shutdown();
+            SuspectDeviceStore.getSuspectDeviceStore(1000);
+        }
+    }
+
+    @Test
+    public void whenInitializeWithTheDefaultExecutor_thenShouldCompleteOnABackgroundThread() {
+        CompletableFuture<SuspectDeviceStore> ready = SuspectDeviceStore.initialize(SuspectDeviceStore.builder()
+                .expectedInsertions(1000));
+        try {
+            SuspectDeviceStore suspectDeviceStore = SuspectDeviceStore.getSuspectDeviceStore();
+            assertTrue(ready.isDone());
+            assertSame(ready.join(), suspectDeviceStore);
+        } finally {
+            SuspectDeviceStore.getSuspectDeviceStore(1000);
+        }
+    }
+
+    @Test
+    public void whenBuildAFuseStoreWithoutDevices_thenShouldThrowException() {
+        exceptionRule.expect(UnsupportedOperationException.class);
+        SuspectDeviceStore.builder().filterFactory(FilterType.BINARY_FUSE).expectedInsertions(1000).build();
+    }
+
+    @Test
+    public void whenSetAnInvalidErrorPercentage_thenShouldThrowException() {
+        exceptionRule.expect(IllegalArgumentException.class);
+        SuspectDeviceStore.builder().maximumErrorPercentage(1.0);
+    }
+}
@@ -0,0 +1,131 @@
+package com.poc.device.store.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.poc.device.store.DeviceHashStrategy;
+import com.poc.device.store.FilterType;
+import com.poc.device.store.SuspectDeviceStore;
+import com.poc.device.store.SuspectDeviceStoreRegistry;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+/** Unit test for {@link com.poc.device.store.SuspectDeviceStoreRegistry} */
+public class SuspectDeviceStoreRegistryTest {
+    private static final String DEVICE_ID_PREFIX = "DEVICE_";
+
+    @Rule
+    public ExpectedException exceptionRule = ExpectedException.none();
+
+    private static SuspectDeviceStore store(FilterType filterType, DeviceHashStrategy hashStrategy, int from, int to) {
+        SuspectDeviceStore suspectDeviceStore = SuspectDeviceStore.builder()
+                .expectedInsertions(2 * (to - from)).filterFactory(filterType).hashStrategy(hashStrategy).build();
+        for (int i = from; i < to; i++) {
+            suspectDeviceStore.addSuspectDevice(DEVICE_ID_PREFIX + i);
+            suspectDeviceStore.addSuspectDevice((long) i);
+        }
+        return suspectDeviceStore;
+    }
+
+    private static SuspectDeviceStoreRegistry registry() {
+        SuspectDeviceStoreRegistry registry = new SuspectDeviceStoreRegistry();
+        registry.register("emulators", store(FilterType.BLOCKED_BLOOM, DeviceHashStrategy.MURMUR3_128, 0, 10000));
+        registry.register("rooted", store(FilterType.CUCKOO, DeviceHashStrategy.MURMUR3_128, 5000, 20000));
+        registry.register("chargeback", store(FilterType.COUNTING_BLOOM, DeviceHashStrategy.XXH3_64, 15000, 30000));
+        registry.register("eu", store(FilterType.GUAVA_BLOOM, DeviceHashStrategy.MURMUR3_128, 25000, 40000));
+        return registry;
+    }
+
+    @Test
+    public void whenCheckADeviceAgainstSeveralStores_thenShouldMatchEachStore() {
+        SuspectDeviceStoreRegistry registry = registry();
+        String[] names = {"emulators", "rooted", "chargeback", "eu"};
+        SuspectDeviceStoreRegistry.Lookup lookup = registry.lookup(names);
+        assertEquals(Arrays.asList(names), lookup.names());
+        for (int i = 0; i < 50000; i += 7) {
+            long expected = 0;
+            long expectedNumeric = 0;
+            for (int j = 0; j < names.length; j++) {
+                SuspectDeviceStore store = registry.get(names[j]).get().current();
+                expected |= store.isSuspectDevice(DEVICE_ID_PREFIX + i) ? 1L << j : 0;
+                expectedNumeric |= store.isSuspectDevice((long) i) ? 1L << j : 0;
+            }
+            assertEquals(DEVICE_ID_PREFIX + i, expected, lookup.matches(DEVICE_ID_PREFIX + i));
+            assertEquals(expectedNumeric, lookup.matches((long) i));
+            assertEquals(expected != 0, lookup.isSuspectInAny(DEVICE_ID_PREFIX + i));
+        }
+        assertEquals(Arrays.asList("emulators", "rooted"), lookup.matchingNames(DEVICE_ID_PREFIX + 7000));
+        assertEquals(Collections.singletonList("eu"), lookup.matchingNames(DEVICE_ID_PREFIX + 35000));
+    }
+
+    @Test
+    public void whenStoresMixEveryHashStrategy_thenShouldMatchEachStore() {
+        SuspectDeviceStoreRegistry registry = new SuspectDeviceStoreRegistry();
+        DeviceHashStrategy[] hashStrategies = DeviceHashStrategy.values();
+        String[] names = new String[2 * hashStrategies.length];
+        for (int j = 0; j < names.length; j++) {
+            // Each strategy comes back after the others, so its hash is reused by the second store
+            DeviceHashStrategy hashStrategy = hashStrategies[j % hashStrategies.length];
+            FilterType filterType = j < hashStrategies.length ? FilterType.BLOCKED_BLOOM : FilterType.CUCKOO;
+            names[j] = hashStrategy + "-" + filterType;
+            registry.register(names[j], store(filterType, hashStrategy, j * 5000, j * 5000 + 10000));
+        }
+        SuspectDeviceStoreRegistry.Lookup lookup = registry.lookup(names);
+        for (int i = 0; i < names.length * 5000 + 10000; i += 3) {
+            long expected = 0;
+            long expectedNumeric = 0;
+            for (int j = 0; j < names.length; j++) {
+                SuspectDeviceStore store = registry.get(names[j]).get().current();
+                expected |= store.isSuspectDevice(DEVICE_ID_PREFIX + i) ? 1L << j : 0;
+                expectedNumeric |= store.isSuspectDevice((long) i) ? 1L << j : 0;
+            }
+            assertEquals(DEVICE_ID_PREFIX + i, expected, lookup.matches(DEVICE_ID_PREFIX + i));
+            assertEquals(expectedNumeric, lookup.matches((long) i));
+        }
+        for (int j = 0; j < names.length; j++) {
+            assertTrue(names[j], lookup.matchingNames(DEVICE_ID_PREFIX + (j * 5000 + 4999)).contains(names[j]));
+        }
+    }
+
+    @Test
+    public void whenSwapARegisteredStore_thenShouldCheckTheNewStore() {
+        SuspectDeviceStoreRegistry registry = registry();
+        SuspectDeviceStoreRegistry.Lookup lookup = registry.lookup("emulators");
+        assertFalse(lookup.isSuspectInAny(DEVICE_ID_PREFIX + "new"));
+
+        SuspectDeviceStore next = store(FilterType.BLOCKED_BLOOM, DeviceHashStrategy.WYHASH, 0, 100);
+        next.addSuspectDevice(DEVICE_ID_PREFIX + "new");
+        registry.get("emulators").get().swap(next);
+        assertTrue(lookup.isSuspectInAny(DEVICE_ID_PREFIX + "new"));
+    }
+
+    @Test
+    public void whenRemoveAStore_thenShouldNotBeRegistered() {
+        SuspectDeviceStoreRegistry registry = registry();
+        assertTrue(registry.remove("eu").isPresent());
+        assertFalse(registry.get("eu").isPresent());
+        assertFalse(registry.names().contains("eu"));
+        assertEquals(3, registry.names().size());
+    }
+
+    @Test
+    public void whenRegisterANameTwice_thenShouldThrowException() {
+        SuspectDeviceStoreRegistry registry = registry();
+        exceptionRule.expect(IllegalArgumentException.class);
+        exceptionRule.expectMessage("Store rooted is already registered");
+        registry.register("rooted", SuspectDeviceStore.builder().expectedInsertions(100));
+    }
+
+    @Test
+    public void whenLookupAnUnknownStore_thenShouldThrowException() {
+        SuspectDeviceStoreRegistry registry = registry();
+        exceptionRule.expect(IllegalArgumentException.class);
+        exceptionRule.expectMessage("Store apac is not registered");
+        registry.lookup("emulators", "apac");
+    }
+}
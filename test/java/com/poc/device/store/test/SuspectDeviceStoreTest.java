@@ -4,6 +4,7 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.assertFalse;
 
+import com.poc.device.store.FilterType;
 import com.poc.device.store.SuspectDeviceStore;
 import org.junit.Assert;
 import org.junit.Test;
@@ -146,6 +147,22 @@ public class SuspectDeviceStoreTest {
         System.out.println("Size in MB is " +
                 (optimalSizeInBytes/1024.0)/1024.0 + " MB");
 
+        //Exact fingerprint set vs bloom filter for 1 Million suspect devices
+        SuspectDeviceStore fingerprintStore = SuspectDeviceStore.builder()
+                .expectedInsertions(1000000).filterFactory(FilterType.FINGERPRINT_SET).build();
+        fingerprintStore.addAllSuspectDevices(devices);
+        double sizeOfFingerprintStoreInMB = ((getSuspectDeviceStoreSize(fingerprintStore)/1024.0)/1024.0);
+        double sizeOfMillionDevicesSetInMB = (1000000 * 32 + 4 * (1000000 / 0.75)/1024)/1024;
+        System.out.println("Size of fingerprint set store with 1,000,000 devices: " + sizeOfFingerprintStoreInMB
+                + " MB");
+        System.out.println("Lookup of 1,000,000 devices in the bloom filter store: "
+                + lookupNanos(suspectDeviceStore) + " ns per device");
+        System.out.println("Lookup of 1,000,000 devices in the fingerprint set store: "
+                + lookupNanos(fingerprintStore) + " ns per device");
+
+        assertTrue(sizeOfMillionDevicesSetInMB > sizeOfFingerprintStoreInMB);
+        assertTrue(sizeOfFingerprintStoreInMB > sizeOfStoreInMB);
+
         //Memory consumption for 10 Million suspect devices
         devices = new ArrayList<>();
         for (int i = 0; i <= 10000000; i++) {
@@ -163,6 +180,20 @@ public class SuspectDeviceStoreTest {
 
     }
 
+    /** Gets the average time of looking up 1 Million devices, half of them suspect */
+    private static long lookupNanos(SuspectDeviceStore store) {
+        int suspects = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < 1000000; i++) {
+            if (store.isSuspectDevice(DEVICE_ID_PREFIX + (i * 2))) {
+                suspects++;
+            }
+        }
+        long nanos = (System.nanoTime() - start) / 1000000;
+        assertTrue(suspects >= 500000);
+        return nanos;
+    }
+
     /** Gets the size of the suspect device store object in serialized form */
     private int getSuspectDeviceStoreSize(SuspectDeviceStore store) throws IOException {
         ByteArrayOutputStream byteOutputStream = new ByteArrayOutputStream();